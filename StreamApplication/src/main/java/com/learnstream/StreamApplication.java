@@ -1,12 +1,15 @@
 package com.learnstream;
 
+import com.learnstream.storage.StorageCacheConfig;
 import com.learnstream.transcoding.TranscodingConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableConfigurationProperties(TranscodingConfig.class)
+@EnableScheduling
+@EnableConfigurationProperties({TranscodingConfig.class, StorageCacheConfig.class})
 public class StreamApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,10 @@
+package com.learnstream.auth;
+
+import java.util.UUID;
+
+public record PlaybackToken(
+        UUID userId,
+        UUID videoId,
+        UUID creatorId,
+        long expiresAt
+) {}
@@ -0,0 +1,137 @@
+package com.learnstream.auth;
+
+import com.learnstream.auth.exception.InvalidTokenException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+
+@Service
+public class PlaybackTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    // userId, videoId and creatorId (16 bytes each) followed by the expiry in epoch seconds
+    private static final int PAYLOAD_LENGTH = 3 * 16 + 8;
+    // Truncated HMAC-SHA256, 128 bits is plenty for a short-lived bearer token
+    private static final int MAC_LENGTH = 16;
+    private static final int TOKEN_LENGTH = PAYLOAD_LENGTH + MAC_LENGTH;
+    private static final int ENCODED_LENGTH = (TOKEN_LENGTH * 4 + 2) / 3;
+    private static final byte[] KEY_LABEL = "learnstream playback token v1".getBytes(StandardCharsets.US_ASCII);
+
+    private final SecretKeySpec key;
+    private final Duration tokenTtl;
+    private final Clock clock;
+    private final ThreadLocal<Mac> macs;
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[TOKEN_LENGTH + 32]);
+
+    public PlaybackTokenService(
+            @Value("${playback.token-secret}") String secret,
+            @Value("${playback.token-ttl}") Duration tokenTtl) {
+        this(secret, tokenTtl, Clock.systemUTC());
+    }
+
+    PlaybackTokenService(String secret, Duration tokenTtl, Clock clock) {
+        this.key = deriveKey(Base64.getDecoder().decode(secret));
+        this.tokenTtl = tokenTtl;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public Duration tokenTtl() {
+        return tokenTtl;
+    }
+
+    public String issue(UUID userId, UUID videoId, UUID creatorId) {
+        long expiresAt = clock.instant().plus(tokenTtl).getEpochSecond();
+        byte[] token = new byte[TOKEN_LENGTH];
+        ByteBuffer.wrap(token)
+                .putLong(userId.getMostSignificantBits()).putLong(userId.getLeastSignificantBits())
+                .putLong(videoId.getMostSignificantBits()).putLong(videoId.getLeastSignificantBits())
+                .putLong(creatorId.getMostSignificantBits()).putLong(creatorId.getLeastSignificantBits())
+                .putLong(expiresAt);
+        byte[] mac = sign(token);
+        System.arraycopy(mac, 0, token, PAYLOAD_LENGTH, MAC_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    public PlaybackToken verify(String token, UUID videoId) {
+        if (token.length() != ENCODED_LENGTH) {
+            throw new InvalidTokenException();
+        }
+        byte[] buffer = scratch.get();
+        int length;
+        try {
+            length = Base64.getUrlDecoder().decode(token.getBytes(StandardCharsets.ISO_8859_1), buffer);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTokenException();
+        }
+        if (length != TOKEN_LENGTH) {
+            throw new InvalidTokenException();
+        }
+
+        // Compute the MAC into the tail of the scratch buffer and compare in constant time
+        try {
+            Mac mac = macs.get();
+            mac.update(buffer, 0, PAYLOAD_LENGTH);
+            mac.doFinal(buffer, TOKEN_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to verify playback token", e);
+        }
+        int diff = 0;
+        for (int i = 0; i < MAC_LENGTH; i++) {
+            diff |= buffer[PAYLOAD_LENGTH + i] ^ buffer[TOKEN_LENGTH + i];
+        }
+        if (diff != 0) {
+            throw new InvalidTokenException();
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(buffer, 0, PAYLOAD_LENGTH);
+        UUID userId = new UUID(payload.getLong(), payload.getLong());
+        long videoMsb = payload.getLong();
+        long videoLsb = payload.getLong();
+        UUID creatorId = new UUID(payload.getLong(), payload.getLong());
+        long expiresAt = payload.getLong();
+
+        if (videoMsb != videoId.getMostSignificantBits() || videoLsb != videoId.getLeastSignificantBits()
+                || expiresAt < clock.instant().getEpochSecond()) {
+            throw new InvalidTokenException();
+        }
+        return new PlaybackToken(userId, videoId, creatorId, expiresAt);
+    }
+
+    // The configured secret may be the JWT secret, so tokens are signed with HMAC(secret, label) instead:
+    // a playback token can never verify as a JWT or the other way round
+    private static SecretKeySpec deriveKey(byte[] secret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return new SecretKeySpec(mac.doFinal(KEY_LABEL), ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to derive playback token key", e);
+        }
+    }
+
+    private byte[] sign(byte[] token) {
+        Mac mac = macs.get();
+        mac.update(token, 0, PAYLOAD_LENGTH);
+        return mac.doFinal();
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialise playback token MAC", e);
+        }
+    }
+}
@@ -9,7 +9,7 @@ public class RequestLoggingConfig {
 
     @Bean
     public CommonsRequestLoggingFilter requestLoggingFilter() {
-        var filter = new CommonsRequestLoggingFilter();
+        var filter = new RequestLoggingFilter();
         filter.setIncludeQueryString(true);
         filter.setIncludeHeaders(false);
         filter.setIncludePayload(false);
@@ -0,0 +1,18 @@
+package com.learnstream.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.CommonsRequestLoggingFilter;
+
+// Skips HLS playback requests: their path carries the playback token, and a player fetches one per segment
+class RequestLoggingFilter extends CommonsRequestLoggingFilter {
+
+    private static final String PLAYBACK_PATH = "/api/videos/*/play/**";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Override
+    protected boolean shouldLog(HttpServletRequest request) {
+        return super.shouldLog(request) && !pathMatcher.match(PLAYBACK_PATH, request.getRequestURI());
+    }
+}
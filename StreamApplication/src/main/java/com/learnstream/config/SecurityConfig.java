@@ -36,6 +36,7 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/videos", "/api/videos/{id}").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/videos/*/play/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/webhooks/stripe").permitAll()
                         .anyRequest().authenticated()
                 )
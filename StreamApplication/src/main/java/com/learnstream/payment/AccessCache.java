@@ -0,0 +1,100 @@
+package com.learnstream.payment;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Component
+public class AccessCache {
+
+    // A grant holds the stamp taken before its lookup; invalidating a video records a newer stamp for it,
+    // which retires all of its grants at once without scanning the cache
+    private final Cache<AccessKey, Long> decisions;
+    private final Cache<UUID, Long> invalidatedAt;
+    private final AtomicLong stamps = new AtomicLong();
+    // HLS base path of READY videos, so the segment proxy checks access and resolves keys without a query
+    private final Cache<UUID, String> hlsBases;
+
+    public AccessCache(@Value("${payment.access-cache.ttl}") Duration ttl,
+                       @Value("${payment.access-cache.max-size}") long maxSize,
+                       MeterRegistry meterRegistry) {
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.hlsBases = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Unbounded by size on purpose: losing a stamp early would bring back stale grants. A stamp older
+        // than the ttl outlived every grant it could retire.
+        this.invalidatedAt = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, decisions, "payment.access");
+        CaffeineCacheMetrics.monitor(meterRegistry, hlsBases, "video.hls-base");
+    }
+
+    // Only grants are cached. Purchases complete on whichever node polls the Stripe inbox and evictions
+    // are local, so a cached deny would keep a buyer who just paid locked out on every other node.
+    public boolean get(UUID userId, UUID videoId, Supplier<Boolean> loader) {
+        var key = new AccessKey(userId, videoId);
+        Long granted = decisions.get(key, k -> load(loader));
+        Long invalidated = invalidatedAt.getIfPresent(videoId);
+        if (granted != null && invalidated != null && granted < invalidated) {
+            decisions.asMap().remove(key, granted);
+            granted = decisions.get(key, k -> load(loader));
+        }
+        return granted != null;
+    }
+
+    // The loader throws for a video that cannot be played, so only playable videos are cached
+    public String hlsBase(UUID videoId, Function<UUID, String> loader) {
+        return hlsBases.get(videoId, loader);
+    }
+
+    public void invalidate(UUID userId, UUID videoId) {
+        var key = new AccessKey(userId, videoId);
+        runNowAndAfterCommit(() -> decisions.invalidate(key));
+    }
+
+    public void invalidateVideo(UUID videoId) {
+        runNowAndAfterCommit(() -> {
+            invalidatedAt.put(videoId, stamps.incrementAndGet());
+            hlsBases.invalidate(videoId);
+        });
+    }
+
+    private Long load(Supplier<Boolean> loader) {
+        long stamp = stamps.get();
+        return loader.get() ? stamp : null;
+    }
+
+    // Evict again after commit so a concurrent reader cannot re-cache the pre-commit state
+    private void runNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private record AccessKey(UUID userId, UUID videoId) {}
+}
@@ -0,0 +1,43 @@
+package com.learnstream.payment;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Entity
+@Table(name = "creator_earnings_daily")
+@IdClass(CreatorEarningsDay.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class CreatorEarningsDay {
+
+    @Id
+    @Column(name = "creator_id")
+    private UUID creatorId;
+
+    @Id
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private long sales;
+
+    @Column(name = "earnings_cents", nullable = false)
+    private long earningsCents;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private UUID creatorId;
+        private LocalDate day;
+    }
+}
@@ -0,0 +1,49 @@
+package com.learnstream.payment;
+
+import com.learnstream.payment.dto.EarningsBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+public interface CreatorEarningsDayRepository extends JpaRepository<CreatorEarningsDay, CreatorEarningsDay.Key> {
+
+    @Modifying
+    @Query(value = "INSERT INTO creator_earnings_daily (creator_id, day, sales, earnings_cents) " +
+                   "SELECT owner_id, :day, 1, :amountCents FROM videos WHERE id = :videoId " +
+                   "ON CONFLICT (creator_id, day) DO UPDATE " +
+                   "SET sales = creator_earnings_daily.sales + 1, " +
+                   "earnings_cents = creator_earnings_daily.earnings_cents + EXCLUDED.earnings_cents",
+           nativeQuery = true)
+    void addSale(@Param("videoId") UUID videoId, @Param("day") LocalDate day, @Param("amountCents") long amountCents);
+
+    // Same recount as VideoEarningsDayRepository.reconcileCreator, over the creator's own buckets
+    @Modifying
+    @Query(value = "INSERT INTO creator_earnings_daily (creator_id, day, sales, earnings_cents) " +
+                   "SELECT :creatorId, coalesce(e.day, d.day), " +
+                   "coalesce(e.sales, 0) - coalesce(d.sales, 0), " +
+                   "coalesce(e.earnings_cents, 0) - coalesce(d.earnings_cents, 0) " +
+                   "FROM (SELECT " +
+                   "((p.completed_at AT TIME ZONE current_setting('TimeZone')) AT TIME ZONE 'UTC')::date AS day, " +
+                   "count(*) AS sales, sum(p.amount_cents) AS earnings_cents " +
+                   "FROM purchases p JOIN videos v ON v.id = p.video_id " +
+                   "WHERE v.owner_id = :creatorId AND p.status = 'COMPLETED' GROUP BY 1) e " +
+                   "FULL JOIN (SELECT * FROM creator_earnings_daily WHERE creator_id = :creatorId) d " +
+                   "ON d.day = e.day " +
+                   "WHERE coalesce(e.sales, 0) <> coalesce(d.sales, 0) " +
+                   "OR coalesce(e.earnings_cents, 0) <> coalesce(d.earnings_cents, 0) " +
+                   "ON CONFLICT (creator_id, day) DO UPDATE " +
+                   "SET sales = creator_earnings_daily.sales + EXCLUDED.sales, " +
+                   "earnings_cents = creator_earnings_daily.earnings_cents + EXCLUDED.earnings_cents",
+           nativeQuery = true)
+    int reconcile(@Param("creatorId") UUID creatorId);
+
+    @Query("SELECT new com.learnstream.payment.dto.EarningsBucket(d.day, d.sales, d.earningsCents) " +
+           "FROM CreatorEarningsDay d WHERE d.creatorId = :creatorId AND d.day BETWEEN :from AND :to ORDER BY d.day")
+    List<EarningsBucket> findRange(@Param("creatorId") UUID creatorId,
+                                   @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,39 @@
+package com.learnstream.payment;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "creator_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+public class CreatorStats {
+
+    @Id
+    @Column(name = "creator_id")
+    private UUID creatorId;
+
+    @Column(name = "total_videos", nullable = false)
+    private long totalVideos;
+
+    @Column(name = "total_purchases", nullable = false)
+    private long totalPurchases;
+
+    @Column(name = "total_earnings_cents", nullable = false)
+    private long totalEarningsCents;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = Instant.now();
+    }
+}
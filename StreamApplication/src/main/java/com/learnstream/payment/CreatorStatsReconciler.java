@@ -0,0 +1,48 @@
+package com.learnstream.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+// Periodic full recount of the dashboard totals and earnings buckets, a few short transactions per
+// creator so dashboards are never blocked for long
+@Component
+public class CreatorStatsReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(CreatorStatsReconciler.class);
+
+    private final CreatorStatsService creatorStatsService;
+    private final CreatorStatsRepository creatorStatsRepository;
+    private final EarningsService earningsService;
+
+    public CreatorStatsReconciler(CreatorStatsService creatorStatsService,
+                                  CreatorStatsRepository creatorStatsRepository,
+                                  EarningsService earningsService) {
+        this.creatorStatsService = creatorStatsService;
+        this.creatorStatsRepository = creatorStatsRepository;
+        this.earningsService = earningsService;
+    }
+
+    @Scheduled(cron = "${creator-stats.reconcile-cron}")
+    public void reconcileAll() {
+        long started = System.nanoTime();
+        int creators = 0;
+        int corrected = 0;
+        for (UUID creatorId : creatorStatsRepository.findAllCreatorIds()) {
+            try {
+                boolean statsDrifted = creatorStatsService.reconcile(creatorId);
+                if (earningsService.reconcile(creatorId) || statsDrifted) {
+                    corrected++;
+                }
+                creators++;
+            } catch (RuntimeException e) {
+                log.error("Failed to reconcile creator stats for {}", creatorId, e);
+            }
+        }
+        log.info("Reconciled stats for {} creators, {} corrected, in {} ms",
+                creators, corrected, (System.nanoTime() - started) / 1_000_000);
+    }
+}
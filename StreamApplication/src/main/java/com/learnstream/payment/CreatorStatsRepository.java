@@ -0,0 +1,40 @@
+package com.learnstream.payment;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CreatorStatsRepository extends JpaRepository<CreatorStats, UUID> {
+
+    // Single-statement upserts: concurrent updates for one creator serialise on the row lock
+    @Modifying
+    @Query(value = "INSERT INTO creator_stats (creator_id, total_videos) VALUES (:creatorId, :delta) " +
+                   "ON CONFLICT (creator_id) DO UPDATE " +
+                   "SET total_videos = creator_stats.total_videos + EXCLUDED.total_videos, updated_at = now()",
+           nativeQuery = true)
+    void addVideos(@Param("creatorId") UUID creatorId, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = "INSERT INTO creator_stats (creator_id, total_purchases, total_earnings_cents) " +
+                   "SELECT owner_id, 1, :amountCents FROM videos WHERE id = :videoId " +
+                   "ON CONFLICT (creator_id) DO UPDATE " +
+                   "SET total_purchases = creator_stats.total_purchases + 1, " +
+                   "total_earnings_cents = creator_stats.total_earnings_cents + EXCLUDED.total_earnings_cents, " +
+                   "updated_at = now()",
+           nativeQuery = true)
+    void addSale(@Param("videoId") UUID videoId, @Param("amountCents") long amountCents);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CreatorStats s WHERE s.creatorId = :creatorId")
+    Optional<CreatorStats> findForUpdate(@Param("creatorId") UUID creatorId);
+
+    @Query(value = "SELECT owner_id FROM videos UNION SELECT creator_id FROM creator_stats", nativeQuery = true)
+    List<UUID> findAllCreatorIds();
+}
@@ -0,0 +1,79 @@
+package com.learnstream.payment;
+
+import com.learnstream.payment.dto.CreatorStatsResponse;
+import com.learnstream.video.VideoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+// Dashboard totals served from the creator_stats rollup; callers update it in the same
+// transaction as the change it counts, and reconcile() repairs any drift
+@Service
+public class CreatorStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(CreatorStatsService.class);
+
+    private final CreatorStatsRepository creatorStatsRepository;
+    private final VideoRepository videoRepository;
+    private final PurchaseRepository purchaseRepository;
+
+    public CreatorStatsService(CreatorStatsRepository creatorStatsRepository,
+                               VideoRepository videoRepository,
+                               PurchaseRepository purchaseRepository) {
+        this.creatorStatsRepository = creatorStatsRepository;
+        this.videoRepository = videoRepository;
+        this.purchaseRepository = purchaseRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public CreatorStatsResponse get(UUID creatorId) {
+        return creatorStatsRepository.findById(creatorId)
+                .map(s -> new CreatorStatsResponse(s.getTotalVideos(), s.getTotalPurchases(), s.getTotalEarningsCents()))
+                .orElseGet(() -> new CreatorStatsResponse(0, 0, 0));
+    }
+
+    @Transactional
+    public void videoCreated(UUID creatorId) {
+        creatorStatsRepository.addVideos(creatorId, 1);
+    }
+
+    @Transactional
+    public void videoDeleted(UUID creatorId) {
+        creatorStatsRepository.addVideos(creatorId, -1);
+    }
+
+    @EventListener
+    @Transactional
+    public void onPurchaseCompleted(PurchaseCompletedEvent event) {
+        creatorStatsRepository.addSale(event.videoId(), event.amountCents());
+    }
+
+    // Recounts one creator under the rollup row lock. Increments from transactions that commit
+    // later block on that lock and apply on top of the recount, so none are lost.
+    @Transactional
+    public boolean reconcile(UUID creatorId) {
+        creatorStatsRepository.addVideos(creatorId, 0);
+        var stats = creatorStatsRepository.findForUpdate(creatorId).orElseThrow();
+
+        long videos = videoRepository.countByCreatorId(creatorId);
+        long purchases = purchaseRepository.countCompletedByCreator(creatorId);
+        long earnings = purchaseRepository.sumEarningsByCreator(creatorId);
+        if (stats.getTotalVideos() == videos
+                && stats.getTotalPurchases() == purchases
+                && stats.getTotalEarningsCents() == earnings) {
+            return false;
+        }
+
+        log.warn("Creator stats drift for {}: videos {} -> {}, purchases {} -> {}, earnings {} -> {}",
+                creatorId, stats.getTotalVideos(), videos, stats.getTotalPurchases(), purchases,
+                stats.getTotalEarningsCents(), earnings);
+        stats.setTotalVideos(videos);
+        stats.setTotalPurchases(purchases);
+        stats.setTotalEarningsCents(earnings);
+        return true;
+    }
+}
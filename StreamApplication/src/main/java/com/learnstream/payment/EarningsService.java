@@ -0,0 +1,121 @@
+package com.learnstream.payment;
+
+import com.learnstream.payment.dto.EarningsBucket;
+import com.learnstream.payment.dto.EarningsTimeseriesResponse;
+import com.learnstream.payment.exception.InvalidStatsQueryException;
+import com.learnstream.video.VideoRepository;
+import com.learnstream.video.exception.VideoAccessDeniedException;
+import com.learnstream.video.exception.VideoNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+// Revenue time series served from daily buckets, so a query reads one row per day in range
+// no matter how many purchases the range contains
+@Service
+public class EarningsService {
+
+    private static final Logger log = LoggerFactory.getLogger(EarningsService.class);
+
+    static final int MAX_RANGE_DAYS = 731;
+
+    private final VideoEarningsDayRepository videoEarningsDayRepository;
+    private final CreatorEarningsDayRepository creatorEarningsDayRepository;
+    private final VideoRepository videoRepository;
+
+    public EarningsService(VideoEarningsDayRepository videoEarningsDayRepository,
+                           CreatorEarningsDayRepository creatorEarningsDayRepository,
+                           VideoRepository videoRepository) {
+        this.videoEarningsDayRepository = videoEarningsDayRepository;
+        this.creatorEarningsDayRepository = creatorEarningsDayRepository;
+        this.videoRepository = videoRepository;
+    }
+
+    @EventListener
+    @Transactional
+    public void onPurchaseCompleted(PurchaseCompletedEvent event) {
+        // The same UTC day the backfill and reconcile() derive from purchases.completed_at
+        LocalDate day = LocalDate.ofInstant(event.completedAt(), ZoneOffset.UTC);
+        videoEarningsDayRepository.addSale(event.videoId(), day, event.amountCents());
+        creatorEarningsDayRepository.addSale(event.videoId(), day, event.amountCents());
+    }
+
+    // Repairs drifted buckets of one creator; true when any bucket was corrected
+    @Transactional
+    public boolean reconcile(UUID creatorId) {
+        int videoBuckets = videoEarningsDayRepository.reconcileCreator(creatorId);
+        int creatorBuckets = creatorEarningsDayRepository.reconcile(creatorId);
+        if (videoBuckets == 0 && creatorBuckets == 0) {
+            return false;
+        }
+        log.warn("Earnings drift for creator {}: corrected {} video and {} creator day buckets",
+                creatorId, videoBuckets, creatorBuckets);
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public EarningsTimeseriesResponse timeseries(UUID creatorId, UUID videoId, LocalDate from, LocalDate to,
+                                                 String granularity) {
+        boolean weekly = parseGranularity(granularity);
+        if (from.isAfter(to)) {
+            throw new InvalidStatsQueryException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new InvalidStatsQueryException("range is limited to " + MAX_RANGE_DAYS + " days");
+        }
+
+        List<EarningsBucket> days;
+        if (videoId != null) {
+            var video = videoRepository.findById(videoId)
+                    .orElseThrow(() -> new VideoNotFoundException(videoId));
+            if (!video.getCreatorId().equals(creatorId)) {
+                throw new VideoAccessDeniedException();
+            }
+            days = videoEarningsDayRepository.findRange(videoId, from, to);
+        } else {
+            days = creatorEarningsDayRepository.findRange(creatorId, from, to);
+        }
+
+        return new EarningsTimeseriesResponse(videoId, weekly ? "week" : "day", from, to,
+                fill(days, from, to, weekly));
+    }
+
+    // Dense series with zero buckets for quiet periods; weeks start on Monday
+    static List<EarningsBucket> fill(List<EarningsBucket> days, LocalDate from, LocalDate to, boolean weekly) {
+        var buckets = new LinkedHashMap<LocalDate, long[]>();
+        LocalDate start = weekly ? from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : from;
+        for (LocalDate d = start; !d.isAfter(to); d = d.plusDays(weekly ? 7 : 1)) {
+            buckets.put(d, new long[2]);
+        }
+        for (EarningsBucket day : days) {
+            LocalDate key = weekly ? day.start().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day.start();
+            long[] totals = buckets.get(key);
+            totals[0] += day.sales();
+            totals[1] += day.earningsCents();
+        }
+        var series = new ArrayList<EarningsBucket>(buckets.size());
+        buckets.forEach((bucketStart, totals) -> series.add(new EarningsBucket(bucketStart, totals[0], totals[1])));
+        return series;
+    }
+
+    private static boolean parseGranularity(String granularity) {
+        return switch (granularity.toLowerCase(Locale.ROOT)) {
+            case "day" -> false;
+            case "week" -> true;
+            default -> throw new InvalidStatsQueryException("granularity must be day or week");
+        };
+    }
+}
@@ -4,17 +4,21 @@ import com.learnstream.auth.CurrentUser;
 import com.learnstream.payment.dto.CheckoutResponse;
 import com.learnstream.payment.dto.CreateCheckoutRequest;
 import com.learnstream.payment.dto.CreatorStatsResponse;
+import com.learnstream.payment.dto.EarningsTimeseriesResponse;
 import com.learnstream.payment.dto.PurchaseResponse;
 import com.learnstream.payment.dto.VideoAccessResponse;
+import com.learnstream.video.dto.CursorPage;
 import com.learnstream.video.dto.PageResponse;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.UUID;
 
 @RestController
@@ -51,12 +55,30 @@ public class PaymentController {
         return ResponseEntity.ok(paymentService.listUserPurchases(buyerId, pageable));
     }
 
+    @GetMapping(value = "/purchases", params = "cursor")
+    public ResponseEntity<CursorPage<PurchaseResponse>> listPurchasesByCursor(
+            @CurrentUser UUID buyerId,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(paymentService.listUserPurchases(buyerId, cursor, size));
+    }
+
     @GetMapping("/creator/stats")
     public ResponseEntity<CreatorStatsResponse> getCreatorStats(
             @CurrentUser UUID creatorId) {
         return ResponseEntity.ok(paymentService.getCreatorStats(creatorId));
     }
 
+    @GetMapping("/creator/stats/timeseries")
+    public ResponseEntity<EarningsTimeseriesResponse> getEarningsTimeseries(
+            @CurrentUser UUID creatorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) UUID videoId) {
+        return ResponseEntity.ok(paymentService.getEarningsTimeseries(creatorId, videoId, from, to, granularity));
+    }
+
     @GetMapping("/videos/{id}/access")
     public ResponseEntity<VideoAccessResponse> checkAccess(
             @PathVariable UUID id,
@@ -3,6 +3,7 @@ package com.learnstream.payment;
 import com.learnstream.payment.dto.CheckoutResponse;
 import com.learnstream.payment.dto.CreateCheckoutRequest;
 import com.learnstream.payment.dto.CreatorStatsResponse;
+import com.learnstream.payment.dto.EarningsTimeseriesResponse;
 import com.learnstream.payment.dto.PurchaseResponse;
 import com.learnstream.payment.dto.VideoAccessResponse;
 import com.learnstream.payment.exception.AlreadyPurchasedException;
@@ -10,6 +11,8 @@ import com.learnstream.payment.exception.PaymentProcessingException;
 import com.learnstream.video.Video;
 import com.learnstream.video.VideoRepository;
 import com.learnstream.video.VideoStatus;
+import com.learnstream.video.dto.CursorPage;
+import com.learnstream.video.dto.PageCursor;
 import com.learnstream.video.dto.PageResponse;
 import com.learnstream.video.exception.VideoNotFoundException;
 import com.stripe.exception.InvalidRequestException;
@@ -22,10 +25,13 @@ import com.stripe.param.checkout.SessionCreateParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.UUID;
 
 @Service
@@ -36,6 +42,10 @@ public class PaymentService {
     private final PurchaseRepository purchaseRepository;
     private final StripeEventRepository stripeEventRepository;
     private final VideoRepository videoRepository;
+    private final AccessCache accessCache;
+    private final CreatorStatsService creatorStatsService;
+    private final EarningsService earningsService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${stripe.webhook-secret}")
     private String webhookSecret;
@@ -45,10 +55,18 @@ public class PaymentService {
 
     public PaymentService(PurchaseRepository purchaseRepository,
                           StripeEventRepository stripeEventRepository,
-                          VideoRepository videoRepository) {
+                          VideoRepository videoRepository,
+                          AccessCache accessCache,
+                          CreatorStatsService creatorStatsService,
+                          EarningsService earningsService,
+                          ApplicationEventPublisher eventPublisher) {
         this.purchaseRepository = purchaseRepository;
         this.stripeEventRepository = stripeEventRepository;
         this.videoRepository = videoRepository;
+        this.accessCache = accessCache;
+        this.creatorStatsService = creatorStatsService;
+        this.earningsService = earningsService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -76,7 +94,11 @@ public class PaymentService {
             purchase.setVideoId(video.getId());
             purchase.setAmountCents(0);
             purchase.setStatus(PurchaseStatus.COMPLETED);
+            purchase.setCompletedAt(Instant.now());
             purchaseRepository.save(purchase);
+            eventPublisher.publishEvent(new PurchaseCompletedEvent(purchase.getId(), video.getId(), 0,
+                    purchase.getCompletedAt()));
+            accessCache.invalidate(buyerId, video.getId());
             return new CheckoutResponse(null, null);
         }
 
@@ -121,6 +143,7 @@ public class PaymentService {
         }
     }
 
+    // Verify and store only; StripeInboxPoller applies the event after Stripe has its 200
     @Transactional
     public void handleWebhook(String payload, String sigHeader) {
         Event event;
@@ -130,42 +153,14 @@ public class PaymentService {
             throw new PaymentProcessingException("invalid webhook signature");
         }
 
-        // Idempotency check
-        if (stripeEventRepository.existsByStripeEventId(event.getId())) {
+        if (stripeEventRepository.insertIfAbsent(event.getId(), event.getType(), payload) == 0) {
             log.info("Duplicate Stripe event ignored: {}", event.getId());
-            return;
         }
-
-        var stripeEvent = new StripeEvent();
-        stripeEvent.setStripeEventId(event.getId());
-        stripeEvent.setEventType(event.getType());
-        stripeEvent.setPayload(payload);
-        stripeEvent.setProcessed(false);
-        stripeEventRepository.save(stripeEvent);
-
-        if ("checkout.session.completed".equals(event.getType())) {
-            handleCheckoutCompleted(event);
-        }
-
-        stripeEvent.setProcessed(true);
-        stripeEventRepository.save(stripeEvent);
     }
 
-    @Transactional(readOnly = true)
+    // Not transactional: cache hits must not borrow a connection; misses run two short repository reads
     public boolean hasAccess(UUID userId, UUID videoId) {
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new VideoNotFoundException(videoId));
-
-        if (video.getCreatorId().equals(userId)) {
-            return true;
-        }
-
-        if (video.getPriceCents() == 0 && video.getStatus() == VideoStatus.READY) {
-            return true;
-        }
-
-        return purchaseRepository.existsByBuyerIdAndVideoIdAndStatus(
-                userId, videoId, PurchaseStatus.COMPLETED);
+        return accessCache.get(userId, videoId, () -> resolveAccess(userId, videoId));
     }
 
     @Transactional(readOnly = true)
@@ -188,10 +183,12 @@ public class PaymentService {
 
     @Transactional(readOnly = true)
     public CreatorStatsResponse getCreatorStats(UUID creatorId) {
-        long totalVideos = videoRepository.countByCreatorId(creatorId);
-        long totalPurchases = purchaseRepository.countCompletedByCreator(creatorId);
-        long totalEarnings = purchaseRepository.sumEarningsByCreator(creatorId);
-        return new CreatorStatsResponse(totalVideos, totalPurchases, totalEarnings);
+        return creatorStatsService.get(creatorId);
+    }
+
+    public EarningsTimeseriesResponse getEarningsTimeseries(UUID creatorId, UUID videoId, LocalDate from, LocalDate to,
+                                                            String granularity) {
+        return earningsService.timeseries(creatorId, videoId, from, to, granularity);
     }
 
     @Transactional(readOnly = true)
@@ -200,28 +197,27 @@ public class PaymentService {
         return PageResponse.from(page, PurchaseResponse::from);
     }
 
-    private void handleCheckoutCompleted(Event event) {
-        Session session = (Session) event.getDataObjectDeserializer()
-                .getObject().orElseThrow(() ->
-                        new PaymentProcessingException("unable to deserialize checkout session"));
+    @Transactional(readOnly = true)
+    public CursorPage<PurchaseResponse> listUserPurchases(UUID buyerId, String cursor, int size) {
+        var after = PageCursor.decode(cursor);
+        int limit = CursorPage.clampSize(size);
+        var rows = purchaseRepository.findCompletedByBuyerBefore(buyerId, after.createdAt(), after.id(), limit + 1);
+        return CursorPage.from(rows, limit, p -> new PageCursor(p.getCreatedAt(), p.getId()), PurchaseResponse::from);
+    }
 
-        String buyerIdStr = session.getMetadata().get("buyer_id");
-        String videoIdStr = session.getMetadata().get("video_id");
+    private boolean resolveAccess(UUID userId, UUID videoId) {
+        Video video = videoRepository.findById(videoId)
+                .orElseThrow(() -> new VideoNotFoundException(videoId));
 
-        if (buyerIdStr == null || videoIdStr == null) {
-            log.warn("Checkout session missing metadata: {}", session.getId());
-            return;
+        if (video.getCreatorId().equals(userId)) {
+            return true;
         }
 
-        UUID buyerId = UUID.fromString(buyerIdStr);
-        UUID videoId = UUID.fromString(videoIdStr);
+        if (video.getPriceCents() == 0 && video.getStatus() == VideoStatus.READY) {
+            return true;
+        }
 
-        purchaseRepository.findByBuyerIdAndVideoId(buyerId, videoId)
-                .ifPresent(purchase -> {
-                    purchase.setStatus(PurchaseStatus.COMPLETED);
-                    purchase.setStripePaymentId(session.getPaymentIntent());
-                    purchaseRepository.save(purchase);
-                    log.info("Purchase completed: buyer={}, video={}", buyerId, videoId);
-                });
+        return purchaseRepository.existsByBuyerIdAndVideoIdAndStatus(
+                userId, videoId, PurchaseStatus.COMPLETED);
     }
 }
@@ -40,6 +40,9 @@ public class Purchase {
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
     @PrePersist
     protected void onCreate() {
         createdAt = Instant.now();
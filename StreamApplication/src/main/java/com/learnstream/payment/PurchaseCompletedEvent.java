@@ -0,0 +1,12 @@
+package com.learnstream.payment;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Published inside the completing transaction; listeners update rollups in that same transaction
+public record PurchaseCompletedEvent(
+        UUID purchaseId,
+        UUID videoId,
+        long amountCents,
+        Instant completedAt
+) {}
@@ -3,9 +3,12 @@ package com.learnstream.payment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,6 +21,20 @@ public interface PurchaseRepository extends JpaRepository<Purchase, UUID> {
     @Query("SELECT p FROM Purchase p WHERE p.buyerId = :buyerId AND p.status = 'COMPLETED' ORDER BY p.createdAt DESC")
     Page<Purchase> findCompletedByBuyer(@Param("buyerId") UUID buyerId, Pageable pageable);
 
+    // Conditional, so a redelivered or concurrent completion is counted once
+    @Modifying
+    @Query("UPDATE Purchase p SET p.status = 'COMPLETED', p.stripePaymentId = :paymentId, " +
+           "p.completedAt = :completedAt WHERE p.id = :id AND p.status <> 'COMPLETED'")
+    int markCompleted(@Param("id") UUID id, @Param("paymentId") String paymentId,
+                      @Param("completedAt") Instant completedAt);
+
+    @Query(value = "SELECT * FROM purchases WHERE buyer_id = :buyerId AND status = 'COMPLETED' " +
+                   "AND (created_at, id) < (:createdAt, :id) " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Purchase> findCompletedByBuyerBefore(@Param("buyerId") UUID buyerId, @Param("createdAt") Instant createdAt,
+                                              @Param("id") UUID id, @Param("limit") int limit);
+
     @Query("SELECT COUNT(p) FROM Purchase p WHERE p.videoId IN " +
            "(SELECT v.id FROM Video v WHERE v.creatorId = :creatorId) AND p.status = 'COMPLETED'")
     long countCompletedByCreator(@Param("creatorId") UUID creatorId);
@@ -0,0 +1,130 @@
+package com.learnstream.payment;
+
+import com.learnstream.payment.exception.PaymentProcessingException;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// Applies verified webhook events from the stripe_events inbox. Each event is handled in the
+// transaction that marks it processed, so a crash or failure leaves it pending for a retry.
+@Service
+public class StripeEventProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeEventProcessor.class);
+
+    private final StripeEventRepository stripeEventRepository;
+    private final PurchaseRepository purchaseRepository;
+    private final AccessCache accessCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+
+    public StripeEventProcessor(StripeEventRepository stripeEventRepository,
+                                PurchaseRepository purchaseRepository,
+                                AccessCache accessCache,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${payment.webhook-inbox.batch-size}") int batchSize,
+                                @Value("${payment.webhook-inbox.retry-backoff}") Duration retryBackoff,
+                                @Value("${payment.webhook-inbox.max-retry-backoff}") Duration maxRetryBackoff) {
+        this.stripeEventRepository = stripeEventRepository;
+        this.purchaseRepository = purchaseRepository;
+        this.accessCache = accessCache;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    // One transaction for the whole batch; any failure rolls it back and the caller falls back to processOne
+    @Transactional
+    public int processBatch() {
+        List<StripeEvent> events = stripeEventRepository.claimPending(Instant.now(), batchSize);
+        for (StripeEvent event : events) {
+            apply(event);
+        }
+        return events.size();
+    }
+
+    @Transactional
+    public void processOne(UUID id) {
+        for (StripeEvent event : stripeEventRepository.claim(id)) {
+            apply(event);
+        }
+    }
+
+    @Transactional
+    public void recordFailure(UUID id, RuntimeException error) {
+        stripeEventRepository.findById(id).filter(event -> !event.isProcessed()).ifPresent(event -> {
+            int attempts = event.getAttempts() + 1;
+            Duration backoff = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+            event.setAttempts(attempts);
+            event.setLastError(String.valueOf(error.getMessage()));
+            event.setNextAttemptAt(Instant.now().plus(backoff.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : backoff));
+            log.warn("Stripe event {} failed (attempt {}), retrying at {}: {}",
+                    event.getStripeEventId(), attempts, event.getNextAttemptAt(), error.getMessage());
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public List<UUID> pendingIds() {
+        return stripeEventRepository.findPendingIds(Instant.now(), batchSize);
+    }
+
+    private void apply(StripeEvent stripeEvent) {
+        if ("checkout.session.completed".equals(stripeEvent.getEventType())) {
+            handleCheckoutCompleted(StripeObject.deserializeStripeObject(
+                    stripeEvent.getPayload(), Event.class, ApiResource.getGlobalResponseGetter()));
+        }
+        stripeEvent.setProcessed(true);
+        stripeEvent.setProcessedAt(Instant.now());
+        stripeEvent.setLastError(null);
+    }
+
+    private void handleCheckoutCompleted(Event event) {
+        Session session = (Session) event.getDataObjectDeserializer()
+                .getObject().orElseThrow(() ->
+                        new PaymentProcessingException("unable to deserialize checkout session"));
+
+        String buyerIdStr = session.getMetadata().get("buyer_id");
+        String videoIdStr = session.getMetadata().get("video_id");
+
+        if (buyerIdStr == null || videoIdStr == null) {
+            log.warn("Checkout session missing metadata: {}", session.getId());
+            return;
+        }
+
+        UUID buyerId = UUID.fromString(buyerIdStr);
+        UUID videoId = UUID.fromString(videoIdStr);
+
+        purchaseRepository.findByBuyerIdAndVideoId(buyerId, videoId)
+                .ifPresent(purchase -> {
+                    Instant completedAt = Instant.now();
+                    if (purchaseRepository.markCompleted(purchase.getId(), session.getPaymentIntent(),
+                            completedAt) == 0) {
+                        log.info("Purchase already completed: buyer={}, video={}", buyerId, videoId);
+                        return;
+                    }
+                    eventPublisher.publishEvent(new PurchaseCompletedEvent(
+                            purchase.getId(), videoId, purchase.getAmountCents(), completedAt));
+                    accessCache.invalidate(buyerId, videoId);
+                    log.info("Purchase completed: buyer={}, video={}", buyerId, videoId);
+                });
+    }
+}
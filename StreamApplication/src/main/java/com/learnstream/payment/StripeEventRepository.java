@@ -1,10 +1,38 @@
 package com.learnstream.payment;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 public interface StripeEventRepository extends JpaRepository<StripeEvent, UUID> {
 
-    boolean existsByStripeEventId(String stripeEventId);
+    // Returns 0 for a redelivered event, so duplicates cost one index probe and no exception
+    @Modifying
+    @Query(value = "INSERT INTO stripe_events (stripe_event_id, event_type, payload) " +
+                   "VALUES (:stripeEventId, :eventType, CAST(:payload AS jsonb)) " +
+                   "ON CONFLICT (stripe_event_id) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("stripeEventId") String stripeEventId,
+                       @Param("eventType") String eventType,
+                       @Param("payload") String payload);
+
+    // Rows locked by another processor are skipped rather than waited on, so processors never overlap
+    @Query(value = "SELECT * FROM stripe_events WHERE NOT processed AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<StripeEvent> claimPending(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Query(value = "SELECT id FROM stripe_events WHERE NOT processed AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit",
+           nativeQuery = true)
+    List<UUID> findPendingIds(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM stripe_events WHERE id = :id AND NOT processed FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<StripeEvent> claim(@Param("id") UUID id);
 }
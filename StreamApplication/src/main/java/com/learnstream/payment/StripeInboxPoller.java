@@ -0,0 +1,46 @@
+package com.learnstream.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+// Drains the stripe_events inbox in batches. A batch that fails is retried one event per
+// transaction so a single bad event is isolated and backed off instead of blocking the rest.
+@Component
+public class StripeInboxPoller {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeInboxPoller.class);
+
+    private final StripeEventProcessor processor;
+
+    public StripeInboxPoller(StripeEventProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.webhook-inbox.poll-interval}")
+    public void drain() {
+        int processed;
+        do {
+            try {
+                processed = processor.processBatch();
+            } catch (RuntimeException e) {
+                log.warn("Stripe event batch failed, retrying events individually: {}", e.getMessage());
+                processIndividually();
+                return;
+            }
+        } while (processed == processor.batchSize());
+    }
+
+    private void processIndividually() {
+        for (UUID id : processor.pendingIds()) {
+            try {
+                processor.processOne(id);
+            } catch (RuntimeException e) {
+                processor.recordFailure(id, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.learnstream.payment;
+
+import com.learnstream.payment.dto.EarningsBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+public interface VideoEarningsDayRepository extends JpaRepository<VideoEarningsDay, VideoEarningsDay.Key> {
+
+    @Modifying
+    @Query(value = "INSERT INTO video_earnings_daily (video_id, day, sales, earnings_cents) " +
+                   "VALUES (:videoId, :day, 1, :amountCents) " +
+                   "ON CONFLICT (video_id, day) DO UPDATE " +
+                   "SET sales = video_earnings_daily.sales + 1, " +
+                   "earnings_cents = video_earnings_daily.earnings_cents + EXCLUDED.earnings_cents",
+           nativeQuery = true)
+    void addSale(@Param("videoId") UUID videoId, @Param("day") LocalDate day, @Param("amountCents") long amountCents);
+
+    // Recounts the buckets of one creator's videos from purchases (completed_at is session-zone local
+    // time, converted to a UTC day like the live path) and adds the difference to each bucket that
+    // drifted. A single statement sees purchases and buckets in one snapshot, and a sale committed
+    // meanwhile is added on top of the correction, so none is lost or counted twice.
+    @Modifying
+    @Query(value = "INSERT INTO video_earnings_daily (video_id, day, sales, earnings_cents) " +
+                   "SELECT coalesce(e.video_id, d.video_id), coalesce(e.day, d.day), " +
+                   "coalesce(e.sales, 0) - coalesce(d.sales, 0), " +
+                   "coalesce(e.earnings_cents, 0) - coalesce(d.earnings_cents, 0) " +
+                   "FROM (SELECT p.video_id, " +
+                   "((p.completed_at AT TIME ZONE current_setting('TimeZone')) AT TIME ZONE 'UTC')::date AS day, " +
+                   "count(*) AS sales, sum(p.amount_cents) AS earnings_cents " +
+                   "FROM purchases p JOIN videos v ON v.id = p.video_id " +
+                   "WHERE v.owner_id = :creatorId AND p.status = 'COMPLETED' GROUP BY 1, 2) e " +
+                   "FULL JOIN (SELECT d.* FROM video_earnings_daily d JOIN videos v ON v.id = d.video_id " +
+                   "WHERE v.owner_id = :creatorId) d ON d.video_id = e.video_id AND d.day = e.day " +
+                   "WHERE coalesce(e.sales, 0) <> coalesce(d.sales, 0) " +
+                   "OR coalesce(e.earnings_cents, 0) <> coalesce(d.earnings_cents, 0) " +
+                   "ON CONFLICT (video_id, day) DO UPDATE " +
+                   "SET sales = video_earnings_daily.sales + EXCLUDED.sales, " +
+                   "earnings_cents = video_earnings_daily.earnings_cents + EXCLUDED.earnings_cents",
+           nativeQuery = true)
+    int reconcileCreator(@Param("creatorId") UUID creatorId);
+
+    @Query("SELECT new com.learnstream.payment.dto.EarningsBucket(d.day, d.sales, d.earningsCents) " +
+           "FROM VideoEarningsDay d WHERE d.videoId = :videoId AND d.day BETWEEN :from AND :to ORDER BY d.day")
+    List<EarningsBucket> findRange(@Param("videoId") UUID videoId,
+                                   @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,9 @@
+package com.learnstream.payment.dto;
+
+import java.time.LocalDate;
+
+public record EarningsBucket(
+        LocalDate start,
+        long sales,
+        long earningsCents
+) {}
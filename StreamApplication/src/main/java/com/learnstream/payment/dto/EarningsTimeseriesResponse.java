@@ -0,0 +1,13 @@
+package com.learnstream.payment.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+public record EarningsTimeseriesResponse(
+        UUID videoId,
+        String granularity,
+        LocalDate from,
+        LocalDate to,
+        List<EarningsBucket> buckets
+) {}
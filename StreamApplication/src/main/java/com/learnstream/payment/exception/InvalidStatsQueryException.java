@@ -0,0 +1,8 @@
+package com.learnstream.payment.exception;
+
+public class InvalidStatsQueryException extends RuntimeException {
+
+    public InvalidStatsQueryException(String reason) {
+        super("Invalid stats query: " + reason);
+    }
+}
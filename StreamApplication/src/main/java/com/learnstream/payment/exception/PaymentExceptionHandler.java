@@ -22,4 +22,9 @@ public class PaymentExceptionHandler {
     public ProblemDetail handlePaymentProcessing(PaymentProcessingException ex) {
         return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_GATEWAY, ex.getMessage());
     }
+
+    @ExceptionHandler(InvalidStatsQueryException.class)
+    public ProblemDetail handleInvalidStatsQuery(InvalidStatsQueryException ex) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
 }
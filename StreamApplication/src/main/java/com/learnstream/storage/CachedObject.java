@@ -0,0 +1,51 @@
+package com.learnstream.storage;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+record CachedObject(
+        ObjectInfo info,
+        ByteBuffer content
+) {
+
+    InputStream openStream() {
+        return new ByteBufferInputStream(content.duplicate());
+    }
+
+    InputStream openStream(long start, long end) {
+        return new ByteBufferInputStream(content.slice((int) start, (int) (end - start + 1)));
+    }
+
+    int size() {
+        return content.capacity();
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.learnstream.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@Component
+public class ObjectCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectCache.class);
+    private static final int UNCACHEABLE_MAX_ENTRIES = 10_000;
+
+    private final StorageCacheConfig config;
+    private final Cache<String, CachedObject> memory;
+    private final Cache<String, DiskEntry> disk;
+    // Keys the loader declined (over the size cap), so they are not fetched and aborted on every read
+    private final Cache<String, Boolean> uncacheable;
+    private final Path diskDir;
+    private final ConcurrentHashMap<String, CompletableFuture<CachedObject>> inFlight = new ConcurrentHashMap<>();
+
+    public ObjectCache(StorageCacheConfig config, MeterRegistry meterRegistry) throws IOException {
+        this.config = config;
+        if (!config.enabled()) {
+            this.memory = null;
+            this.disk = null;
+            this.uncacheable = null;
+            this.diskDir = null;
+            return;
+        }
+
+        this.diskDir = Path.of(config.diskDir());
+        resetDiskDir();
+
+        // Memory tier: heap copies of the hottest objects
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(config.memoryMaxSize().toBytes())
+                .weigher((String key, CachedObject value) -> value.size())
+                .expireAfterWrite(config.ttl())
+                .recordStats()
+                .build();
+
+        // Disk tier: memory-mapped files, the OS page cache does the rest
+        this.disk = Caffeine.newBuilder()
+                .maximumWeight(config.diskMaxSize().toBytes())
+                .weigher((String key, DiskEntry value) -> value.object().size())
+                .expireAfterWrite(config.ttl())
+                .removalListener((String key, DiskEntry value, RemovalCause cause) -> {
+                    if (value != null) {
+                        deleteQuietly(value.file());
+                    }
+                })
+                .recordStats()
+                .build();
+
+        this.uncacheable = Caffeine.newBuilder()
+                .maximumSize(UNCACHEABLE_MAX_ENTRIES)
+                .expireAfterWrite(config.ttl())
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "storage.memory");
+        CaffeineCacheMetrics.monitor(meterRegistry, disk, "storage.disk");
+        log.info("Storage object cache enabled: memory={}, disk={} at {}",
+                config.memoryMaxSize(), config.diskMaxSize(), diskDir);
+    }
+
+    public boolean isEnabled() {
+        return config.enabled();
+    }
+
+    public long maxObjectSize() {
+        return config.maxObjectSize().toBytes();
+    }
+
+    ObjectInfo peek(String bucket, String key) {
+        CachedObject cached = lookup(cacheKey(bucket, key));
+        return cached != null ? cached.info() : null;
+    }
+
+    // Concurrent misses for the same key share one load; a null result means "not cacheable"
+    CachedObject get(String bucket, String key, Supplier<CachedObject> loader) {
+        String cacheKey = cacheKey(bucket, key);
+        CachedObject cached = lookup(cacheKey);
+        if (cached != null || uncacheable.getIfPresent(cacheKey) != null) {
+            return cached;
+        }
+
+        var load = new CompletableFuture<CachedObject>();
+        var existing = inFlight.putIfAbsent(cacheKey, load);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            CachedObject loaded = loader.get();
+            // Stored only while this load is still registered: an invalidate during the load unregisters it,
+            // and both run under the map's lock for the key, so bytes read before an overwrite are never kept
+            inFlight.computeIfPresent(cacheKey, (k, current) -> {
+                if (current == load) {
+                    store(cacheKey, loaded);
+                }
+                return null;
+            });
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, load);
+        }
+    }
+
+    void invalidate(String bucket, String key) {
+        if (!config.enabled()) {
+            return;
+        }
+        String cacheKey = cacheKey(bucket, key);
+        inFlight.compute(cacheKey, (k, load) -> {
+            memory.invalidate(cacheKey);
+            disk.invalidate(cacheKey);
+            uncacheable.invalidate(cacheKey);
+            return null;
+        });
+    }
+
+    private void store(String cacheKey, CachedObject loaded) {
+        if (loaded == null) {
+            uncacheable.put(cacheKey, Boolean.TRUE);
+            return;
+        }
+        memory.put(cacheKey, loaded);
+        writeToDisk(cacheKey, loaded);
+    }
+
+    private CachedObject lookup(String cacheKey) {
+        CachedObject cached = memory.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        DiskEntry entry = disk.getIfPresent(cacheKey);
+        return entry != null ? entry.object() : null;
+    }
+
+    private void writeToDisk(String cacheKey, CachedObject object) {
+        // Unique file per write so a late removal never deletes a newer copy
+        Path file = diskDir.resolve(UUID.randomUUID().toString());
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var source = object.content().duplicate();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, object.size());
+            disk.put(cacheKey, new DiskEntry(file, new CachedObject(object.info(), mapped)));
+        } catch (IOException e) {
+            log.warn("Failed to write {} to disk cache: {}", cacheKey, e.getMessage());
+            deleteQuietly(file);
+        }
+    }
+
+    private void resetDiskDir() throws IOException {
+        if (Files.exists(diskDir)) {
+            try (Stream<Path> files = Files.walk(diskDir)) {
+                files.sorted(Comparator.reverseOrder())
+                        .filter(path -> !path.equals(diskDir))
+                        .forEach(this::deleteQuietly);
+            }
+        }
+        Files.createDirectories(diskDir);
+    }
+
+    private void deleteQuietly(Path path) {
+        try { Files.deleteIfExists(path); } catch (IOException ignored) {}
+    }
+
+    private static String cacheKey(String bucket, String key) {
+        return bucket + "/" + key;
+    }
+
+    private record DiskEntry(Path file, CachedObject object) {}
+}
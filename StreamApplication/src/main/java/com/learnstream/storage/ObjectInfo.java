@@ -0,0 +1,9 @@
+package com.learnstream.storage;
+
+import java.time.Instant;
+
+public record ObjectInfo(
+        long contentLength,
+        String eTag,
+        Instant lastModified
+) {}
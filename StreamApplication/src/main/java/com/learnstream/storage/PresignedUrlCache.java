@@ -0,0 +1,49 @@
+package com.learnstream.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Reuses a signed URL for the first half of its lifetime, so callers always get at least
+// half the requested validity while list pages stop paying a SigV4 signature per row
+@Component
+public class PresignedUrlCache {
+
+    private final Cache<SignedKey, URL> urls;
+    // Every expiry ever signed with; callers use a handful of fixed durations, so invalidating
+    // an object is a few direct removals rather than a scan over the whole cache
+    private final Set<Duration> expiries = ConcurrentHashMap.newKeySet();
+
+    public PresignedUrlCache(@Value("${storage.presigned-url-cache.max-size}") long maxSize,
+                             MeterRegistry meterRegistry) {
+        this.urls = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((SignedKey key, URL url) -> key.expiry().dividedBy(2)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, urls, "storage.presigned-url");
+    }
+
+    public URL get(String bucket, String key, Duration expiry, Supplier<URL> signer) {
+        expiries.add(expiry);
+        return urls.get(new SignedKey(bucket, key, expiry), k -> signer.get());
+    }
+
+    public void invalidate(String bucket, String key) {
+        for (Duration expiry : expiries) {
+            urls.invalidate(new SignedKey(bucket, key, expiry));
+        }
+    }
+
+    private record SignedKey(String bucket, String key, Duration expiry) {}
+}
@@ -0,0 +1,16 @@
+package com.learnstream.storage;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.cache")
+public record StorageCacheConfig(
+        boolean enabled,
+        DataSize memoryMaxSize,
+        DataSize diskMaxSize,
+        String diskDir,
+        DataSize maxObjectSize,
+        Duration ttl
+) {}
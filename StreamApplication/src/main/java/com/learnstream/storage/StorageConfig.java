@@ -50,4 +50,18 @@ public class StorageConfig {
                         .build())
                 .build();
     }
+
+    // Signs against the internal endpoint, for URLs consumed inside the cluster (e.g. by ffmpeg)
+    @Bean
+    public S3Presigner internalS3Presigner() {
+        return S3Presigner.builder()
+                .endpointOverride(URI.create(endpoint))
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(accessKey, secretKey)))
+                .region(Region.US_EAST_1)
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(true)
+                        .build())
+                .build();
+    }
 }
@@ -1,25 +1,53 @@
 package com.learnstream.storage;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRange;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
 import jakarta.annotation.PostConstruct;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
 
 @Service
 public class StorageService {
@@ -30,10 +58,26 @@ public class StorageService {
 
     private final S3Client s3Client;
     private final S3Presigner s3Presigner;
+    private final S3Presigner internalS3Presigner;
+    private final ObjectCache objectCache;
+    private final PresignedUrlCache presignedUrlCache;
+    private final long multipartThreshold;
+    private final long multipartPartSize;
 
-    public StorageService(S3Client s3Client, S3Presigner s3Presigner) {
+    public StorageService(S3Client s3Client,
+                          @Qualifier("s3Presigner") S3Presigner s3Presigner,
+                          @Qualifier("internalS3Presigner") S3Presigner internalS3Presigner,
+                          ObjectCache objectCache,
+                          PresignedUrlCache presignedUrlCache,
+                          @Value("${storage.multipart.threshold}") DataSize multipartThreshold,
+                          @Value("${storage.multipart.part-size}") DataSize multipartPartSize) {
         this.s3Client = s3Client;
         this.s3Presigner = s3Presigner;
+        this.internalS3Presigner = internalS3Presigner;
+        this.objectCache = objectCache;
+        this.presignedUrlCache = presignedUrlCache;
+        this.multipartThreshold = multipartThreshold.toBytes();
+        this.multipartPartSize = multipartPartSize.toBytes();
     }
 
     @PostConstruct
@@ -51,34 +95,245 @@ public class StorageService {
                         .contentLength(contentLength)
                         .build(),
                 RequestBody.fromInputStream(inputStream, contentLength));
+        objectCache.invalidate(bucket, key);
     }
 
     public URL generatePresignedUrl(String bucket, String key, int durationMinutes) {
+        var expiry = Duration.ofMinutes(durationMinutes);
+        return presignedUrlCache.get(bucket, key, expiry, () -> presignGet(bucket, key, expiry));
+    }
+
+    public URL generateInternalUrl(String bucket, String key, Duration expiry) {
         var presignRequest = GetObjectPresignRequest.builder()
-                .signatureDuration(Duration.ofMinutes(durationMinutes))
+                .signatureDuration(expiry)
                 .getObjectRequest(GetObjectRequest.builder()
                         .bucket(bucket)
                         .key(key)
                         .build())
                 .build();
-        return s3Presigner.presignGetObject(presignRequest).url();
+        return internalS3Presigner.presignGetObject(presignRequest).url();
     }
 
     public InputStream download(String bucket, String key) {
+        CachedObject cached = cachedObject(bucket, key);
+        if (cached != null) {
+            return cached.openStream();
+        }
+        return s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build());
+    }
+
+    public InputStream download(String bucket, String key, long start, long end) {
+        CachedObject cached = cachedObject(bucket, key);
+        if (cached != null) {
+            return cached.openStream(start, end);
+        }
         return s3Client.getObject(GetObjectRequest.builder()
                 .bucket(bucket)
                 .key(key)
+                .range("bytes=" + start + "-" + end)
                 .build());
     }
 
+    // Body and validators from a single GET. A range the object cannot satisfy returns the whole object,
+    // as a server ignoring Range would, so the caller can still answer with the real length.
+    public StoredObject open(String bucket, String key, HttpRange range) {
+        CachedObject cached = cachedObject(bucket, key);
+        if (cached != null) {
+            long length = cached.info().contentLength();
+            if (range != null && range.getRangeStart(length) < length) {
+                return new StoredObject(cached.info(),
+                        cached.openStream(range.getRangeStart(length), range.getRangeEnd(length)));
+            }
+            return new StoredObject(cached.info(), cached.openStream());
+        }
+
+        var request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key);
+        if (range != null) {
+            request.range("bytes=" + range);
+        }
+        ResponseInputStream<GetObjectResponse> stream;
+        try {
+            stream = s3Client.getObject(request.build());
+        } catch (S3Exception e) {
+            if (range != null && e.statusCode() == 416) {
+                return open(bucket, key, null);
+            }
+            throw e;
+        }
+        var response = stream.response();
+        return new StoredObject(new ObjectInfo(totalLength(response), response.eTag(), response.lastModified()),
+                stream);
+    }
+
+    public ObjectInfo stat(String bucket, String key) {
+        if (isCached(bucket)) {
+            ObjectInfo cached = objectCache.peek(bucket, key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        var response = s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build());
+        return new ObjectInfo(response.contentLength(), response.eTag(), response.lastModified());
+    }
+
     public void uploadFile(String bucket, String key, Path filePath, String contentType) {
-        s3Client.putObject(
-                PutObjectRequest.builder()
+        long size;
+        try {
+            size = Files.size(filePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + filePath, e);
+        }
+
+        if (size > multipartThreshold) {
+            uploadFileMultipart(bucket, key, filePath, contentType, size);
+        } else {
+            s3Client.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .contentType(contentType)
+                            .build(),
+                    filePath);
+        }
+        objectCache.invalidate(bucket, key);
+    }
+
+    // Streams an upload of unknown length: one part-size buffer is reused, so memory stays
+    // bounded no matter how large the body is. Small bodies go up as a single PUT.
+    public long uploadStream(String bucket, String key, InputStream in, String contentType) throws IOException {
+        byte[] buffer = new byte[(int) multipartPartSize];
+        int read = in.readNBytes(buffer, 0, buffer.length);
+        if (read < buffer.length) {
+            upload(bucket, key, new ByteArrayInputStream(buffer, 0, read), read, contentType);
+            return read;
+        }
+
+        String uploadId = startMultipartUpload(bucket, key, contentType);
+        try {
+            List<UploadedPart> parts = new ArrayList<>();
+            long total = 0;
+            for (int partNumber = 1; read > 0; partNumber++) {
+                String eTag = uploadPart(bucket, key, uploadId, partNumber,
+                        new ByteArrayInputStream(buffer, 0, read), read);
+                parts.add(new UploadedPart(partNumber, eTag, read));
+                total += read;
+                read = in.readNBytes(buffer, 0, buffer.length);
+            }
+            completeMultipartUpload(bucket, key, uploadId, parts);
+            return total;
+        } catch (IOException | RuntimeException e) {
+            abortQuietly(bucket, key, uploadId, e);
+            throw e;
+        }
+    }
+
+    public String startMultipartUpload(String bucket, String key, String contentType) {
+        return s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+    }
+
+    public String uploadPart(String bucket, String key, String uploadId, int partNumber,
+                             InputStream in, long length) {
+        return s3Client.uploadPart(UploadPartRequest.builder()
                         .bucket(bucket)
                         .key(key)
-                        .contentType(contentType)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength(length)
                         .build(),
-                filePath);
+                RequestBody.fromInputStream(in, length)).eTag();
+    }
+
+    // Lets a client PUT one part straight to storage; the signed Content-Length pins the part size
+    public URL presignUploadPart(String bucket, String key, String uploadId, int partNumber, long length,
+                                 Duration expiry) {
+        var presignRequest = UploadPartPresignRequest.builder()
+                .signatureDuration(expiry)
+                .uploadPartRequest(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength(length)
+                        .build())
+                .build();
+        return s3Presigner.presignUploadPart(presignRequest).url();
+    }
+
+    public List<UploadedPart> listParts(String bucket, String key, String uploadId) {
+        return s3Client.listPartsPaginator(ListPartsRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build())
+                .parts().stream()
+                .map(part -> new UploadedPart(part.partNumber(), part.eTag(), part.size()))
+                .toList();
+    }
+
+    // Key to size for everything under the prefix; one LIST page per thousand objects
+    public Map<String, Long> listObjectSizes(String bucket, String prefix) {
+        var sizes = new HashMap<String, Long>();
+        s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                        .bucket(bucket)
+                        .prefix(prefix)
+                        .build())
+                .contents()
+                .forEach(object -> sizes.put(object.key(), object.size()));
+        return sizes;
+    }
+
+    public void completeMultipartUpload(String bucket, String key, String uploadId, List<UploadedPart> parts) {
+        var completed = parts.stream()
+                .map(part -> CompletedPart.builder().partNumber(part.partNumber()).eTag(part.eTag()).build())
+                .toList();
+        s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                .build());
+        objectCache.invalidate(bucket, key);
+    }
+
+    // An upload that is already gone (aborted earlier, or by a bucket lifecycle rule) counts as aborted
+    public void abortMultipartUpload(String bucket, String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (NoSuchUploadException e) {
+            log.debug("Multipart upload {} of {}/{} was already gone", uploadId, bucket, key);
+        }
+    }
+
+    public long multipartPartSize() {
+        return multipartPartSize;
+    }
+
+    // Server-side copy within a bucket; the bytes never pass through this service
+    public void copy(String bucket, String sourceKey, String targetKey) {
+        s3Client.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(bucket)
+                .sourceKey(sourceKey)
+                .destinationBucket(bucket)
+                .destinationKey(targetKey)
+                .build());
+        objectCache.invalidate(bucket, targetKey);
+        presignedUrlCache.invalidate(bucket, targetKey);
     }
 
     public void delete(String bucket, String key) {
@@ -86,6 +341,8 @@ public class StorageService {
                 .bucket(bucket)
                 .key(key)
                 .build());
+        objectCache.invalidate(bucket, key);
+        presignedUrlCache.invalidate(bucket, key);
     }
 
     public String rawBucket() {
@@ -96,6 +353,104 @@ public class StorageService {
         return PROCESSED_BUCKET;
     }
 
+    private URL presignGet(String bucket, String key, Duration expiry) {
+        var presignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(expiry)
+                .getObjectRequest(GetObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .build())
+                .build();
+        return s3Presigner.presignGetObject(presignRequest).url();
+    }
+
+    private void uploadFileMultipart(String bucket, String key, Path filePath, String contentType, long size) {
+        String uploadId = startMultipartUpload(bucket, key, contentType);
+        try {
+            List<UploadedPart> parts = new ArrayList<>();
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += multipartPartSize, partNumber++) {
+                long position = offset;
+                long length = Math.min(multipartPartSize, size - offset);
+                var response = s3Client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength(length)
+                                .build(),
+                        RequestBody.fromContentProvider(
+                                () -> openSlice(filePath, position, length), length, contentType));
+                parts.add(new UploadedPart(partNumber, response.eTag(), length));
+            }
+            completeMultipartUpload(bucket, key, uploadId, parts);
+        } catch (RuntimeException e) {
+            abortQuietly(bucket, key, uploadId, e);
+            throw e;
+        }
+    }
+
+    // A failed abort must not hide why the upload failed; it rides along as a suppressed exception
+    private void abortQuietly(String bucket, String key, String uploadId, Exception failure) {
+        try {
+            abortMultipartUpload(bucket, key, uploadId);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    // A ranged GET reports the object's full length after the slash of "bytes 0-99/1234"
+    private static long totalLength(GetObjectResponse response) {
+        String contentRange = response.contentRange();
+        if (contentRange != null) {
+            int slash = contentRange.lastIndexOf('/');
+            if (slash >= 0 && !contentRange.endsWith("*")) {
+                return Long.parseLong(contentRange.substring(slash + 1));
+            }
+        }
+        return response.contentLength();
+    }
+
+    private static InputStream openSlice(Path filePath, long position, long length) {
+        try {
+            InputStream in = Files.newInputStream(filePath);
+            in.skipNBytes(position);
+            return new BoundedInputStream(in, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + filePath, e);
+        }
+    }
+
+    private boolean isCached(String bucket) {
+        // Only processed HLS output is immutable and hot enough to be worth caching
+        return objectCache.isEnabled() && PROCESSED_BUCKET.equals(bucket);
+    }
+
+    private CachedObject cachedObject(String bucket, String key) {
+        if (!isCached(bucket)) {
+            return null;
+        }
+        return objectCache.get(bucket, key, () -> fetchForCache(bucket, key));
+    }
+
+    private CachedObject fetchForCache(String bucket, String key) {
+        try (var stream = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build())) {
+            var response = stream.response();
+            if (response.contentLength() > objectCache.maxObjectSize()) {
+                stream.abort();
+                return null;
+            }
+            byte[] content = stream.readAllBytes();
+            var info = new ObjectInfo(content.length, response.eTag(), response.lastModified());
+            return new CachedObject(info, ByteBuffer.wrap(content));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + bucket + "/" + key, e);
+        }
+    }
+
     private void createBucketIfNotExists(String bucket) {
         try {
             s3Client.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
@@ -0,0 +1,26 @@
+package com.learnstream.storage;
+
+import software.amazon.awssdk.http.Abortable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+// An open GET: the object's validators plus the body of the requested range
+public record StoredObject(
+        ObjectInfo info,
+        InputStream content
+) implements Closeable {
+
+    // Gives up on the rest of the body; an S3 connection is dropped instead of being drained
+    public void abort() {
+        if (content instanceof Abortable abortable) {
+            abortable.abort();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        content.close();
+    }
+}
@@ -0,0 +1,7 @@
+package com.learnstream.storage;
+
+public record UploadedPart(
+        int partNumber,
+        String eTag,
+        long size
+) {}
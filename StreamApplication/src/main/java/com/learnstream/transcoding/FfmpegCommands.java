@@ -0,0 +1,254 @@
+package com.learnstream.transcoding;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class FfmpegCommands {
+
+    static final int SEGMENT_SECONDS = 6;
+
+    private static final int SPRITE_INTERVAL_SECS = 10;
+    private static final int SPRITE_TILE_WIDTH = 160;
+    private static final String SPRITE_GRID = "10x10";
+    private static final Pattern DURATION = Pattern.compile("Duration: (\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+    private static final Pattern OUT_TIME_US = Pattern.compile("(?m)^out_time_us=(\\d+)$");
+    private static final Pattern URL_QUERY = Pattern.compile("(https?://[^\\s?'\"]*)\\?[^\\s'\"]*");
+
+    private final TranscodingConfig config;
+
+    FfmpegCommands(TranscodingConfig config) {
+        this.config = config;
+    }
+
+    List<String> probeDuration(String input) {
+        return List.of(
+                config.ffprobePath(),
+                "-v", "error",
+                "-show_entries", "format=duration",
+                "-of", "default=noprint_wrappers=1:nokey=1",
+                input
+        );
+    }
+
+    // Duration and the first video stream's size, read from the headers only
+    List<String> probeVideo(String input) {
+        return List.of(
+                config.ffprobePath(),
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "stream=width,height:format=duration",
+                "-of", "default=noprint_wrappers=1",
+                input
+        );
+    }
+
+    // Index of the first audio stream; empty output when the source has none
+    List<String> probeAudio(String input) {
+        return List.of(
+                config.ffprobePath(),
+                "-v", "error",
+                "-select_streams", "a:0",
+                "-show_entries", "stream=index",
+                "-of", "csv=p=0",
+                input
+        );
+    }
+
+    // Constant-quality, low-resolution encode of one window; its bitrate is the complexity measure
+    List<String> complexityProbe(String input, LadderPlanner.Sample sample, Path output) {
+        var cmd = new ArrayList<String>();
+        cmd.add(config.ffmpegPath());
+        cmd.add("-nostats");
+        cmd.add("-ss"); cmd.add(String.valueOf(sample.startSecs()));
+        addInput(cmd, input);
+        cmd.add("-t"); cmd.add(String.valueOf(sample.lengthSecs()));
+        cmd.add("-map"); cmd.add("0:v:0");
+        cmd.add("-vf"); cmd.add("scale=-2:" + LadderPlanner.PROBE_HEIGHT);
+        cmd.add("-c:v"); cmd.add("libx264");
+        cmd.add("-preset"); cmd.add("veryfast");
+        cmd.add("-crf"); cmd.add(String.valueOf(LadderPlanner.PROBE_CRF));
+        cmd.add("-threads"); cmd.add("1");
+        cmd.add("-an");
+        cmd.add("-f"); cmd.add("matroska");
+        cmd.add("-y");
+        cmd.add(output.toString());
+        return cmd;
+    }
+
+    List<String> thumbnail(String input, Path thumbnailFile) {
+        return List.of(
+                config.ffmpegPath(),
+                "-i", input,
+                "-ss", "00:00:01",
+                "-vframes", "1",
+                "-vf", "scale=640:-1",
+                "-y",
+                thumbnailFile.toString()
+        );
+    }
+
+    List<String> rendition(String input, Path hlsDir, TranscodingConfig.QualityPreset q, int threads, Window window) {
+        var cmd = new ArrayList<String>();
+        cmd.add(config.ffmpegPath());
+        if (window != null) {
+            cmd.add("-ss"); cmd.add(String.valueOf(window.startSecs()));
+        }
+        addInput(cmd, input);
+        if (window != null) {
+            // Keep timestamps and segment numbers continuous across chunks
+            cmd.add("-t"); cmd.add(String.valueOf(window.lengthSecs()));
+            cmd.add("-output_ts_offset"); cmd.add(String.valueOf(window.startSecs()));
+            cmd.add("-start_number"); cmd.add(String.valueOf(window.startSegment()));
+        }
+        cmd.add("-map"); cmd.add("0:v:0");
+        cmd.add("-s:v"); cmd.add(q.width() + "x" + q.height());
+        // AAC frames do not line up with chunk cuts, so chunks are video-only and the audio() rendition
+        // covers the whole file
+        addHlsOutput(cmd, hlsDir, q, threads, window == null);
+        cmd.add("-y");
+        cmd.add(hlsDir.resolve(HlsPlaylists.mediaPlaylistName(q)).toString());
+        return cmd;
+    }
+
+    // The whole file's audio as its own HLS rendition, shared by every video rendition of a chunked job
+    List<String> audio(String input, Path hlsDir) {
+        var cmd = new ArrayList<String>();
+        cmd.add(config.ffmpegPath());
+        addInput(cmd, input);
+        cmd.add("-map"); cmd.add("0:a:0");
+        cmd.add("-vn");
+        cmd.add("-c:a"); cmd.add("aac");
+        cmd.add("-b:a"); cmd.add(HlsPlaylists.audioBitrate());
+        addHlsMuxer(cmd);
+        cmd.add("-hls_segment_filename");
+        cmd.add(hlsDir.resolve(HlsPlaylists.AUDIO_SEGMENTS).toString());
+        cmd.add("-y");
+        cmd.add(hlsDir.resolve(HlsPlaylists.AUDIO_PLAYLIST).toString());
+        return cmd;
+    }
+
+    // One decode feeding every rendition, the thumbnail and the sprite sheets through a split filter
+    List<String> singlePass(String input, Path hlsDir, Path thumbnailFile, Path spriteDir, Path progressFile,
+                            List<TranscodingConfig.QualityPreset> qualities, List<Integer> threads) {
+        var graph = new StringBuilder("[0:v]split=").append(qualities.size() + 2);
+        for (int i = 0; i < qualities.size(); i++) {
+            graph.append("[s").append(i).append(']');
+        }
+        graph.append("[thumb_in][sprite_in]");
+        for (int i = 0; i < qualities.size(); i++) {
+            var q = qualities.get(i);
+            graph.append(";[s").append(i).append("]scale=").append(q.width()).append(':').append(q.height())
+                    .append("[v").append(i).append(']');
+        }
+        graph.append(";[thumb_in]trim=start=1,setpts=PTS-STARTPTS,scale=640:-2[thumb]");
+        graph.append(";[sprite_in]fps=1/").append(SPRITE_INTERVAL_SECS)
+                .append(",scale=").append(SPRITE_TILE_WIDTH).append(":-2,tile=").append(SPRITE_GRID)
+                .append("[sprite]");
+
+        var cmd = new ArrayList<String>();
+        cmd.add(config.ffmpegPath());
+        cmd.add("-nostats");
+        cmd.add("-progress"); cmd.add(progressFile.toString());
+        cmd.add("-y");
+        addInput(cmd, input);
+        cmd.add("-filter_complex"); cmd.add(graph.toString());
+        for (int i = 0; i < qualities.size(); i++) {
+            var q = qualities.get(i);
+            cmd.add("-map"); cmd.add("[v" + i + "]");
+            addHlsOutput(cmd, hlsDir, q, threads.get(i), true);
+            cmd.add(hlsDir.resolve(HlsPlaylists.mediaPlaylistName(q)).toString());
+        }
+        cmd.add("-map"); cmd.add("[thumb]");
+        cmd.add("-frames:v"); cmd.add("1");
+        cmd.add("-update"); cmd.add("1");
+        cmd.add(thumbnailFile.toString());
+        cmd.add("-map"); cmd.add("[sprite]");
+        cmd.add(spriteDir.resolve("sprite_%03d.jpg").toString());
+        return cmd;
+    }
+
+    // For command lines and ffmpeg output going to the logs. A streamed input is a presigned URL whose
+    // query string is a usable credential until it expires, so only its scheme, host and path are kept.
+    static String redact(String text) {
+        return URL_QUERY.matcher(text).replaceAll("$1?<redacted>");
+    }
+
+    static SourceInfo parseSource(String probeOutput) {
+        var values = new HashMap<String, String>();
+        for (String line : probeOutput.split("\\R")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                values.putIfAbsent(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        }
+        if (!values.containsKey("width") || !values.containsKey("height") || !values.containsKey("duration")) {
+            throw new IllegalArgumentException("Incomplete ffprobe output: " + probeOutput);
+        }
+        return new SourceInfo(Double.parseDouble(values.get("duration")),
+                Integer.parseInt(values.get("width")), Integer.parseInt(values.get("height")));
+    }
+
+    // Container duration from the input banner, falling back to the last progress timestamp
+    static OptionalDouble parseDuration(String ffmpegLog, String progress) {
+        Matcher banner = DURATION.matcher(ffmpegLog);
+        if (banner.find()) {
+            return OptionalDouble.of(Integer.parseInt(banner.group(1)) * 3600
+                    + Integer.parseInt(banner.group(2)) * 60
+                    + Double.parseDouble(banner.group(3)));
+        }
+        Matcher outTime = OUT_TIME_US.matcher(progress);
+        long last = -1;
+        while (outTime.find()) {
+            last = Long.parseLong(outTime.group(1));
+        }
+        return last >= 0 ? OptionalDouble.of(last / 1_000_000.0) : OptionalDouble.empty();
+    }
+
+    private void addInput(List<String> cmd, String input) {
+        if (config.streamInput()) {
+            cmd.add("-reconnect"); cmd.add("1");
+            cmd.add("-reconnect_on_network_error"); cmd.add("1");
+        }
+        cmd.add("-i"); cmd.add(input);
+    }
+
+    private void addHlsOutput(List<String> cmd, Path hlsDir, TranscodingConfig.QualityPreset q, int threads,
+                              boolean withAudio) {
+        if (withAudio) {
+            cmd.add("-map"); cmd.add("0:a:0?");
+        }
+        cmd.add("-c:v"); cmd.add("libx264");
+        cmd.add("-b:v"); cmd.add(q.bitrate());
+        // Renditions are encoded independently, so pin keyframes to the segment
+        // grid to keep segment boundaries aligned for ABR switching
+        cmd.add("-force_key_frames"); cmd.add("expr:gte(t,n_forced*" + SEGMENT_SECONDS + ")");
+        if (withAudio) {
+            cmd.add("-c:a"); cmd.add("aac");
+            cmd.add("-b:a"); cmd.add(HlsPlaylists.audioBitrate());
+        } else {
+            cmd.add("-an");
+        }
+        cmd.add("-threads"); cmd.add(String.valueOf(threads));
+        addHlsMuxer(cmd);
+        cmd.add("-hls_segment_filename");
+        cmd.add(hlsDir.resolve("stream_" + q.label() + "_%03d.ts").toString());
+    }
+
+    private void addHlsMuxer(List<String> cmd) {
+        cmd.add("-f"); cmd.add("hls");
+        cmd.add("-hls_time"); cmd.add(String.valueOf(SEGMENT_SECONDS));
+        cmd.add("-hls_list_size"); cmd.add("0");
+        if (config.pipelinedUpload()) {
+            cmd.add("-hls_flags"); cmd.add("temp_file");
+        }
+    }
+
+    record Window(int index, int startSecs, int lengthSecs, int startSegment) {}
+
+    record SourceInfo(double durationSecs, int width, int height) {}
+}
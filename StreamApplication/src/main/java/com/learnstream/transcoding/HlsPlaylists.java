@@ -0,0 +1,90 @@
+package com.learnstream.transcoding;
+
+import java.util.List;
+
+final class HlsPlaylists {
+
+    static final String AUDIO_PLAYLIST = "stream_audio.m3u8";
+    static final String AUDIO_SEGMENTS = "stream_audio_%03d.ts";
+
+    private static final String AUDIO_BITRATE = "128k";
+    private static final String AUDIO_GROUP = "audio";
+
+    private HlsPlaylists() {}
+
+    static String master(List<TranscodingConfig.QualityPreset> qualities) {
+        return master(qualities, false);
+    }
+
+    // With separateAudio the renditions are video-only and all point at the one AUDIO_PLAYLIST rendition
+    static String master(List<TranscodingConfig.QualityPreset> qualities, boolean separateAudio) {
+        var playlist = new StringBuilder("#EXTM3U\n");
+        if (separateAudio) {
+            playlist.append("#EXT-X-VERSION:4\n")
+                    .append("#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"").append(AUDIO_GROUP)
+                    .append("\",NAME=\"default\",DEFAULT=YES,AUTOSELECT=YES,URI=\"").append(AUDIO_PLAYLIST)
+                    .append("\"\n");
+        } else {
+            playlist.append("#EXT-X-VERSION:3\n");
+        }
+        for (var q : qualities) {
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(bandwidth(q))
+                    .append(",RESOLUTION=").append(q.width()).append('x').append(q.height());
+            if (separateAudio) {
+                playlist.append(",AUDIO=\"").append(AUDIO_GROUP).append('"');
+            }
+            playlist.append('\n').append(mediaPlaylistName(q)).append('\n');
+        }
+        return playlist.toString();
+    }
+
+    // Concatenates the per-chunk media playlists of one rendition. Segment numbering is already
+    // global (each chunk was encoded with its own -start_number), so only the segment entries are kept.
+    static String mergeMedia(List<String> chunkPlaylists) {
+        var segments = new StringBuilder();
+        double maxDuration = 0;
+        for (String chunk : chunkPlaylists) {
+            String pendingInf = null;
+            for (String line : chunk.split("\\R")) {
+                if (line.startsWith("#EXTINF:")) {
+                    pendingInf = line;
+                    String value = line.substring("#EXTINF:".length());
+                    int comma = value.indexOf(',');
+                    maxDuration = Math.max(maxDuration, Double.parseDouble(comma >= 0 ? value.substring(0, comma) : value));
+                } else if (!line.isBlank() && !line.startsWith("#")) {
+                    if (pendingInf == null) {
+                        throw new IllegalArgumentException("Segment without #EXTINF: " + line);
+                    }
+                    segments.append(pendingInf).append('\n').append(line).append('\n');
+                    pendingInf = null;
+                }
+            }
+        }
+        return "#EXTM3U\n"
+                + "#EXT-X-VERSION:3\n"
+                + "#EXT-X-TARGETDURATION:" + (int) Math.ceil(maxDuration) + "\n"
+                + "#EXT-X-MEDIA-SEQUENCE:0\n"
+                + "#EXT-X-PLAYLIST-TYPE:VOD\n"
+                + segments
+                + "#EXT-X-ENDLIST\n";
+    }
+
+    static String mediaPlaylistName(TranscodingConfig.QualityPreset q) {
+        return "stream_" + q.label() + ".m3u8";
+    }
+
+    static String audioBitrate() {
+        return AUDIO_BITRATE;
+    }
+
+    private static long bandwidth(TranscodingConfig.QualityPreset q) {
+        return parseBitrate(q.bitrate()) + parseBitrate(AUDIO_BITRATE);
+    }
+
+    static long parseBitrate(String bitrate) {
+        String value = bitrate.trim().toLowerCase();
+        if (value.endsWith("k")) return Long.parseLong(value.substring(0, value.length() - 1)) * 1_000;
+        if (value.endsWith("m")) return Long.parseLong(value.substring(0, value.length() - 1)) * 1_000_000;
+        return Long.parseLong(value);
+    }
+}
@@ -0,0 +1,363 @@
+package com.learnstream.transcoding;
+
+import com.learnstream.storage.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Component
+public class HlsUploader {
+
+    private static final Logger log = LoggerFactory.getLogger(HlsUploader.class);
+    private static final String MASTER_PLAYLIST = "master.m3u8";
+    private static final String SEGMENT_SUFFIX = ".ts";
+    private static final long RETRY_BASE_DELAY_MS = 200;
+    private static final long WATCH_INTERVAL_MS = 500;
+    private static final long DISCARD_WAIT_SECONDS = 30;
+
+    private final StorageService storageService;
+    private final TranscodingConfig config;
+
+    public HlsUploader(StorageService storageService, TranscodingConfig config) {
+        this.storageService = storageService;
+        this.config = config;
+    }
+
+    public void uploadDirectory(Path dir, String bucket, String prefix) throws IOException, InterruptedException {
+        uploadDirectory(dir, bucket, prefix, false);
+    }
+
+    // skipExisting is for retried jobs: files already stored under the same key with the same
+    // size are left alone instead of being uploaded again
+    public void uploadDirectory(Path dir, String bucket, String prefix, boolean skipExisting)
+            throws IOException, InterruptedException {
+        long started = System.nanoTime();
+
+        List<Path> files = listFiles(dir);
+        long bytes = totalSize(files);
+        var stored = skipExisting ? storageService.listObjectSizes(bucket, prefix) : Map.<String, Long>of();
+        var skipped = new AtomicInteger();
+        uploadInOrder(dir, bucket, prefix, files, stored, skipped, ConcurrentHashMap.newKeySet());
+
+        log.info("Uploaded {} HLS files ({} bytes, {} already stored) to {}/{} in {} ms",
+                files.size(), bytes, skipped.get(), bucket, prefix, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public PipelinedUpload startPipelined(Path dir, String bucket, String prefix) throws IOException {
+        return startPipelined(dir, bucket, prefix, false);
+    }
+
+    public PipelinedUpload startPipelined(Path dir, String bucket, String prefix, boolean skipExisting)
+            throws IOException {
+        var stored = skipExisting ? storageService.listObjectSizes(bucket, prefix) : Map.<String, Long>of();
+        return new PipelinedUpload(dir, bucket, prefix, stored);
+    }
+
+    // Uploads finished segments while ffmpeg is still writing the rest. Relies on
+    // -hls_flags temp_file: a segment only appears under its .ts name once it is complete.
+    // Playlists are held back until finish(); an encode that fails instead calls discard().
+    public final class PipelinedUpload implements AutoCloseable {
+
+        private final Path dir;
+        private final String bucket;
+        private final String prefix;
+        private final Map<String, Long> stored;
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final long started = System.nanoTime();
+        private final Semaphore permits = new Semaphore(config.uploadConcurrency());
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final Set<Path> submitted = ConcurrentHashMap.newKeySet();
+        private final Set<String> uploaded = ConcurrentHashMap.newKeySet();
+        private final Queue<Future<?>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicLong segmentBytes = new AtomicLong();
+        private final Thread watcher;
+        private volatile boolean watching = true;
+        private volatile Exception watchFailure;
+
+        private PipelinedUpload(Path dir, String bucket, String prefix, Map<String, Long> stored)
+                throws IOException {
+            this.dir = dir;
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.stored = stored;
+            WatchService watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+            this.watcher = Thread.ofVirtual().name("hls-watch-" + dir.getFileName()).start(() -> watch(watchService));
+        }
+
+        public void finish() throws IOException, InterruptedException {
+            watching = false;
+            watcher.interrupt();
+            watcher.join();
+            if (watchFailure != null) {
+                throw new IOException("HLS segment watcher failed: " + watchFailure.getMessage(), watchFailure);
+            }
+
+            // Pick up whatever was finalised after the last wake-up, then drain
+            submitSegments();
+            try {
+                for (Future<?> upload : pending) {
+                    upload.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IOException("HLS upload failed: " + e.getCause().getMessage(), e.getCause());
+            }
+
+            List<Path> remaining = listFiles(dir);
+            long bytes = segmentBytes.get() + totalSize(remaining);
+            uploadInOrder(dir, bucket, prefix, remaining, stored, skipped, uploaded);
+
+            log.info("Uploaded {} HLS files ({} bytes, {} streamed during encode, {} already stored) to {}/{} in {} ms",
+                    submitted.size() + remaining.size(), bytes, submitted.size(), skipped.get(), bucket, prefix,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+
+        // Deletes what this upload stored so far, for an encode that failed partway: no playlist
+        // will ever reference those segments. Objects that were already there are left alone.
+        public void discard() throws InterruptedException {
+            close();
+            if (!executor.awaitTermination(DISCARD_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Uploads to {}/{} still running after {} s, deleting what finished",
+                        bucket, prefix, DISCARD_WAIT_SECONDS);
+            }
+            int deleted = 0;
+            for (String key : uploaded) {
+                try {
+                    storageService.delete(bucket, key);
+                    deleted++;
+                } catch (SdkException e) {
+                    log.warn("Could not delete {}/{} of a failed encode: {}", bucket, key, e.getMessage());
+                }
+            }
+            log.info("Discarded {} of {} HLS files uploaded to {}/{}", deleted, uploaded.size(), bucket, prefix);
+        }
+
+        @Override
+        public void close() {
+            watching = false;
+            watcher.interrupt();
+            executor.shutdownNow();
+        }
+
+        private void watch(WatchService watchService) {
+            try (watchService) {
+                while (watching) {
+                    submitSegments();
+                    WatchKey key = watchService.poll(WATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // finish() or close() stopped the watcher
+            } catch (Exception e) {
+                watchFailure = e;
+            }
+        }
+
+        // Rescan instead of trusting individual events so overflowed or coalesced events are harmless
+        private synchronized void submitSegments() throws IOException {
+            List<Path> segments;
+            try (Stream<Path> list = Files.list(dir)) {
+                segments = list.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+            }
+            for (Path segment : segments) {
+                if (!submitted.add(segment)) {
+                    continue;
+                }
+                permits.acquireUninterruptibly();
+                pending.add(executor.submit(() -> {
+                    try {
+                        long size = Files.size(segment);
+                        String key = prefix + segment.getFileName();
+                        if (isStored(stored, key, size)) {
+                            skipped.incrementAndGet();
+                        } else {
+                            uploadWithRetry(segment, bucket, key);
+                            uploaded.add(key);
+                        }
+                        segmentBytes.addAndGet(size);
+                        Files.deleteIfExists(segment);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
+            }
+        }
+    }
+
+    // Server-side copy of every object under sourcePrefix, e.g. the output of an identical upload.
+    // The target is not served until its video is marked READY, so order does not matter here.
+    public int copyPrefix(String bucket, String sourcePrefix, String targetPrefix)
+            throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        var keys = storageService.listObjectSizes(bucket, sourcePrefix).keySet();
+
+        var permits = new Semaphore(config.uploadConcurrency());
+        var pending = new ArrayList<Future<?>>(keys.size());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String key : keys) {
+                String target = targetPrefix + key.substring(sourcePrefix.length());
+                permits.acquire();
+                pending.add(executor.submit(() -> {
+                    try {
+                        withRetry("Copy", target, () -> storageService.copy(bucket, key, target));
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> copy : pending) {
+                copy.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("HLS copy failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        log.info("Copied {} objects from {}/{} to {} in {} ms",
+                keys.size(), bucket, sourcePrefix, targetPrefix, (System.nanoTime() - started) / 1_000_000);
+        return keys.size();
+    }
+
+    private void uploadInOrder(Path dir, String bucket, String prefix, List<Path> files,
+                               Map<String, Long> stored, AtomicInteger skipped, Set<String> uploaded)
+            throws IOException, InterruptedException {
+        // Segments first, then variant playlists, then the master playlist, so a reader
+        // never sees a playlist that references an object that is not there yet
+        uploadAll(dir, bucket, prefix, files.stream().filter(f -> !isPlaylist(f)).toList(), stored, skipped,
+                uploaded);
+        uploadAll(dir, bucket, prefix, files.stream().filter(f -> isPlaylist(f) && !isMaster(f)).toList(),
+                stored, skipped, uploaded);
+        uploadAll(dir, bucket, prefix, files.stream().filter(this::isMaster).toList(), stored, skipped, uploaded);
+    }
+
+    private void uploadAll(Path dir, String bucket, String prefix, List<Path> files,
+                           Map<String, Long> stored, AtomicInteger skipped, Set<String> uploaded)
+            throws IOException, InterruptedException {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        var permits = new Semaphore(config.uploadConcurrency());
+        var pending = new ArrayList<Future<?>>(files.size());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : files) {
+                String key = prefix + dir.relativize(file).toString().replace('\\', '/');
+                if (isStored(stored, key, Files.size(file))) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                permits.acquire();
+                pending.add(executor.submit(() -> {
+                    try {
+                        uploadWithRetry(file, bucket, key);
+                        uploaded.add(key);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> upload : pending) {
+                upload.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("HLS upload failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void uploadWithRetry(Path file, String bucket, String key) throws InterruptedException {
+        String contentType = guessContentType(file.getFileName().toString());
+        withRetry("Upload", key, () -> storageService.uploadFile(bucket, key, file, contentType));
+    }
+
+    private void withRetry(String operation, String key, Runnable request) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                request.run();
+                return;
+            } catch (SdkException e) {
+                if (attempt >= config.uploadMaxAttempts() || !isTransient(e)) {
+                    throw e;
+                }
+                long delay = RETRY_BASE_DELAY_MS * (1L << (attempt - 1));
+                log.warn("{} of {} failed (attempt {}), retrying in ~{} ms: {}",
+                        operation, key, attempt, delay, e.getMessage());
+                Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay));
+            }
+        }
+    }
+
+    private boolean isStored(Map<String, Long> stored, String key, long size) {
+        Long storedSize = stored.get(key);
+        return storedSize != null && storedSize == size;
+    }
+
+    private boolean isTransient(SdkException e) {
+        if (e instanceof SdkClientException) {
+            return true;
+        }
+        return e instanceof AwsServiceException ase
+                && (ase.statusCode() >= 500 || ase.isThrottlingException());
+    }
+
+    private List<Path> listFiles(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private long totalSize(List<Path> files) throws IOException {
+        long bytes = 0;
+        for (Path file : files) {
+            bytes += Files.size(file);
+        }
+        return bytes;
+    }
+
+    private boolean isPlaylist(Path file) {
+        return file.getFileName().toString().endsWith(".m3u8");
+    }
+
+    private boolean isMaster(Path file) {
+        return file.getFileName().toString().equals(MASTER_PLAYLIST);
+    }
+
+    static String guessContentType(String filename) {
+        if (filename.endsWith(".m3u8")) return "application/vnd.apple.mpegurl";
+        if (filename.endsWith(".ts")) return "video/mp2t";
+        if (filename.endsWith(".jpg") || filename.endsWith(".jpeg")) return "image/jpeg";
+        return "application/octet-stream";
+    }
+}
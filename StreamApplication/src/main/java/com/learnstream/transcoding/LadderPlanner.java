@@ -0,0 +1,84 @@
+package com.learnstream.transcoding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Per-title ladder. A few windows of the source are encoded at low resolution with constant quality;
+// the resulting bitrate says how compressible the content is. The configured bitrates are scaled by
+// that against reference-kbps (a slide deck lands near the floor, fast motion keeps the full ladder),
+// renditions the source cannot fill are dropped, and sizes follow the source aspect ratio.
+@Component
+public class LadderPlanner {
+
+    static final int PROBE_HEIGHT = 180;
+    static final int PROBE_CRF = 28;
+
+    private static final int MIN_BITRATE_KBPS = 100;
+
+    private final boolean perTitle;
+    private final int samples;
+    private final int sampleSeconds;
+    private final double referenceKbps;
+    private final double minBitrateFactor;
+
+    public LadderPlanner(@Value("${transcoding.ladder.per-title}") boolean perTitle,
+                         @Value("${transcoding.ladder.probe-samples}") int samples,
+                         @Value("${transcoding.ladder.probe-sample-seconds}") int sampleSeconds,
+                         @Value("${transcoding.ladder.reference-kbps}") double referenceKbps,
+                         @Value("${transcoding.ladder.min-bitrate-factor}") double minBitrateFactor) {
+        this.perTitle = perTitle;
+        this.samples = samples;
+        this.sampleSeconds = sampleSeconds;
+        this.referenceKbps = referenceKbps;
+        this.minBitrateFactor = minBitrateFactor;
+    }
+
+    public boolean perTitle() {
+        return perTitle;
+    }
+
+    // Evenly spread windows; short videos are probed whole
+    List<Sample> sampleWindows(double durationSecs) {
+        if (durationSecs <= (double) samples * sampleSeconds) {
+            return List.of(new Sample(0, Math.max(1, durationSecs)));
+        }
+        var windows = new ArrayList<Sample>(samples);
+        for (int i = 0; i < samples; i++) {
+            double center = durationSecs * (i + 0.5) / samples;
+            windows.add(new Sample(center - sampleSeconds / 2.0, sampleSeconds));
+        }
+        return windows;
+    }
+
+    List<TranscodingConfig.QualityPreset> plan(List<TranscodingConfig.QualityPreset> configured,
+                                               int sourceWidth, int sourceHeight, double complexityKbps) {
+        double factor = Math.clamp(complexityKbps / referenceKbps, minBitrateFactor, 1.0);
+        var ladder = new ArrayList<TranscodingConfig.QualityPreset>();
+        var rungs = configured.stream()
+                .sorted(Comparator.comparingInt(TranscodingConfig.QualityPreset::height))
+                .toList();
+        for (var q : rungs) {
+            // Never upscale; a source below the lowest rung still gets that rung at its own size
+            if (q.height() > sourceHeight && !ladder.isEmpty()) {
+                break;
+            }
+            int height = even(Math.min(q.height(), sourceHeight));
+            int width = even((double) height * sourceWidth / sourceHeight);
+            double pixelRatio = Math.min(1.0, (double) width * height / ((double) q.width() * q.height()));
+            long kbps = Math.round(HlsPlaylists.parseBitrate(q.bitrate()) / 1000.0 * factor * pixelRatio / 10) * 10;
+            ladder.add(new TranscodingConfig.QualityPreset(q.label(), width, height,
+                    Math.max(MIN_BITRATE_KBPS, kbps) + "k"));
+        }
+        return ladder;
+    }
+
+    private static int even(double value) {
+        return Math.max(2, (int) Math.round(value / 2) * 2);
+    }
+
+    record Sample(double startSecs, double lengthSecs) {}
+}
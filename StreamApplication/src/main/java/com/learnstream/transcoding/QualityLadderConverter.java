@@ -0,0 +1,44 @@
+package com.learnstream.transcoding;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Stores a ladder as "label:WxH:bitrate" entries separated by commas
+@Converter
+public class QualityLadderConverter implements AttributeConverter<List<TranscodingConfig.QualityPreset>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(List<TranscodingConfig.QualityPreset> ladder) {
+        if (ladder == null) {
+            return null;
+        }
+        return ladder.stream()
+                .map(q -> {
+                    // Labels are checked by QualityPreset; a bitrate has no reason to contain a separator
+                    if (q.bitrate().contains(":") || q.bitrate().contains(",")) {
+                        throw new IllegalArgumentException("Unstorable bitrate for " + q.label() + ": " + q.bitrate());
+                    }
+                    return q.label() + ":" + q.width() + "x" + q.height() + ":" + q.bitrate();
+                })
+                .collect(Collectors.joining(","));
+    }
+
+    @Override
+    public List<TranscodingConfig.QualityPreset> convertToEntityAttribute(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return Arrays.stream(value.split(","))
+                .map(entry -> {
+                    String[] parts = entry.split(":");
+                    String[] size = parts[1].split("x");
+                    return new TranscodingConfig.QualityPreset(parts[0],
+                            Integer.parseInt(size[0]), Integer.parseInt(size[1]), parts[2]);
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,82 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Samples the size of a job's work directory and records the peak when closed
+final class TempDiskMeter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TempDiskMeter.class);
+    private static final long SAMPLE_INTERVAL_MS = 1_000;
+
+    private final Path dir;
+    private final DistributionSummary summary;
+    private final AtomicLong peak = new AtomicLong();
+    private final Thread sampler;
+
+    private TempDiskMeter(Path dir, DistributionSummary summary) {
+        this.dir = dir;
+        this.summary = summary;
+        this.sampler = Thread.ofVirtual().name("temp-disk-" + dir.getFileName()).start(this::sampleLoop);
+    }
+
+    static TempDiskMeter start(Path dir, DistributionSummary summary) {
+        return new TempDiskMeter(dir, summary);
+    }
+
+    long peak() {
+        return peak.get();
+    }
+
+    @Override
+    public void close() {
+        sampler.interrupt();
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+        summary.record(peak.get());
+        log.info("Peak temp disk use for {}: {} bytes", dir.getFileName(), peak.get());
+    }
+
+    private void sampleLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            sample();
+            try {
+                Thread.sleep(SAMPLE_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sample() {
+        try (Stream<Path> files = Files.walk(dir)) {
+            long size = files.mapToLong(TempDiskMeter::sizeOf).sum();
+            peak.accumulateAndGet(size, Math::max);
+        } catch (IOException | UncheckedIOException e) {
+            // Files come and go while ffmpeg and the uploader run; the next sample will catch up
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.isRegularFile(file) ? Files.size(file) : 0;
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
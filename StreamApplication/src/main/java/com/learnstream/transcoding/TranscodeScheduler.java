@@ -0,0 +1,115 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class TranscodeScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodeScheduler.class);
+
+    private final int coreBudget;
+    // Fair, so a 1080p task waiting for many cores is not starved by a stream of 360p tasks
+    private final Semaphore cores;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    public TranscodeScheduler(TranscodingConfig config, MeterRegistry meterRegistry) {
+        this.coreBudget = config.cpuBudget() > 0 ? config.cpuBudget() : Runtime.getRuntime().availableProcessors();
+        this.cores = new Semaphore(coreBudget, true);
+
+        Gauge.builder("transcoding.scheduler.queued", queued, AtomicInteger::get)
+                .description("Transcoding tasks waiting for CPU budget")
+                .register(meterRegistry);
+        Gauge.builder("transcoding.scheduler.running", running, AtomicInteger::get)
+                .description("Transcoding tasks currently running")
+                .register(meterRegistry);
+        Gauge.builder("transcoding.scheduler.utilization", this, s -> s.busyCores() / (double) s.coreBudget)
+                .description("Fraction of the core budget reserved by running tasks")
+                .register(meterRegistry);
+    }
+
+    public int coreBudget() {
+        return coreBudget;
+    }
+
+    // Share of the core budget proportional to pixel count, with 360p as one core
+    public int renditionCores(TranscodingConfig.QualityPreset q) {
+        long pixels = (long) q.width() * q.height();
+        int cores = (int) Math.ceil(pixels / (640.0 * 360.0));
+        return Math.clamp(cores, 1, coreBudget);
+    }
+
+    // Each task holds its share of the core budget while it runs; if one fails the rest are interrupted
+    public void runAll(List<Task> tasks) throws IOException, InterruptedException {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var completion = new ExecutorCompletionService<Void>(executor);
+            var futures = new ArrayList<Future<Void>>(tasks.size());
+            for (Task task : tasks) {
+                futures.add(completion.submit(() -> {
+                    run(task);
+                    return null;
+                }));
+            }
+            try {
+                // Completion order, so the first failure is seen while siblings are still running
+                for (int i = 0; i < futures.size(); i++) {
+                    completion.take().get();
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw e;
+            }
+        }
+    }
+
+    private void run(Task task) throws Exception {
+        int share = Math.min(task.cores(), coreBudget);
+        queued.incrementAndGet();
+        try {
+            cores.acquire(share);
+        } finally {
+            queued.decrementAndGet();
+        }
+        running.incrementAndGet();
+        long started = System.nanoTime();
+        try {
+            task.work().run();
+            log.info("Transcoding task {} finished on {} cores in {} ms",
+                    task.name(), share, (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            running.decrementAndGet();
+            cores.release(share);
+        }
+    }
+
+    private int busyCores() {
+        return coreBudget - cores.availablePermits();
+    }
+
+    public record Task(String name, int cores, Work work) {}
+
+    @FunctionalInterface
+    public interface Work {
+        void run() throws IOException, InterruptedException;
+    }
+}
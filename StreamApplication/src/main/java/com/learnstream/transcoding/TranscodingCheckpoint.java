@@ -0,0 +1,18 @@
+package com.learnstream.transcoding;
+
+// Stages of a FULL job recorded in transcoding_checkpoints. Each one is written only after its
+// output is in the processed bucket (or, for downloads, on local disk), so a retry can skip it.
+final class TranscodingCheckpoint {
+
+    static final String DOWNLOADED = "downloaded";
+    static final String PROBED = "probed";
+    static final String THUMBNAIL = "thumbnail";
+    static final String UPLOADED = "uploaded";
+
+    private TranscodingCheckpoint() {
+    }
+
+    static String rendition(TranscodingConfig.QualityPreset q) {
+        return "rendition:" + q.label();
+    }
+}
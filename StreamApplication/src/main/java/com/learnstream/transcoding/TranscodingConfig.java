@@ -2,7 +2,9 @@ package com.learnstream.transcoding;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.regex.Pattern;
 
 @ConfigurationProperties(prefix = "transcoding")
 public record TranscodingConfig(
@@ -10,12 +12,33 @@ public record TranscodingConfig(
         String ffprobePath,
         String tempDir,
         String topic,
-        List<QualityPreset> qualities
+        List<QualityPreset> qualities,
+        int uploadConcurrency,
+        int uploadMaxAttempts,
+        boolean pipelinedUpload,
+        int cpuBudget,
+        int concurrentJobs,
+        boolean chunkedEncoding,
+        int chunkSeconds,
+        int chunkMinDurationSecs,
+        boolean streamInput,
+        Duration inputUrlTtl,
+        boolean singlePass
 ) {
     public record QualityPreset(
             String label,
             int width,
             int height,
             String bitrate
-    ) {}
+    ) {
+        // The label names playlist and segment files and is stored in a job's ladder column
+        private static final Pattern LABEL = Pattern.compile("[A-Za-z0-9_-]+");
+
+        public QualityPreset {
+            if (label == null || !LABEL.matcher(label).matches()) {
+                throw new IllegalArgumentException(
+                        "Quality label may only contain letters, digits, '-' and '_': " + label);
+            }
+        }
+    }
 }
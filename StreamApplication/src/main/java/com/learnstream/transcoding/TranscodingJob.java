@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
@@ -29,6 +30,42 @@ public class TranscodingJob {
     @Column(name = "error_message")
     private String errorMessage;
 
+    @Column(name = "chunk_count")
+    private Integer chunkCount;
+
+    @Column(name = "chunk_seconds")
+    private Integer chunkSeconds;
+
+    @Column(name = "chunks_completed", nullable = false)
+    private int chunksCompleted;
+
+    @Column(name = "duration_secs")
+    private Integer durationSecs;
+
+    // Ladder picked by the per-title analysis; chunk and merge tasks and retries all encode against it
+    @Convert(converter = QualityLadderConverter.class)
+    @Column(name = "ladder")
+    private List<TranscodingConfig.QualityPreset> ladder;
+
+    @Column(name = "complexity_kbps")
+    private Integer complexityKbps;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "lease_stage")
+    private TranscodingRequestedEvent.Stage leaseStage;
+
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private Instant leaseExpiresAt;
+
+    @Column(name = "heartbeat_at")
+    private Instant heartbeatAt;
+
     @Column(name = "started_at")
     private Instant startedAt;
 
@@ -51,4 +88,10 @@ public class TranscodingJob {
     protected void onUpdate() {
         updatedAt = Instant.now();
     }
+
+    public void releaseLease() {
+        leaseStage = null;
+        leaseOwner = null;
+        leaseExpiresAt = null;
+    }
 }
@@ -0,0 +1,177 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands transcoding events to a fixed set of worker slots so the poll thread keeps polling (and the
+// group membership stays alive) however long an encode takes. Backpressure is a consumer pause.
+@Component
+public class TranscodingJobListener implements ConsumerAwareRebalanceListener {
+
+    static final String LISTENER_ID = "transcoding";
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodingJobListener.class);
+
+    private final TranscodingWorker worker;
+    private final KafkaListenerEndpointRegistry registry;
+    private final int slotCount;
+    private final Semaphore slots;
+    private final ExecutorService executor;
+    private final Map<TopicPartition, TreeMap<Long, Pending>> inFlight = new HashMap<>();
+
+    public TranscodingJobListener(TranscodingWorker worker,
+                                  KafkaListenerEndpointRegistry registry,
+                                  TranscodingConfig config,
+                                  TranscodeScheduler transcodeScheduler,
+                                  MeterRegistry meterRegistry) {
+        this.worker = worker;
+        this.registry = registry;
+        this.slotCount = config.concurrentJobs() > 0 ? config.concurrentJobs() : autoSlots(config, transcodeScheduler);
+        this.slots = new Semaphore(slotCount);
+        var threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(slotCount,
+                r -> new Thread(r, "transcode-job-" + threadIndex.incrementAndGet()));
+
+        Gauge.builder("transcoding.worker.slots.busy", slots, s -> slotCount - s.availablePermits())
+                .description("Transcoding jobs running on this node")
+                .register(meterRegistry);
+        log.info("Transcoding worker running {} concurrent jobs", slotCount);
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "${transcoding.topic:transcoding-jobs}",
+            groupId = "learnstream-transcoding", containerFactory = "transcodingListenerFactory",
+            // Only take a record when a slot is free, so nothing waits in a poll batch while the node is full
+            properties = "max.poll.records=1")
+    public void onTranscodingRequested(ConsumerRecord<String, TranscodingRequestedEvent> record, Acknowledgment ack)
+            throws InterruptedException {
+        var event = record.value();
+        var partition = new TopicPartition(record.topic(), record.partition());
+        // Does not block in practice: the consumer is paused before the last slot is handed out
+        slots.acquire();
+        var pending = started(partition, record.offset(), ack);
+        updateFlow();
+        executor.execute(() -> {
+            try {
+                worker.process(event);
+                finished(partition, record.offset(), pending);
+            } catch (InterruptedException e) {
+                // Shutting down: never acknowledged, so the event is redelivered after the rebalance
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Unhandled failure in transcoding job {}", event.jobId(), e);
+                finished(partition, record.offset(), pending);
+            } finally {
+                slots.release();
+                updateFlow();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Transcoding jobs still running at shutdown");
+        }
+    }
+
+    // On the poll thread, before the partitions go. Their offsets now belong to the next owner, who will
+    // redeliver whatever is unacknowledged; jobs still running here finish but are never acknowledged.
+    // Lost partitions (no clean revoke) come through here as well.
+    @Override
+    public synchronized void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer,
+                                                            Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            var dropped = inFlight.remove(partition);
+            if (dropped != null && !dropped.isEmpty()) {
+                log.info("Partition {} revoked with {} transcoding jobs unacknowledged", partition, dropped.size());
+            }
+        }
+    }
+
+    // The container pauses newly assigned partitions itself while a pause is requested; this only
+    // re-syncs the request with the free slots in case a job finished during the rebalance
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        updateFlow();
+    }
+
+    private synchronized Pending started(TopicPartition partition, long offset, Acknowledgment ack) {
+        var pending = new Pending(ack);
+        inFlight.computeIfAbsent(partition, p -> new TreeMap<>()).put(offset, pending);
+        return pending;
+    }
+
+    // Jobs finish out of order; only acknowledge up to the first one still running on the partition,
+    // so a crash can never commit past an unfinished job
+    private synchronized void finished(TopicPartition partition, long offset, Pending job) {
+        var pending = inFlight.get(partition);
+        // Revoked while running, possibly reassigned and redelivered since; that offset is no longer this job's
+        if (pending == null || pending.get(offset) != job) {
+            return;
+        }
+        job.done = true;
+        Acknowledgment commit = null;
+        while (!pending.isEmpty() && pending.firstEntry().getValue().done) {
+            commit = pending.pollFirstEntry().getValue().ack;
+        }
+        if (commit != null) {
+            commit.acknowledge();
+        }
+    }
+
+    // Synchronized so a release racing with the last acquire cannot leave the consumer paused with a free slot
+    private synchronized void updateFlow() {
+        MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        if (slots.availablePermits() == 0) {
+            if (!container.isPauseRequested()) {
+                container.pause();
+                log.debug("All {} transcoding slots busy, consumer paused", slotCount);
+            }
+        } else if (container.isPauseRequested()) {
+            container.resume();
+            log.debug("Transcoding slot free, consumer resumed");
+        }
+    }
+
+    // Enough jobs to keep the core budget busy at full ladder width, plus one downloading or uploading alongside
+    private static int autoSlots(TranscodingConfig config, TranscodeScheduler transcodeScheduler) {
+        int ladderCores = config.qualities().stream().mapToInt(transcodeScheduler::renditionCores).sum();
+        return Math.max(1, transcodeScheduler.coreBudget() / Math.max(1, ladderCores)) + 1;
+    }
+
+    private static final class Pending {
+
+        private final Acknowledgment ack;
+        private boolean done;
+
+        private Pending(Acknowledgment ack) {
+            this.ack = ack;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.learnstream.transcoding;
+
+import com.learnstream.payment.AccessCache;
+import com.learnstream.video.VideoRepository;
+import com.learnstream.video.VideoStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Re-queues jobs whose worker stopped renewing its lease, so a crashed node no longer leaves a job
+// IN_PROGRESS forever. The retry resumes from the job's checkpoints.
+@Component
+public class TranscodingJobReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodingJobReaper.class);
+
+    private final TranscodingService transcodingService;
+    private final VideoRepository videoRepository;
+    private final AccessCache accessCache;
+    private final int batchSize;
+
+    public TranscodingJobReaper(TranscodingService transcodingService,
+                                VideoRepository videoRepository,
+                                AccessCache accessCache,
+                                @Value("${transcoding.lease.reap-batch-size}") int batchSize) {
+        this.transcodingService = transcodingService;
+        this.videoRepository = videoRepository;
+        this.accessCache = accessCache;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${transcoding.lease.reap-interval}")
+    public void reap() {
+        try {
+            for (TranscodingJob job : transcodingService.requeueExpired(batchSize)) {
+                videoRepository.findById(job.getVideoId()).ifPresent(video -> {
+                    video.setStatus(VideoStatus.FAILED);
+                    videoRepository.save(video);
+                    accessCache.invalidateVideo(video.getId());
+                });
+            }
+        } catch (RuntimeException e) {
+            log.warn("Transcoding job reaper failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+}
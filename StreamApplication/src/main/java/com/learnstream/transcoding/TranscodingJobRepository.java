@@ -1,8 +1,11 @@
 package com.learnstream.transcoding;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -12,4 +15,62 @@ public interface TranscodingJobRepository extends JpaRepository<TranscodingJob,
     Optional<TranscodingJob> findNextPending();
 
     Optional<TranscodingJob> findByVideoId(UUID videoId);
+
+    @Modifying
+    @Query(value = "INSERT INTO transcoding_chunks (job_id, chunk_index) VALUES (:jobId, :chunkIndex) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int recordChunk(@Param("jobId") UUID jobId, @Param("chunkIndex") int chunkIndex);
+
+    // Call within a transaction and read the count back in it: the row lock taken here is held until
+    // commit, so concurrent completions are serialised and exactly one caller sees the final count
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE transcoding_jobs SET chunks_completed = chunks_completed + 1, updated_at = now() "
+            + "WHERE id = :jobId", nativeQuery = true)
+    int incrementChunksCompleted(@Param("jobId") UUID jobId);
+
+    @Query(value = "SELECT count(*) > 0 FROM transcoding_chunks WHERE job_id = :jobId AND chunk_index = :chunkIndex",
+            nativeQuery = true)
+    boolean isChunkRecorded(@Param("jobId") UUID jobId, @Param("chunkIndex") int chunkIndex);
+
+    @Query(value = "SELECT chunk_index FROM transcoding_chunks WHERE job_id = :jobId", nativeQuery = true)
+    List<Integer> findRecordedChunks(@Param("jobId") UUID jobId);
+
+    // Conditional claim: finished jobs and jobs under a live lease are left alone, and a FULL task
+    // never runs again once the job has been split into chunks. The chunk-phase deadline is not a
+    // lease the merge has to wait out.
+    @Modifying
+    @Query(value = "UPDATE transcoding_jobs SET status = 'IN_PROGRESS', lease_stage = :stage, lease_owner = :owner, "
+            + "lease_expires_at = now() + :leaseSecs * interval '1 second', heartbeat_at = now(), "
+            + "attempts = attempts + 1, started_at = coalesce(started_at, now()), updated_at = now() "
+            + "WHERE id = :jobId AND status IN ('PENDING', 'IN_PROGRESS') "
+            + "AND (lease_expires_at IS NULL OR lease_expires_at < now() "
+            + "OR (lease_stage = 'CHUNK' AND :stage = 'MERGE')) "
+            + "AND (:stage <> 'FULL' OR chunk_count IS NULL)", nativeQuery = true)
+    int acquireLease(@Param("jobId") UUID jobId, @Param("stage") String stage, @Param("owner") String owner,
+                     @Param("leaseSecs") long leaseSecs);
+
+    @Modifying
+    @Query(value = "UPDATE transcoding_jobs SET lease_expires_at = now() + :leaseSecs * interval '1 second', "
+            + "heartbeat_at = now() WHERE id = :jobId AND lease_owner = :owner AND status = 'IN_PROGRESS'",
+            nativeQuery = true)
+    int renewLease(@Param("jobId") UUID jobId, @Param("owner") String owner, @Param("leaseSecs") long leaseSecs);
+
+    // Only the lease holder may complete the job; after a takeover the new owner's run decides the outcome
+    @Modifying
+    @Query(value = "UPDATE transcoding_jobs SET status = 'COMPLETED', completed_at = now(), lease_stage = NULL, "
+            + "lease_owner = NULL, lease_expires_at = NULL, updated_at = now() "
+            + "WHERE id = :jobId AND lease_owner = :owner AND status = 'IN_PROGRESS'", nativeQuery = true)
+    int completeLeased(@Param("jobId") UUID jobId, @Param("owner") String owner);
+
+    @Query(value = "SELECT * FROM transcoding_jobs WHERE status = 'IN_PROGRESS' AND lease_expires_at < now() "
+            + "ORDER BY lease_expires_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<TranscodingJob> claimExpiredLeases(@Param("limit") int limit);
+
+    @Query(value = "SELECT stage FROM transcoding_checkpoints WHERE job_id = :jobId", nativeQuery = true)
+    List<String> findCheckpoints(@Param("jobId") UUID jobId);
+
+    @Modifying
+    @Query(value = "INSERT INTO transcoding_checkpoints (job_id, stage) VALUES (:jobId, :stage) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int recordCheckpoint(@Param("jobId") UUID jobId, @Param("stage") String stage);
 }
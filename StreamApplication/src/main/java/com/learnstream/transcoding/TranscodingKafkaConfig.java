@@ -0,0 +1,34 @@
+package com.learnstream.transcoding;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+@Configuration
+public class TranscodingKafkaConfig {
+
+    // One poll thread per node that never runs a job itself: jobs go to TranscodingJobListener's
+    // worker slots, the consumer is paused while they are all busy, and offsets are acknowledged
+    // manually as jobs finish. Not asyncAcks: that pauses the consumer until the whole poll is acked.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> transcodingListenerFactory(
+            ConsumerFactory<Object, Object> consumerFactory, ObjectProvider<TranscodingJobListener> jobListener) {
+        var factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(1);
+        var props = factory.getContainerProperties();
+        props.setAckMode(ContainerProperties.AckMode.MANUAL);
+        // Pause, resume and queued acks are applied between polls, so keep each poll short
+        props.setPollTimeout(1_000);
+        // Stop handing out records as soon as a pause is requested, not at the end of the poll
+        props.setPauseImmediate(true);
+        // Drops the in-flight bookkeeping of partitions that move to another node. Looked up when the
+        // container is built: the listener bean itself is what asks for this factory.
+        factory.setContainerCustomizer(container ->
+                container.getContainerProperties().setConsumerRebalanceListener(jobListener.getObject()));
+        return factory;
+    }
+}
@@ -0,0 +1,128 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Transactional outbox for transcoding events: append() joins the caller's transaction, and
+// relayBatch() hands committed rows to the producer and deletes them once the broker has acked.
+// Delivery is at-least-once; a relay that dies between ack and commit resends its batch.
+@Service
+public class TranscodingOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodingOutbox.class);
+    // Advisory lock key shared by every instance's relay
+    private static final long RELAY_LOCK = 0x7472616e73636f64L;
+
+    private final TranscodingOutboxRepository outboxRepository;
+    private final KafkaTemplate<String, TranscodingRequestedEvent> kafkaTemplate;
+    private final TranscodingConfig config;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Counter published;
+    private final Timer delay;
+    private final AtomicLong oldestPendingMillis = new AtomicLong();
+
+    public TranscodingOutbox(TranscodingOutboxRepository outboxRepository,
+                             KafkaTemplate<String, TranscodingRequestedEvent> kafkaTemplate,
+                             TranscodingConfig config,
+                             MeterRegistry meterRegistry,
+                             @Value("${transcoding.outbox.batch-size}") int batchSize,
+                             @Value("${transcoding.outbox.send-timeout}") Duration sendTimeout) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.config = config;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.published = Counter.builder("transcoding.outbox.published")
+                .description("Outbox messages acknowledged by the broker")
+                .register(meterRegistry);
+        this.delay = Timer.builder("transcoding.outbox.delay")
+                .description("Time from outbox insert to broker acknowledgement")
+                .register(meterRegistry);
+        Gauge.builder("transcoding.outbox.lag", oldestPendingMillis, AtomicLong::get)
+                .description("Age of the oldest message still waiting in the outbox")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(TranscodingRequestedEvent event) {
+        var message = new TranscodingOutboxMessage();
+        message.setJobId(event.jobId());
+        message.setVideoId(event.videoId());
+        message.setStage(event.stageOrFull());
+        message.setChunkIndex(event.chunkIndex());
+        // Chunks get distinct keys so they spread over partitions and therefore over workers
+        message.setMessageKey(event.stageOrFull() == TranscodingRequestedEvent.Stage.CHUNK
+                ? event.videoId() + "-" + event.chunkIndex()
+                : event.videoId().toString());
+        outboxRepository.save(message);
+    }
+
+    // The whole batch is sent before waiting, so the producer can fill and compress full record batches.
+    // One relay at a time across instances: two concurrent batches could put a key's later event first.
+    @Transactional
+    public int relayBatch() {
+        if (!outboxRepository.tryLockRelay(RELAY_LOCK)) {
+            return 0;
+        }
+        List<TranscodingOutboxMessage> batch = outboxRepository.claimBatch(batchSize);
+        if (!batch.isEmpty()) {
+            var sends = batch.stream()
+                    .map(m -> kafkaTemplate.send(config.topic(), m.getMessageKey(), m.toEvent()))
+                    .toArray(CompletableFuture[]::new);
+            await(CompletableFuture.allOf(sends));
+
+            Instant now = Instant.now();
+            for (TranscodingOutboxMessage message : batch) {
+                delay.record(Duration.between(message.getCreatedAt(), now));
+                log.info("Published {} transcoding event to topic '{}' for job {}",
+                        message.getStage(), config.topic(), message.getJobId());
+            }
+            outboxRepository.deleteAllInBatch(batch);
+            published.increment(batch.size());
+        }
+        return batch.size();
+    }
+
+    @Transactional(readOnly = true)
+    public void updateLag() {
+        oldestPendingMillis.set(outboxRepository.findOldestCreatedAt()
+                .map(createdAt -> Math.max(0, Duration.between(createdAt, Instant.now()).toMillis()))
+                .orElse(0L));
+    }
+
+    private void await(CompletableFuture<Void> sends) {
+        try {
+            sends.get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while relaying transcoding outbox", e);
+        } catch (ExecutionException | TimeoutException e) {
+            // Rolls back the claim; the rows are picked up again on the next poll
+            throw new IllegalStateException("Failed to relay transcoding outbox batch", e);
+        }
+    }
+}
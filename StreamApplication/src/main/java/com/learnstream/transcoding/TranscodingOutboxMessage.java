@@ -0,0 +1,49 @@
+package com.learnstream.transcoding;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "transcoding_outbox")
+@Getter
+@Setter
+@NoArgsConstructor
+public class TranscodingOutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    @Column(name = "video_id", nullable = false)
+    private UUID videoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TranscodingRequestedEvent.Stage stage;
+
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+
+    @Column(name = "message_key", nullable = false)
+    private String messageKey;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now();
+    }
+
+    public TranscodingRequestedEvent toEvent() {
+        return new TranscodingRequestedEvent(jobId, videoId, stage, chunkIndex);
+    }
+}
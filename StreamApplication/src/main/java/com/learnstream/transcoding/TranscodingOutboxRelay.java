@@ -0,0 +1,33 @@
+package com.learnstream.transcoding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Publishes committed outbox rows off the request path; keeps going while batches come back full
+@Component
+public class TranscodingOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscodingOutboxRelay.class);
+
+    private final TranscodingOutbox outbox;
+
+    public TranscodingOutboxRelay(TranscodingOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    @Scheduled(fixedDelayString = "${transcoding.outbox.poll-interval}")
+    public void relay() {
+        try {
+            int relayed;
+            do {
+                relayed = outbox.relayBatch();
+            } while (relayed == outbox.batchSize());
+        } catch (RuntimeException e) {
+            log.warn("Transcoding outbox relay failed, retrying on the next poll: {}", e.getMessage());
+        } finally {
+            outbox.updateLag();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.learnstream.transcoding;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface TranscodingOutboxRepository extends JpaRepository<TranscodingOutboxMessage, Long> {
+
+    // Transaction-scoped, so it is released with the batch's commit or rollback
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:lockId)", nativeQuery = true)
+    boolean tryLockRelay(@Param("lockId") long lockId);
+
+    // Insertion order keeps per-key ordering only while a single relay sends at a time (see tryLockRelay)
+    @Query(value = "SELECT * FROM transcoding_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<TranscodingOutboxMessage> claimBatch(@Param("limit") int limit);
+
+    @Query(value = "SELECT created_at FROM transcoding_outbox ORDER BY id LIMIT 1", nativeQuery = true)
+    Optional<Instant> findOldestCreatedAt();
+}
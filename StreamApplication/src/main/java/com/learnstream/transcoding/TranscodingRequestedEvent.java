@@ -4,5 +4,23 @@ import java.util.UUID;
 
 public record TranscodingRequestedEvent(
         UUID jobId,
-        UUID videoId
-) {}
+        UUID videoId,
+        Stage stage,
+        int chunkIndex
+) {
+    public enum Stage {
+        // Whole video on one worker; may split itself into CHUNK tasks for long videos
+        FULL,
+        CHUNK,
+        MERGE
+    }
+
+    public TranscodingRequestedEvent(UUID jobId, UUID videoId) {
+        this(jobId, videoId, Stage.FULL, 0);
+    }
+
+    // Events published before chunking existed carry no stage
+    public Stage stageOrFull() {
+        return stage != null ? stage : Stage.FULL;
+    }
+}
@@ -1,12 +1,21 @@
 package com.learnstream.transcoding;
 
+import com.learnstream.video.Video;
+import com.learnstream.video.VideoRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -15,15 +24,33 @@ public class TranscodingService {
     private static final Logger log = LoggerFactory.getLogger(TranscodingService.class);
 
     private final TranscodingJobRepository transcodingJobRepository;
-    private final KafkaTemplate<String, TranscodingRequestedEvent> kafkaTemplate;
-    private final TranscodingConfig config;
+    private final VideoRepository videoRepository;
+    private final TranscodingOutbox outbox;
+    private final Duration leaseDuration;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration chunkDeadline;
+    // pid@host, the readable part of every lease token this process hands out
+    private final String node = ManagementFactory.getRuntimeMXBean().getName();
 
     public TranscodingService(TranscodingJobRepository transcodingJobRepository,
-                              KafkaTemplate<String, TranscodingRequestedEvent> kafkaTemplate,
-                              TranscodingConfig config) {
+                              VideoRepository videoRepository,
+                              TranscodingOutbox outbox,
+                              @Value("${transcoding.lease.duration}") Duration leaseDuration,
+                              @Value("${transcoding.lease.max-attempts}") int maxAttempts,
+                              @Value("${transcoding.lease.retry-backoff}") Duration retryBackoff,
+                              @Value("${transcoding.lease.chunk-deadline}") Duration chunkDeadline) {
         this.transcodingJobRepository = transcodingJobRepository;
-        this.kafkaTemplate = kafkaTemplate;
-        this.config = config;
+        this.videoRepository = videoRepository;
+        this.outbox = outbox;
+        this.leaseDuration = leaseDuration;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.chunkDeadline = chunkDeadline;
+    }
+
+    public Duration leaseDuration() {
+        return leaseDuration;
     }
 
     @Transactional
@@ -34,20 +61,184 @@ public class TranscodingService {
         transcodingJobRepository.save(job);
         log.info("Created transcoding job {} for video {}", job.getId(), videoId);
 
-        var event = new TranscodingRequestedEvent(job.getId(), videoId);
-        kafkaTemplate.send(config.topic(), videoId.toString(), event);
-        log.info("Published transcoding event to topic '{}' for job {}", config.topic(), job.getId());
+        outbox.append(new TranscodingRequestedEvent(job.getId(), videoId));
 
         return job;
     }
 
+    @Transactional(readOnly = true)
+    public TranscodingJob getJob(UUID jobId) {
+        return transcodingJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalStateException("Transcoding job not found: " + jobId));
+    }
+
+    @Transactional
+    public void splitIntoChunks(UUID jobId, UUID videoId, int durationSecs, int chunkSeconds) {
+        int chunkCount = (durationSecs + chunkSeconds - 1) / chunkSeconds;
+        var job = getJob(jobId);
+        job.setChunkSeconds(chunkSeconds);
+        job.setChunkCount(chunkCount);
+        // No single worker owns the chunk phase, but it keeps a deadline so the reaper re-queues
+        // chunks that never complete; the merge task takes a fresh lease
+        job.setLeaseStage(TranscodingRequestedEvent.Stage.CHUNK);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(Instant.now().plus(chunkDeadline));
+        transcodingJobRepository.save(job);
+
+        for (int i = 0; i < chunkCount; i++) {
+            outbox.append(new TranscodingRequestedEvent(jobId, videoId, TranscodingRequestedEvent.Stage.CHUNK, i));
+        }
+        log.info("Split transcoding job {} into {} chunks of {}s", jobId, chunkCount, chunkSeconds);
+    }
+
+    // Returns true for the caller that completed the last chunk; that caller has published the merge task
+    @Transactional
+    public boolean completeChunk(UUID jobId, UUID videoId, int chunkIndex) {
+        if (transcodingJobRepository.recordChunk(jobId, chunkIndex) == 0) {
+            log.info("Chunk {} of job {} was already completed", chunkIndex, jobId);
+            return false;
+        }
+        transcodingJobRepository.incrementChunksCompleted(jobId);
+        // Reloaded after the update cleared the persistence context, so this is the locked row's count
+        var job = getJob(jobId);
+        if (job.getChunksCompleted() < job.getChunkCount()) {
+            return false;
+        }
+        outbox.append(new TranscodingRequestedEvent(jobId, videoId, TranscodingRequestedEvent.Stage.MERGE, 0));
+        return true;
+    }
+
+    // Empty when the job is already finished or another worker holds a live lease on it, which is what
+    // makes a redelivered FULL or MERGE event harmless. Otherwise the token identifying this acquisition:
+    // two worker slots of one process, or a slot re-acquiring after a takeover, never share one.
+    @Transactional
+    public Optional<String> acquireLease(UUID jobId, TranscodingRequestedEvent.Stage stage) {
+        String token = node + "/" + UUID.randomUUID();
+        int claimed = transcodingJobRepository.acquireLease(jobId, stage.name(), token, leaseDuration.toSeconds());
+        return claimed == 1 ? Optional.of(token) : Optional.empty();
+    }
+
+    // False once the lease was lost, i.e. the reaper gave the job to someone else
+    @Transactional
+    public boolean renewLease(UUID jobId, String leaseToken) {
+        return transcodingJobRepository.renewLease(jobId, leaseToken, leaseDuration.toSeconds()) == 1;
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isChunkCompleted(UUID jobId, int chunkIndex) {
+        return transcodingJobRepository.isChunkRecorded(jobId, chunkIndex);
+    }
+
+    @Transactional(readOnly = true)
+    public Set<String> checkpoints(UUID jobId) {
+        return new HashSet<>(transcodingJobRepository.findCheckpoints(jobId));
+    }
+
+    @Transactional
+    public void checkpoint(UUID jobId, String... stages) {
+        for (String stage : stages) {
+            transcodingJobRepository.recordCheckpoint(jobId, stage);
+        }
+    }
+
+    @Transactional
+    public void checkpointProbed(UUID jobId, int durationSecs, String... stages) {
+        transcodingJobRepository.findById(jobId).ifPresent(job -> {
+            job.setDurationSecs(durationSecs);
+            transcodingJobRepository.save(job);
+        });
+        transcodingJobRepository.recordCheckpoint(jobId, TranscodingCheckpoint.PROBED);
+        checkpoint(jobId, stages);
+    }
+
     @Transactional
-    public void markInProgress(UUID jobId) {
+    public void recordAnalysis(UUID jobId, int durationSecs, List<TranscodingConfig.QualityPreset> ladder,
+                               int complexityKbps) {
         transcodingJobRepository.findById(jobId).ifPresent(job -> {
-            job.setStatus(TranscodingJobStatus.IN_PROGRESS);
-            job.setStartedAt(Instant.now());
+            job.setDurationSecs(durationSecs);
+            job.setLadder(ladder);
+            job.setComplexityKbps(complexityKbps);
             transcodingJobRepository.save(job);
         });
+        transcodingJobRepository.recordCheckpoint(jobId, TranscodingCheckpoint.PROBED);
+    }
+
+    // A failed FULL or MERGE task is retried from its checkpoints after a backoff, until it runs out
+    // of attempts. The job keeps an ownerless lease that expires when the backoff is over, and the
+    // reaper re-queues it then. Returns false only when the job was marked failed.
+    @Transactional
+    public boolean retryOrFail(UUID jobId, String leaseToken, String errorMessage) {
+        var job = getJob(jobId);
+        if (!leaseToken.equals(job.getLeaseOwner())) {
+            log.warn("Transcoding job {} failed after its lease was taken over: {}", jobId, errorMessage);
+            return true;
+        }
+        if (job.getAttempts() >= maxAttempts) {
+            fail(job, errorMessage);
+            return false;
+        }
+        var backoff = retryBackoff.multipliedBy(1L << Math.min(job.getAttempts() - 1, 10));
+        job.setErrorMessage(errorMessage);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(Instant.now().plus(backoff));
+        transcodingJobRepository.save(job);
+        log.warn("Transcoding job {} failed on attempt {}, retrying in {}: {}",
+                jobId, job.getAttempts(), backoff, errorMessage);
+        return true;
+    }
+
+    // Re-queues jobs whose lease ran out (crashed worker or finished backoff) from the stage they held,
+    // or the missing chunks of a chunk phase past its deadline. Returns the jobs that had no attempts
+    // left and were marked failed instead.
+    @Transactional
+    public List<TranscodingJob> requeueExpired(int limit) {
+        var failed = new ArrayList<TranscodingJob>();
+        for (TranscodingJob job : transcodingJobRepository.claimExpiredLeases(limit)) {
+            if (job.getAttempts() >= maxAttempts) {
+                fail(job, job.getErrorMessage() != null ? job.getErrorMessage()
+                        : "lease expired after " + job.getAttempts() + " attempts");
+                failed.add(job);
+                continue;
+            }
+            var stage = job.getLeaseStage() != null ? job.getLeaseStage() : TranscodingRequestedEvent.Stage.FULL;
+            if (stage == TranscodingRequestedEvent.Stage.CHUNK) {
+                requeueMissingChunks(job);
+                continue;
+            }
+            log.warn("Re-queueing {} task of transcoding job {} (lease held by {} expired)",
+                    stage, job.getId(), job.getLeaseOwner());
+            job.setStatus(TranscodingJobStatus.PENDING);
+            job.releaseLease();
+            transcodingJobRepository.save(job);
+            outbox.append(new TranscodingRequestedEvent(job.getId(), job.getVideoId(), stage, 0));
+        }
+        return failed;
+    }
+
+    // Chunk tasks still running are re-queued as well; a duplicate finds its chunk recorded and stops.
+    // With every chunk recorded only the merge can be outstanding, and a duplicate merge is skipped
+    // by its lease.
+    private void requeueMissingChunks(TranscodingJob job) {
+        var recorded = new HashSet<>(transcodingJobRepository.findRecordedChunks(job.getId()));
+        var missing = new ArrayList<Integer>();
+        for (int i = 0; i < job.getChunkCount(); i++) {
+            if (!recorded.contains(i)) {
+                missing.add(i);
+            }
+        }
+        log.warn("Chunk phase of transcoding job {} passed its deadline, re-queueing chunks {}",
+                job.getId(), missing);
+        job.setAttempts(job.getAttempts() + 1);
+        job.setLeaseExpiresAt(Instant.now().plus(chunkDeadline));
+        transcodingJobRepository.save(job);
+        for (int i : missing) {
+            outbox.append(new TranscodingRequestedEvent(job.getId(), job.getVideoId(),
+                    TranscodingRequestedEvent.Stage.CHUNK, i));
+        }
+        if (missing.isEmpty()) {
+            outbox.append(new TranscodingRequestedEvent(job.getId(), job.getVideoId(),
+                    TranscodingRequestedEvent.Stage.MERGE, 0));
+        }
     }
 
     @Transactional
@@ -55,19 +246,43 @@ public class TranscodingService {
         transcodingJobRepository.findById(jobId).ifPresent(job -> {
             job.setStatus(TranscodingJobStatus.COMPLETED);
             job.setCompletedAt(Instant.now());
+            job.releaseLease();
             transcodingJobRepository.save(job);
             log.info("Transcoding job {} completed", jobId);
         });
     }
 
+    // Completes a leased FULL or MERGE job and saves its now READY video in one transaction. False,
+    // with nothing written, when the lease behind the token is no longer held.
+    @Transactional
+    public boolean completeLeased(UUID jobId, String leaseToken, Video video) {
+        if (transcodingJobRepository.completeLeased(jobId, leaseToken) == 0) {
+            log.warn("Not completing transcoding job {}: lease {} is no longer held", jobId, leaseToken);
+            return false;
+        }
+        videoRepository.save(video);
+        log.info("Transcoding job {} completed", jobId);
+        return true;
+    }
+
     @Transactional
     public void markFailed(UUID jobId, String errorMessage) {
-        transcodingJobRepository.findById(jobId).ifPresent(job -> {
-            job.setStatus(TranscodingJobStatus.FAILED);
-            job.setErrorMessage(errorMessage);
-            job.setCompletedAt(Instant.now());
-            transcodingJobRepository.save(job);
-            log.error("Transcoding job {} failed: {}", jobId, errorMessage);
-        });
+        transcodingJobRepository.findById(jobId).ifPresent(job -> fail(job, errorMessage));
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isFailed(UUID jobId) {
+        return transcodingJobRepository.findById(jobId)
+                .map(job -> job.getStatus() == TranscodingJobStatus.FAILED)
+                .orElse(true);
+    }
+
+    private void fail(TranscodingJob job, String errorMessage) {
+        job.setStatus(TranscodingJobStatus.FAILED);
+        job.setErrorMessage(errorMessage);
+        job.setCompletedAt(Instant.now());
+        job.releaseLease();
+        transcodingJobRepository.save(job);
+        log.error("Transcoding job {} failed: {}", job.getId(), errorMessage);
     }
 }
@@ -1,124 +1,548 @@
 package com.learnstream.transcoding;
 
+import com.learnstream.payment.AccessCache;
 import com.learnstream.storage.StorageService;
 import com.learnstream.video.Video;
 import com.learnstream.video.VideoRepository;
 import com.learnstream.video.VideoStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 @Component
 public class TranscodingWorker {
 
     private static final Logger log = LoggerFactory.getLogger(TranscodingWorker.class);
+    private static final String MASTER_PLAYLIST = "master.m3u8";
 
     private final TranscodingService transcodingService;
     private final VideoRepository videoRepository;
     private final StorageService storageService;
     private final TranscodingConfig config;
+    private final AccessCache accessCache;
+    private final HlsUploader hlsUploader;
+    private final TranscodeScheduler transcodeScheduler;
+    private final LadderPlanner ladderPlanner;
+    private final DistributionSummary tempDiskPeak;
+    private final Counter reusedOutputs;
+    private final FfmpegCommands commands;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "transcode-lease-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public TranscodingWorker(TranscodingService transcodingService,
                              VideoRepository videoRepository,
                              StorageService storageService,
-                             TranscodingConfig config) {
+                             TranscodingConfig config,
+                             AccessCache accessCache,
+                             HlsUploader hlsUploader,
+                             TranscodeScheduler transcodeScheduler,
+                             LadderPlanner ladderPlanner,
+                             MeterRegistry meterRegistry) {
         this.transcodingService = transcodingService;
         this.videoRepository = videoRepository;
         this.storageService = storageService;
         this.config = config;
+        this.accessCache = accessCache;
+        this.hlsUploader = hlsUploader;
+        this.transcodeScheduler = transcodeScheduler;
+        this.ladderPlanner = ladderPlanner;
+        this.commands = new FfmpegCommands(config);
+        this.tempDiskPeak = DistributionSummary.builder("transcoding.temp.disk.peak")
+                .description("Peak local disk used by one transcoding task")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.reusedOutputs = Counter.builder("transcoding.dedup.reused")
+                .description("Jobs served by copying the output of an identical earlier upload")
+                .register(meterRegistry);
     }
 
-    @KafkaListener(topics = "${transcoding.topic:transcoding-jobs}", groupId = "learnstream-transcoding")
-    public void onTranscodingRequested(TranscodingRequestedEvent event) {
-        log.info("Received transcoding event for job {} video {}", event.jobId(), event.videoId());
-
-        transcodingService.markInProgress(event.jobId());
+    // Runs on a TranscodingJobListener worker slot. FULL and MERGE tasks run under a lease that is
+    // renewed while they work. Interruption means the node is shutting down: the job is left as it is
+    // and the reaper re-queues it once the lease runs out.
+    public void process(TranscodingRequestedEvent event) throws InterruptedException {
+        var stage = event.stageOrFull();
+        log.info("Received {} transcoding event for job {} video {}", stage, event.jobId(), event.videoId());
+
+        Lease lease = null;
+        if (stage == TranscodingRequestedEvent.Stage.CHUNK) {
+            if (transcodingService.isFailed(event.jobId())) {
+                log.info("Skipping chunk task for failed job {}", event.jobId());
+                return;
+            }
+            if (transcodingService.isChunkCompleted(event.jobId(), event.chunkIndex())) {
+                log.info("Chunk {} of job {} was already completed", event.chunkIndex(), event.jobId());
+                return;
+            }
+        } else {
+            var token = transcodingService.acquireLease(event.jobId(), stage);
+            if (token.isEmpty()) {
+                log.info("Skipping {} task for job {}: finished or leased by another worker", stage, event.jobId());
+                return;
+            }
+            lease = new Lease(event.jobId(), token.get());
+        }
 
         try {
-            processJob(event.jobId(), event.videoId());
+            switch (stage) {
+                case FULL -> processJob(event.jobId(), event.videoId(), lease.token);
+                case CHUNK -> processChunk(event.jobId(), event.videoId(), event.chunkIndex());
+                case MERGE -> mergeChunks(event.jobId(), event.videoId(), lease.token);
+            }
+        } catch (InterruptedException e) {
+            if (lease != null && lease.lost()) {
+                log.warn("Stopped transcoding job {}: its lease was taken over", event.jobId());
+                return;
+            }
+            log.warn("Transcoding of job {} interrupted, leaving it for the reaper", event.jobId());
+            throw e;
         } catch (Exception e) {
+            // Cancelling can also surface as an I/O failure; the new lease holder owns the outcome now
+            if (lease != null && lease.lost()) {
+                log.warn("Stopped transcoding job {} after its lease was taken over: {}",
+                        event.jobId(), e.getMessage());
+                return;
+            }
             log.error("Transcoding failed for job {}", event.jobId(), e);
-            transcodingService.markFailed(event.jobId(), e.getMessage());
-            updateVideoStatus(event.videoId(), VideoStatus.FAILED);
+            // A failed chunk fails the whole job; the merge could never run without it
+            if (stage == TranscodingRequestedEvent.Stage.CHUNK) {
+                transcodingService.markFailed(event.jobId(), e.getMessage());
+                failVideo(event.videoId());
+            } else if (!transcodingService.retryOrFail(event.jobId(), lease.token, e.getMessage())) {
+                failVideo(event.videoId());
+            }
+        } finally {
+            if (lease != null) {
+                lease.close();
+            }
         }
     }
 
-    private void processJob(UUID jobId, UUID videoId) throws IOException, InterruptedException {
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new IllegalStateException("Video not found: " + videoId));
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+    }
+
+    private void processJob(UUID jobId, UUID videoId, String leaseToken) throws IOException, InterruptedException {
+        Video video = findVideo(videoId);
+        TranscodingJob job = transcodingService.getJob(jobId);
+        Set<String> done = transcodingService.checkpoints(jobId);
+        String hlsPrefix = hlsPrefix(video);
+        // Only a retry can find its own output in storage already
+        boolean resuming = job.getAttempts() > 1;
+        if (!done.isEmpty()) {
+            log.info("Resuming transcoding job {} on attempt {}, done: {}", jobId, job.getAttempts(), done);
+        }
+
+        // Everything is in storage; the previous attempt died before flipping the video
+        if (done.contains(TranscodingCheckpoint.UPLOADED)) {
+            useGeneratedThumbnail(video);
+            video.setDurationSecs(job.getDurationSecs());
+            markReady(jobId, leaseToken, video, hlsPrefix);
+            return;
+        }
+
+        // Same bytes as a video this creator already has: copy its output instead of encoding again
+        if (video.getContentHash() != null) {
+            var source = videoRepository.findReadyByContentHash(video.getCreatorId(), video.getContentHash(), videoId);
+            if (source.isPresent()) {
+                reuseOutput(jobId, leaseToken, source.get(), video, hlsPrefix);
+                return;
+            }
+        }
+
+        boolean needsAnalysis = ladderPlanner.perTitle() && job.getLadder() == null;
+        boolean needsInput = needsAnalysis
+                || !pendingRenditions(ladder(job), done).isEmpty()
+                || !done.contains(TranscodingCheckpoint.PROBED)
+                || !done.contains(TranscodingCheckpoint.THUMBNAIL);
 
         Path workDir = Path.of(config.tempDir(), jobId.toString());
         Files.createDirectories(workDir);
 
-        try {
-            // Step 1: Download raw video from MinIO
-            Path rawFile = workDir.resolve("input" + getExtension(video.getRawStorageKey()));
-            downloadFromStorage(video.getRawStorageKey(), rawFile);
+        try (var diskUsage = TempDiskMeter.start(workDir, tempDiskPeak)) {
+            // Step 1: Download raw video from MinIO, or sign a URL ffmpeg can range-read from
+            String input = needsInput ? prepareJobInput(jobId, video, workDir, done) : null;
+            Path hlsDir = workDir.resolve("hls");
+            Files.createDirectories(hlsDir);
+            Path thumbnailFile = workDir.resolve("thumbnail.jpg");
 
-            // Step 2: Extract duration via ffprobe
-            int durationSecs = probeDuration(rawFile);
+            // Step 2: Pick this title's ladder from a complexity probe; ffprobe also gives the duration
+            if (needsAnalysis) {
+                analyse(job, input, workDir);
+                done.add(TranscodingCheckpoint.PROBED);
+            }
+            var ladder = ladder(job);
+            var pending = pendingRenditions(ladder, done);
+
+            // Chunking needs the duration up front, so single-pass only applies without it
+            if (config.singlePass() && !config.chunkedEncoding()) {
+                Integer durationSecs = job.getDurationSecs();
+                if (!pending.isEmpty()) {
+                    Path spriteDir = Files.createDirectories(workDir.resolve("sprites"));
+                    durationSecs = encodeAndUpload(hlsDir, hlsPrefix, resuming, () -> {
+                        int duration = transcodeSinglePass(input, workDir, hlsDir, thumbnailFile, spriteDir, pending);
+                        writeMasterPlaylist(hlsDir, ladder);
+                        return duration;
+                    });
+                    hlsUploader.uploadDirectory(spriteDir, storageService.processedBucket(),
+                            video.getCreatorId() + "/" + video.getId() + "/sprites/", resuming);
+                    transcodingService.checkpointProbed(jobId, durationSecs, renditionCheckpoints(pending));
+                }
+                thumbnailStage(jobId, video, input, thumbnailFile, done);
+                video.setDurationSecs(durationSecs);
+                finish(jobId, leaseToken, video, hlsPrefix);
+                return;
+            }
 
-            // Step 3: Extract thumbnail
-            Path thumbnailFile = workDir.resolve("thumbnail.jpg");
-            extractThumbnail(rawFile, thumbnailFile);
+            // Without per-title analysis, extract duration via ffprobe
+            int durationSecs;
+            if (done.contains(TranscodingCheckpoint.PROBED)) {
+                durationSecs = job.getDurationSecs();
+            } else {
+                durationSecs = probeDuration(input);
+                transcodingService.checkpointProbed(jobId, durationSecs);
+            }
+
+            // Step 3: Extract and upload thumbnail
+            thumbnailStage(jobId, video, input, thumbnailFile, done);
+            video.setDurationSecs(durationSecs);
+
+            // Long videos are handed out as chunk tasks to any worker; the last one triggers the merge
+            if (config.chunkedEncoding() && durationSecs >= config.chunkMinDurationSecs()) {
+                encodeAudio(input, workDir, hlsPrefix);
+                videoRepository.save(video);
+                transcodingService.splitIntoChunks(jobId, videoId, durationSecs, chunkSeconds());
+                return;
+            }
+
+            // Step 4-5: Transcode the renditions not done yet to HLS and upload to processed bucket,
+            // streaming finished segments out during the encode when pipelined
+            if (!pending.isEmpty()) {
+                encodeAndUpload(hlsDir, hlsPrefix, resuming, () -> {
+                    transcodeToHls(input, hlsDir, null, pending);
+                    writeMasterPlaylist(hlsDir, ladder);
+                    return null;
+                });
+                transcodingService.checkpoint(jobId, renditionCheckpoints(pending));
+            }
+
+            // Step 6: Update video record
+            finish(jobId, leaseToken, video, hlsPrefix);
+
+        } finally {
+            deleteDirectory(workDir);
+        }
+    }
 
-            // Step 4: Transcode to multi-quality HLS
+    private void processChunk(UUID jobId, UUID videoId, int chunkIndex) throws IOException, InterruptedException {
+        Video video = findVideo(videoId);
+        TranscodingJob job = transcodingService.getJob(jobId);
+
+        Path workDir = Path.of(config.tempDir(), jobId + "-chunk-" + chunkIndex);
+        Files.createDirectories(workDir);
+
+        try (var diskUsage = TempDiskMeter.start(workDir, tempDiskPeak)) {
+            String input = prepareInput(video, workDir);
+
+            int startSecs = chunkIndex * job.getChunkSeconds();
+            var window = new FfmpegCommands.Window(chunkIndex, startSecs, job.getChunkSeconds(),
+                    startSecs / FfmpegCommands.SEGMENT_SECONDS);
             Path hlsDir = workDir.resolve("hls");
             Files.createDirectories(hlsDir);
-            transcodeToHls(rawFile, hlsDir);
-
-            // Step 5: Upload HLS output to processed bucket
-            String hlsPrefix = video.getCreatorId() + "/" + video.getId() + "/hls/";
-            uploadDirectory(hlsDir, storageService.processedBucket(), hlsPrefix);
+            encodeAndUpload(hlsDir, hlsPrefix(video), false, () -> {
+                transcodeToHls(input, hlsDir, window, ladder(job));
+                return null;
+            });
 
-            // Step 6: Upload thumbnail
-            String thumbnailKey = video.getCreatorId() + "/" + video.getId() + "/thumbnail.jpg";
-            storageService.uploadFile(
-                    storageService.processedBucket(), thumbnailKey, thumbnailFile, "image/jpeg");
+            if (transcodingService.completeChunk(jobId, videoId, chunkIndex)) {
+                log.info("Chunk {} was the last of job {}, merge scheduled", chunkIndex, jobId);
+            }
+        } finally {
+            deleteDirectory(workDir);
+        }
+    }
 
-            // Step 7: Update video record
-            video.setHlsStorageKey(hlsPrefix + "master.m3u8");
-            // Only set auto-generated thumbnail if no custom thumbnail was uploaded
-            if (video.getThumbnailUrl() == null || !video.getThumbnailUrl().contains("custom-thumbnail")) {
-                video.setThumbnailUrl(thumbnailKey);
+    // Safe to run more than once: a merge that finds the video READY only retries the cleanup, and the
+    // chunk playlists are deleted after the video is marked READY, never before
+    private void mergeChunks(UUID jobId, UUID videoId, String leaseToken) throws IOException, InterruptedException {
+        Video video = findVideo(videoId);
+        TranscodingJob job = transcodingService.getJob(jobId);
+        String bucket = storageService.processedBucket();
+        String hlsPrefix = hlsPrefix(video);
+        var ladder = ladder(job);
+
+        var chunkKeys = new ArrayList<String>();
+        for (var q : ladder) {
+            for (int i = 0; i < job.getChunkCount(); i++) {
+                chunkKeys.add(hlsPrefix + chunkPlaylistPath(i) + HlsPlaylists.mediaPlaylistName(q));
             }
-            video.setDurationSecs(durationSecs);
-            video.setStatus(VideoStatus.READY);
-            videoRepository.save(video);
+        }
 
+        if (video.getStatus() == VideoStatus.READY) {
+            log.info("Video {} of job {} is already merged", videoId, jobId);
             transcodingService.markCompleted(jobId);
-            log.info("Transcoding completed for video {}", video.getId());
+            deleteChunkPlaylists(bucket, chunkKeys);
+            return;
+        }
+
+        Path workDir = Path.of(config.tempDir(), jobId + "-merge");
+        Path hlsDir = workDir.resolve("hls");
+        Files.createDirectories(hlsDir);
 
+        try {
+            for (var q : ladder) {
+                var parts = new ArrayList<String>(job.getChunkCount());
+                for (int i = 0; i < job.getChunkCount(); i++) {
+                    String key = hlsPrefix + chunkPlaylistPath(i) + HlsPlaylists.mediaPlaylistName(q);
+                    try (InputStream in = storageService.download(bucket, key)) {
+                        parts.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                    }
+                }
+                Files.writeString(hlsDir.resolve(HlsPlaylists.mediaPlaylistName(q)),
+                        HlsPlaylists.mergeMedia(parts));
+            }
+            // The FULL task encoded the audio rendition before splitting, unless the source has none
+            String audioKey = hlsPrefix + HlsPlaylists.AUDIO_PLAYLIST;
+            boolean separateAudio = storageService.listObjectSizes(bucket, audioKey).containsKey(audioKey);
+            Files.writeString(hlsDir.resolve(MASTER_PLAYLIST), HlsPlaylists.master(ladder, separateAudio));
+            hlsUploader.uploadDirectory(hlsDir, bucket, hlsPrefix);
+
+            finish(jobId, leaseToken, video, hlsPrefix);
+            deleteChunkPlaylists(bucket, chunkKeys);
         } finally {
             deleteDirectory(workDir);
         }
     }
 
+    // Leftover chunk playlists are never served, so failing to delete them must not fail the job
+    private void deleteChunkPlaylists(String bucket, List<String> keys) {
+        try {
+            for (String key : keys) {
+                storageService.delete(bucket, key);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not delete chunk playlists under {}: {}", keys.getFirst(), e.getMessage());
+        }
+    }
+
+    private void encodeAudio(String input, Path workDir, String hlsPrefix) throws IOException, InterruptedException {
+        if (runProbe(commands.probeAudio(input)).isBlank()) {
+            log.info("Source {} has no audio stream", workDir.getFileName());
+            return;
+        }
+        Path audioDir = Files.createDirectories(workDir.resolve("audio"));
+        transcodeScheduler.runAll(List.of(new TranscodeScheduler.Task(workDir.getFileName() + "/audio", 1,
+                () -> runFfmpeg(commands.audio(input, audioDir), workDir.resolve("ffmpeg-audio.log")))));
+        hlsUploader.uploadDirectory(audioDir, storageService.processedBucket(), hlsPrefix);
+    }
+
+    private <T> T encodeAndUpload(Path hlsDir, String hlsPrefix, boolean skipExisting, Encode<T> encode)
+            throws IOException, InterruptedException {
+        String bucket = storageService.processedBucket();
+        if (config.pipelinedUpload()) {
+            try (var upload = hlsUploader.startPipelined(hlsDir, bucket, hlsPrefix, skipExisting)) {
+                try {
+                    T result = encode.run();
+                    upload.finish();
+                    return result;
+                } catch (IOException | RuntimeException e) {
+                    // Renditions are only checkpointed after this returns, so a retry encodes them again
+                    upload.discard();
+                    throw e;
+                }
+            }
+        }
+        T result = encode.run();
+        hlsUploader.uploadDirectory(hlsDir, bucket, hlsPrefix, skipExisting);
+        return result;
+    }
+
+    private void thumbnailStage(UUID jobId, Video video, String input, Path thumbnailFile, Set<String> done)
+            throws IOException, InterruptedException {
+        if (done.contains(TranscodingCheckpoint.THUMBNAIL)) {
+            useGeneratedThumbnail(video);
+            return;
+        }
+        // The single pass already wrote it unless that pass was skipped on resume
+        if (!Files.exists(thumbnailFile)) {
+            extractThumbnail(input, thumbnailFile);
+        }
+        if (uploadThumbnail(video, thumbnailFile)) {
+            transcodingService.checkpoint(jobId, TranscodingCheckpoint.THUMBNAIL);
+        }
+    }
+
+    private boolean uploadThumbnail(Video video, Path thumbnailFile) {
+        if (!Files.exists(thumbnailFile)) {
+            log.warn("No thumbnail was produced for video {}", video.getId());
+            return false;
+        }
+        storageService.uploadFile(
+                storageService.processedBucket(), thumbnailKey(video), thumbnailFile, "image/jpeg");
+        useGeneratedThumbnail(video);
+        return true;
+    }
+
+    private void useGeneratedThumbnail(Video video) {
+        // Only set auto-generated thumbnail if no custom thumbnail was uploaded
+        if (video.getThumbnailUrl() == null || !video.getThumbnailUrl().contains("custom-thumbnail")) {
+            video.setThumbnailUrl(thumbnailKey(video));
+        }
+    }
+
+    private void reuseOutput(UUID jobId, String leaseToken, Video source, Video video, String hlsPrefix)
+            throws IOException, InterruptedException {
+        String bucket = storageService.processedBucket();
+        String sourceBase = source.getCreatorId() + "/" + source.getId() + "/";
+        String targetBase = video.getCreatorId() + "/" + video.getId() + "/";
+        int copied = hlsUploader.copyPrefix(bucket, hlsPrefix(source), hlsPrefix)
+                + hlsUploader.copyPrefix(bucket, sourceBase + "sprites/", targetBase + "sprites/");
+        // Exact key as prefix: copies the generated thumbnail if the source has one
+        if (hlsUploader.copyPrefix(bucket, thumbnailKey(source), thumbnailKey(video)) > 0) {
+            useGeneratedThumbnail(video);
+            copied++;
+        }
+
+        video.setDurationSecs(source.getDurationSecs());
+        reusedOutputs.increment();
+        log.info("Video {} has the same content as video {}, copied {} objects instead of transcoding",
+                video.getId(), source.getId(), copied);
+        finish(jobId, leaseToken, video, hlsPrefix);
+    }
+
+    private void finish(UUID jobId, String leaseToken, Video video, String hlsPrefix) {
+        transcodingService.checkpoint(jobId, TranscodingCheckpoint.UPLOADED);
+        markReady(jobId, leaseToken, video, hlsPrefix);
+    }
+
+    private void markReady(UUID jobId, String leaseToken, Video video, String hlsPrefix) {
+        video.setHlsStorageKey(hlsPrefix + MASTER_PLAYLIST);
+        video.setStatus(VideoStatus.READY);
+        if (!transcodingService.completeLeased(jobId, leaseToken, video)) {
+            return;
+        }
+        accessCache.invalidateVideo(video.getId());
+        log.info("Transcoding completed for video {}", video.getId());
+    }
+
+    // Renews the job's lease every third of its duration for as long as the task runs. Once a renewal
+    // finds the lease gone (the reaper handed the job to another worker) the task is cancelled by
+    // interrupting it, which also stops its ffmpeg processes.
+    private final class Lease {
+
+        private final UUID jobId;
+        private final String token;
+        private final Thread holder = Thread.currentThread();
+        private final ScheduledFuture<?> renewal;
+        private boolean lost;
+        private boolean closed;
+
+        private Lease(UUID jobId, String token) {
+            this.jobId = jobId;
+            this.token = token;
+            long intervalMillis = transcodingService.leaseDuration().toMillis() / 3;
+            this.renewal = heartbeats.scheduleAtFixedRate(this::renew, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        private void renew() {
+            try {
+                if (!transcodingService.renewLease(jobId, token)) {
+                    lose();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Lease heartbeat for transcoding job {} failed: {}", jobId, e.getMessage());
+            }
+        }
+
+        private synchronized void lose() {
+            if (!closed && !lost) {
+                lost = true;
+                log.warn("Lease on transcoding job {} was lost, cancelling the task", jobId);
+                holder.interrupt();
+            }
+        }
+
+        private synchronized boolean lost() {
+            return lost;
+        }
+
+        // On the task's thread; after this no interrupt is sent, and one the task never saw is cleared
+        private synchronized void close() {
+            closed = true;
+            renewal.cancel(false);
+            if (lost) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    // The work dir outlives a crashed process, so a retry landing on the same node reuses the download
+    private String prepareJobInput(UUID jobId, Video video, Path workDir, Set<String> done) throws IOException {
+        if (config.streamInput()) {
+            return prepareInput(video, workDir);
+        }
+        Path rawFile = workDir.resolve("input" + getExtension(video.getRawStorageKey()));
+        if (done.contains(TranscodingCheckpoint.DOWNLOADED) && Files.exists(rawFile)
+                && Files.size(rawFile) == storageService.stat(storageService.rawBucket(), video.getRawStorageKey())
+                        .contentLength()) {
+            log.info("Reusing downloaded input of job {}", jobId);
+            return rawFile.toString();
+        }
+        String input = prepareInput(video, workDir);
+        transcodingService.checkpoint(jobId, TranscodingCheckpoint.DOWNLOADED);
+        return input;
+    }
+
+    private String prepareInput(Video video, Path workDir) throws IOException {
+        String key = video.getRawStorageKey();
+        if (config.streamInput()) {
+            // ffprobe only fetches the header/moov ranges and the encode streams the rest,
+            // so the raw file never touches local disk
+            return storageService.generateInternalUrl(storageService.rawBucket(), key, config.inputUrlTtl())
+                    .toString();
+        }
+        Path rawFile = workDir.resolve("input" + getExtension(key));
+        downloadFromStorage(key, rawFile);
+        return rawFile.toString();
+    }
+
     private void downloadFromStorage(String key, Path destination) throws IOException {
         try (InputStream is = storageService.download(storageService.rawBucket(), key)) {
             Files.copy(is, destination, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
-    private int probeDuration(Path inputFile) throws IOException, InterruptedException {
-        ProcessBuilder pb = new ProcessBuilder(
-                config.ffprobePath(),
-                "-v", "error",
-                "-show_entries", "format=duration",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                inputFile.toString()
-        );
+    private int probeDuration(String input) throws IOException, InterruptedException {
+        return (int) Math.round(Double.parseDouble(runProbe(commands.probeDuration(input))));
+    }
+
+    private String runProbe(List<String> cmd) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(cmd);
         pb.redirectErrorStream(true);
         Process process = pb.start();
         String output = new String(process.getInputStream().readAllBytes()).trim();
@@ -126,20 +550,12 @@ public class TranscodingWorker {
         if (exitCode != 0) {
             throw new IOException("ffprobe failed with exit code " + exitCode);
         }
-        return (int) Math.round(Double.parseDouble(output));
+        return output;
     }
 
-    private void extractThumbnail(Path inputFile, Path thumbnailFile)
+    private void extractThumbnail(String input, Path thumbnailFile)
             throws IOException, InterruptedException {
-        ProcessBuilder pb = new ProcessBuilder(
-                config.ffmpegPath(),
-                "-i", inputFile.toString(),
-                "-ss", "00:00:01",
-                "-vframes", "1",
-                "-vf", "scale=640:-1",
-                "-y",
-                thumbnailFile.toString()
-        );
+        ProcessBuilder pb = new ProcessBuilder(commands.thumbnail(input, thumbnailFile));
         pb.redirectErrorStream(true);
         Process process = pb.start();
         process.getInputStream().readAllBytes();
@@ -149,79 +565,125 @@ public class TranscodingWorker {
         }
     }
 
-    private void transcodeToHls(Path inputFile, Path hlsDir) throws IOException, InterruptedException {
-        var cmd = new ArrayList<String>();
-        cmd.add(config.ffmpegPath());
-        cmd.add("-i");
-        cmd.add(inputFile.toString());
-
-        var qualities = config.qualities();
-
-        for (int i = 0; i < qualities.size(); i++) {
-            var q = qualities.get(i);
-            cmd.add("-map"); cmd.add("0:v:0");
-            cmd.add("-map"); cmd.add("0:a:0?");
-            cmd.add("-c:v:" + i); cmd.add("libx264");
-            cmd.add("-b:v:" + i); cmd.add(q.bitrate());
-            cmd.add("-s:v:" + i); cmd.add(q.width() + "x" + q.height());
-            cmd.add("-c:a:" + i); cmd.add("aac");
-            cmd.add("-b:a:" + i); cmd.add("128k");
+    private void transcodeToHls(String input, Path hlsDir, FfmpegCommands.Window window,
+                                List<TranscodingConfig.QualityPreset> qualities)
+            throws IOException, InterruptedException {
+        var tasks = new ArrayList<TranscodeScheduler.Task>(qualities.size());
+        for (var q : qualities) {
+            int cores = transcodeScheduler.renditionCores(q);
+            String name = hlsDir.getParent().getFileName() + "/" + q.label();
+            tasks.add(new TranscodeScheduler.Task(name, cores,
+                    () -> runFfmpeg(commands.rendition(input, hlsDir, q, cores, window),
+                            hlsDir.resolveSibling("ffmpeg-" + q.label() + ".log"))));
+        }
+        transcodeScheduler.runAll(tasks);
+
+        if (window != null) {
+            // Chunk playlists go to chunks/<n>/ so the merge task can find them next to the segments
+            Path chunkDir = Files.createDirectories(hlsDir.resolve(chunkPlaylistPath(window.index())));
+            for (var q : qualities) {
+                String name = HlsPlaylists.mediaPlaylistName(q);
+                Files.move(hlsDir.resolve(name), chunkDir.resolve(name));
+            }
         }
+    }
 
-        cmd.add("-f"); cmd.add("hls");
-        cmd.add("-hls_time"); cmd.add("6");
-        cmd.add("-hls_list_size"); cmd.add("0");
-        cmd.add("-hls_segment_filename");
-        cmd.add(hlsDir.resolve("stream_%v_%03d.ts").toString());
-        cmd.add("-master_pl_name"); cmd.add("master.m3u8");
-        cmd.add("-var_stream_map");
+    private int transcodeSinglePass(String input, Path workDir, Path hlsDir, Path thumbnailFile, Path spriteDir,
+                                    List<TranscodingConfig.QualityPreset> qualities)
+            throws IOException, InterruptedException {
+        var threads = qualities.stream().map(transcodeScheduler::renditionCores).toList();
+        int cores = Math.min(threads.stream().mapToInt(Integer::intValue).sum(), transcodeScheduler.coreBudget());
+        Path logFile = workDir.resolve("ffmpeg.log");
+        Path progressFile = workDir.resolve("ffmpeg-progress.txt");
+
+        transcodeScheduler.runAll(List.of(new TranscodeScheduler.Task(workDir.getFileName() + "/single-pass", cores,
+                () -> runFfmpeg(commands.singlePass(input, hlsDir, thumbnailFile, spriteDir, progressFile,
+                        qualities, threads), logFile))));
+        String progress = Files.exists(progressFile) ? Files.readString(progressFile) : "";
+        double duration = FfmpegCommands.parseDuration(Files.readString(logFile), progress)
+                .orElseThrow(() -> new IOException("Could not determine duration from FFmpeg output"));
+        return (int) Math.round(duration);
+    }
 
-        var streamMap = new StringBuilder();
-        for (int i = 0; i < qualities.size(); i++) {
-            if (i > 0) streamMap.append(" ");
-            streamMap.append("v:").append(i).append(",a:").append(i)
-                     .append(",name:").append(qualities.get(i).label());
+    private void analyse(TranscodingJob job, String input, Path workDir) throws IOException, InterruptedException {
+        var source = FfmpegCommands.parseSource(runProbe(commands.probeVideo(input)));
+
+        // Windows are probed in parallel, one core each, within the node's core budget
+        var windows = ladderPlanner.sampleWindows(source.durationSecs());
+        var tasks = new ArrayList<TranscodeScheduler.Task>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            var window = windows.get(i);
+            Path output = workDir.resolve("complexity-" + i + ".mkv");
+            Path logFile = workDir.resolve("complexity-" + i + ".log");
+            tasks.add(new TranscodeScheduler.Task(workDir.getFileName() + "/complexity-" + i, 1,
+                    () -> runFfmpeg(commands.complexityProbe(input, window, output), logFile)));
         }
-        cmd.add(streamMap.toString());
-        cmd.add(hlsDir.resolve("stream_%v.m3u8").toString());
-        cmd.add("-y");
+        transcodeScheduler.runAll(tasks);
+
+        long bytes = 0;
+        double seconds = 0;
+        for (int i = 0; i < windows.size(); i++) {
+            Path output = workDir.resolve("complexity-" + i + ".mkv");
+            bytes += Files.size(output);
+            seconds += Math.min(windows.get(i).lengthSecs(), source.durationSecs());
+            Files.delete(output);
+        }
+        int complexityKbps = (int) Math.round(bytes * 8 / 1000.0 / Math.max(1, seconds));
+        var ladder = ladderPlanner.plan(config.qualities(), source.width(), source.height(), complexityKbps);
+        int durationSecs = (int) Math.round(source.durationSecs());
+
+        transcodingService.recordAnalysis(job.getId(), durationSecs, ladder, complexityKbps);
+        job.setDurationSecs(durationSecs);
+        job.setLadder(ladder);
+        job.setComplexityKbps(complexityKbps);
+        log.info("Job {}: {}x{} source, complexity {} kbps, ladder {}", job.getId(), source.width(),
+                source.height(), complexityKbps, ladder);
+    }
 
-        log.info("Running FFmpeg: {}", String.join(" ", cmd));
+    private void runFfmpeg(List<String> cmd, Path logFile) throws IOException, InterruptedException {
+        log.info("Running FFmpeg: {}", FfmpegCommands.redact(String.join(" ", cmd)));
 
+        // Output goes to a file so waitFor() is the only blocking call and stays interruptible
         ProcessBuilder pb = new ProcessBuilder(cmd);
         pb.redirectErrorStream(true);
+        pb.redirectOutput(logFile.toFile());
         Process process = pb.start();
-
-        String output = new String(process.getInputStream().readAllBytes());
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0) {
-            log.error("FFmpeg output: {}", output);
-            throw new IOException("FFmpeg transcoding failed with exit code " + exitCode);
-        }
-    }
-
-    private void uploadDirectory(Path dir, String bucket, String prefix) throws IOException {
-        try (Stream<Path> files = Files.walk(dir)) {
-            files.filter(Files::isRegularFile).forEach(file -> {
-                String key = prefix + dir.relativize(file).toString().replace('\\', '/');
-                String contentType = guessContentType(file.getFileName().toString());
-                storageService.uploadFile(bucket, key, file, contentType);
-            });
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                log.error("FFmpeg output: {}", FfmpegCommands.redact(Files.readString(logFile)));
+                throw new IOException("FFmpeg transcoding failed with exit code " + exitCode);
+            }
+        } finally {
+            // No-op on success; kills the encode when a sibling rendition failed or the job was cancelled
+            process.destroyForcibly();
         }
     }
 
-    private String guessContentType(String filename) {
-        if (filename.endsWith(".m3u8")) return "application/vnd.apple.mpegurl";
-        if (filename.endsWith(".ts")) return "video/mp2t";
-        if (filename.endsWith(".jpg") || filename.endsWith(".jpeg")) return "image/jpeg";
-        return "application/octet-stream";
+    // Nothing serves a failed video's output and a new job starts from scratch, so whatever the
+    // attempts streamed out is deleted. A custom thumbnail sits outside these prefixes and stays.
+    private void failVideo(UUID videoId) {
+        updateVideoStatus(videoId, VideoStatus.FAILED);
+        videoRepository.findById(videoId).ifPresent(video -> {
+            String bucket = storageService.processedBucket();
+            String base = video.getCreatorId() + "/" + video.getId() + "/";
+            try {
+                for (String prefix : List.of(hlsPrefix(video), base + "sprites/")) {
+                    for (String key : storageService.listObjectSizes(bucket, prefix).keySet()) {
+                        storageService.delete(bucket, key);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not delete the output of failed video {}: {}", videoId, e.getMessage());
+            }
+        });
     }
 
     private void updateVideoStatus(UUID videoId, VideoStatus status) {
         videoRepository.findById(videoId).ifPresent(video -> {
             video.setStatus(status);
             videoRepository.save(video);
+            accessCache.invalidateVideo(videoId);
         });
     }
 
@@ -234,9 +696,56 @@ public class TranscodingWorker {
         } catch (IOException ignored) {}
     }
 
+    private Video findVideo(UUID videoId) {
+        return videoRepository.findById(videoId)
+                .orElseThrow(() -> new IllegalStateException("Video not found: " + videoId));
+    }
+
+    private void writeMasterPlaylist(Path hlsDir, List<TranscodingConfig.QualityPreset> ladder) throws IOException {
+        Files.writeString(hlsDir.resolve(MASTER_PLAYLIST), HlsPlaylists.master(ladder));
+    }
+
+    private List<TranscodingConfig.QualityPreset> ladder(TranscodingJob job) {
+        return job.getLadder() != null ? job.getLadder() : config.qualities();
+    }
+
+    private List<TranscodingConfig.QualityPreset> pendingRenditions(List<TranscodingConfig.QualityPreset> ladder,
+                                                                    Set<String> done) {
+        return ladder.stream()
+                .filter(q -> !done.contains(TranscodingCheckpoint.rendition(q)))
+                .toList();
+    }
+
+    private String thumbnailKey(Video video) {
+        return video.getCreatorId() + "/" + video.getId() + "/thumbnail.jpg";
+    }
+
+    private String[] renditionCheckpoints(List<TranscodingConfig.QualityPreset> qualities) {
+        return qualities.stream().map(TranscodingCheckpoint::rendition).toArray(String[]::new);
+    }
+
+    private String hlsPrefix(Video video) {
+        return video.getCreatorId() + "/" + video.getId() + "/hls/";
+    }
+
+    private String chunkPlaylistPath(int chunkIndex) {
+        return "chunks/" + chunkIndex + "/";
+    }
+
+    // Whole segments per chunk, so every chunk starts on the global segment grid
+    private int chunkSeconds() {
+        int segment = FfmpegCommands.SEGMENT_SECONDS;
+        return Math.max(1, (config.chunkSeconds() + segment - 1) / segment) * segment;
+    }
+
     private String getExtension(String key) {
         if (key == null) return ".mp4";
         int dot = key.lastIndexOf('.');
         return dot >= 0 ? key.substring(dot) : ".mp4";
     }
+
+    @FunctionalInterface
+    private interface Encode<T> {
+        T run() throws IOException, InterruptedException;
+    }
 }
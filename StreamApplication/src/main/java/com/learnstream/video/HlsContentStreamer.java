@@ -0,0 +1,207 @@
+package com.learnstream.video;
+
+import com.learnstream.storage.ObjectInfo;
+import com.learnstream.storage.StorageService;
+import com.learnstream.storage.StoredObject;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+@Component
+public class HlsContentStreamer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_POOL_SIZE = 256;
+
+    private final StorageService storageService;
+    private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    public HlsContentStreamer(StorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    public void stream(String storageKey, MediaType contentType, HttpHeaders requestHeaders,
+                       HttpServletResponse response) throws IOException {
+        String bucket = storageService.processedBucket();
+        List<HttpRange> ranges = requestedRanges(requestHeaders);
+        // The GET response carries length and validators, so a segment costs one storage request, not a HEAD first
+        StoredObject object = storageService.open(bucket, storageKey, ranges.isEmpty() ? null : ranges.getFirst());
+        try {
+            ObjectInfo info = object.info();
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (info.eTag() != null) {
+                response.setHeader(HttpHeaders.ETAG, info.eTag());
+            }
+            if (info.lastModified() != null) {
+                response.setDateHeader(HttpHeaders.LAST_MODIFIED, info.lastModified().toEpochMilli());
+            }
+
+            if (isNotModified(requestHeaders, info)) {
+                object.abort();
+                response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                return;
+            }
+
+            // If-Range: only honour the range when the client's validator still matches
+            String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+            if (!ranges.isEmpty() && ifRange != null && !ifRangeMatches(requestHeaders, ifRange, info)) {
+                object.abort();
+                object.close();
+                ranges = List.of();
+                object = storageService.open(bucket, storageKey, null);
+            }
+
+            long length = info.contentLength();
+            if (!ranges.isEmpty() && !isSatisfiable(ranges, length)) {
+                object.abort();
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+
+            if (ranges.isEmpty()) {
+                response.setStatus(HttpStatus.OK.value());
+                response.setContentType(contentType.toString());
+                response.setContentLengthLong(length);
+                copy(object.content(), response.getOutputStream());
+            } else if (ranges.size() == 1) {
+                long start = ranges.getFirst().getRangeStart(length);
+                long end = ranges.getFirst().getRangeEnd(length);
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setContentType(contentType.toString());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+                response.setContentLengthLong(end - start + 1);
+                copy(object.content(), response.getOutputStream());
+            } else {
+                writeMultipart(bucket, storageKey, contentType, ranges, length, object, response);
+            }
+        } finally {
+            object.close();
+        }
+    }
+
+    // The first part comes from the already open GET; each further range is its own ranged GET
+    private void writeMultipart(String bucket, String storageKey, MediaType contentType,
+                                List<HttpRange> ranges, long length, StoredObject first,
+                                HttpServletResponse response) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            HttpRange range = ranges.get(i);
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(start, end, length) + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            if (i == 0) {
+                copy(first.content(), out);
+            } else {
+                try (InputStream in = storageService.download(bucket, storageKey, start, end)) {
+                    copy(in, out);
+                }
+            }
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private boolean isNotModified(HttpHeaders requestHeaders, ObjectInfo info) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            if (info.eTag() == null) {
+                return false;
+            }
+            String etag = weakTagValue(info.eTag());
+            return ifNoneMatch.stream()
+                    .anyMatch(candidate -> "*".equals(candidate) || weakTagValue(candidate).equals(etag));
+        }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        if (ifModifiedSince >= 0 && info.lastModified() != null) {
+            // HTTP dates have second precision
+            return info.lastModified().getEpochSecond() <= ifModifiedSince / 1000;
+        }
+        return false;
+    }
+
+    private List<HttpRange> requestedRanges(HttpHeaders requestHeaders) {
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // Malformed Range headers are ignored and the full object is served
+            return List.of();
+        }
+    }
+
+    private boolean ifRangeMatches(HttpHeaders requestHeaders, String ifRange, ObjectInfo info) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Weak validators never match for range requests
+            return ifRange.equals(info.eTag());
+        }
+        if (info.lastModified() == null) {
+            return false;
+        }
+        try {
+            long date = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return info.lastModified().getEpochSecond() == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isSatisfiable(List<HttpRange> ranges, long length) {
+        long total = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            HttpRange range = ranges.get(i);
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start < 0 || start >= length || end < start) {
+                return false;
+            }
+            total += end - start + 1;
+        }
+        // Reject overlapping range sets that would send more than the whole object
+        return ranges.size() == 1 || total <= length;
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    private static String weakTagValue(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
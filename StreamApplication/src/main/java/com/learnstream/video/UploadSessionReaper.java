@@ -0,0 +1,43 @@
+package com.learnstream.video;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Aborts upload sessions a client abandoned, along with their S3 multipart uploads. Nothing else
+// ends them: a session only goes away when it is completed, aborted or superseded by a new one.
+@Component
+public class UploadSessionReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionReaper.class);
+
+    private final VideoUploadService videoUploadService;
+    private final Duration sessionTtl;
+    private final int batchSize;
+
+    public UploadSessionReaper(VideoUploadService videoUploadService,
+                               @Value("${storage.multipart.session-ttl}") Duration sessionTtl,
+                               @Value("${storage.multipart.reap-batch-size}") int batchSize) {
+        this.videoUploadService = videoUploadService;
+        this.sessionTtl = sessionTtl;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${storage.multipart.reap-interval}")
+    public void reap() {
+        try {
+            // A short batch means the backlog is cleared or the rest are failing; either way, stop until next run
+            int removed;
+            do {
+                removed = videoUploadService.expireSessions(Instant.now().minus(sessionTtl), batchSize);
+            } while (removed == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Upload session reaper failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.learnstream.video;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+
+    Optional<UploadSession> findByIdAndVideoId(UUID id, UUID videoId);
+
+    List<UploadSession> findByVideoId(UUID videoId);
+
+    List<UploadSession> findByCreatedAtBeforeOrderByCreatedAt(Instant cutoff, Limit limit);
+}
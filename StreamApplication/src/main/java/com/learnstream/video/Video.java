@@ -46,6 +46,9 @@ public class Video {
     @Column(name = "duration_secs")
     private Integer durationSecs;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -1,18 +1,25 @@
 package com.learnstream.video;
 
 import com.learnstream.auth.CurrentUser;
+import com.learnstream.auth.PlaybackTokenService;
 import com.learnstream.payment.PaymentService;
+import com.learnstream.video.dto.CreateUploadSessionRequest;
 import com.learnstream.video.dto.CreateVideoRequest;
+import com.learnstream.video.dto.CursorPage;
 import com.learnstream.video.dto.PageResponse;
+import com.learnstream.video.dto.PartUploadUrlsResponse;
 import com.learnstream.video.dto.StreamResponse;
 import com.learnstream.video.dto.UpdateVideoRequest;
+import com.learnstream.video.dto.UploadSessionResponse;
 import com.learnstream.video.dto.VideoResponse;
 import com.learnstream.video.exception.VideoAccessDeniedException;
 import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,7 +27,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -29,10 +36,20 @@ public class VideoController {
 
     private final VideoService videoService;
     private final PaymentService paymentService;
+    private final HlsContentStreamer hlsContentStreamer;
+    private final PlaybackTokenService playbackTokenService;
+    private final VideoUploadService videoUploadService;
 
-    public VideoController(VideoService videoService, PaymentService paymentService) {
+    public VideoController(VideoService videoService,
+                           PaymentService paymentService,
+                           HlsContentStreamer hlsContentStreamer,
+                           PlaybackTokenService playbackTokenService,
+                           VideoUploadService videoUploadService) {
         this.videoService = videoService;
+        this.videoUploadService = videoUploadService;
         this.paymentService = paymentService;
+        this.hlsContentStreamer = hlsContentStreamer;
+        this.playbackTokenService = playbackTokenService;
     }
 
     // ── Public endpoints ──────────────────────────────────────
@@ -44,6 +61,15 @@ public class VideoController {
         return ResponseEntity.ok(videoService.listPublicVideos(search, pageable));
     }
 
+    // Keyset pagination for browsing; pass cursor= (empty) for the first page, then nextCursor.
+    // Search stays on the offset variant because it is ordered by relevance.
+    @GetMapping(value = "/videos", params = {"cursor", "!search"})
+    public ResponseEntity<CursorPage<VideoResponse>> listVideosByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(videoService.listPublicVideos(cursor, size));
+    }
+
     @GetMapping("/videos/{id}")
     public ResponseEntity<VideoResponse> getVideo(@PathVariable UUID id) {
         return ResponseEntity.ok(videoService.getById(id));
@@ -64,7 +90,71 @@ public class VideoController {
             @PathVariable UUID id,
             @RequestParam("file") MultipartFile file,
             @CurrentUser UUID creatorId) throws IOException {
-        return ResponseEntity.ok(videoService.upload(id, file, creatorId));
+        return ResponseEntity.ok(videoUploadService.upload(id, file, creatorId));
+    }
+
+    @PutMapping(value = "/videos/{id}/upload", consumes = {"video/mp4", "video/quicktime", "video/webm"})
+    public ResponseEntity<VideoResponse> uploadVideoStream(
+            @PathVariable UUID id,
+            HttpServletRequest request,
+            @CurrentUser UUID creatorId) throws IOException {
+        return ResponseEntity.ok(videoUploadService.uploadStream(
+                id, request.getInputStream(), request.getContentType(), request.getContentLengthLong(), creatorId));
+    }
+
+    @PostMapping("/videos/{id}/uploads")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(
+            @PathVariable UUID id,
+            @Valid @RequestBody CreateUploadSessionRequest request,
+            @CurrentUser UUID creatorId) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(videoUploadService.createSession(id, request, creatorId));
+    }
+
+    @GetMapping("/videos/{id}/uploads/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getUploadSession(
+            @PathVariable UUID id,
+            @PathVariable UUID sessionId,
+            @CurrentUser UUID creatorId) {
+        return ResponseEntity.ok(videoUploadService.getSession(id, sessionId, creatorId));
+    }
+
+    @PutMapping("/videos/{id}/uploads/{sessionId}/parts/{partNumber}")
+    public ResponseEntity<Void> uploadPart(
+            @PathVariable UUID id,
+            @PathVariable UUID sessionId,
+            @PathVariable int partNumber,
+            HttpServletRequest request,
+            @CurrentUser UUID creatorId) throws IOException {
+        videoUploadService.uploadPart(
+                id, sessionId, partNumber, request.getInputStream(), request.getContentLengthLong(), creatorId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/videos/{id}/uploads/{sessionId}/part-urls")
+    public ResponseEntity<PartUploadUrlsResponse> presignUploadParts(
+            @PathVariable UUID id,
+            @PathVariable UUID sessionId,
+            @RequestParam(required = false) List<Integer> parts,
+            @CurrentUser UUID creatorId) {
+        return ResponseEntity.ok(videoUploadService.presignParts(id, sessionId, parts, creatorId));
+    }
+
+    @PostMapping("/videos/{id}/uploads/{sessionId}/complete")
+    public ResponseEntity<VideoResponse> completeUploadSession(
+            @PathVariable UUID id,
+            @PathVariable UUID sessionId,
+            @CurrentUser UUID creatorId) {
+        return ResponseEntity.ok(videoUploadService.completeSession(id, sessionId, creatorId));
+    }
+
+    @DeleteMapping("/videos/{id}/uploads/{sessionId}")
+    public ResponseEntity<Void> abortUploadSession(
+            @PathVariable UUID id,
+            @PathVariable UUID sessionId,
+            @CurrentUser UUID creatorId) {
+        videoUploadService.abortSession(id, sessionId, creatorId);
+        return ResponseEntity.noContent().build();
     }
 
     @PutMapping("/videos/{id}")
@@ -92,7 +182,7 @@ public class VideoController {
         if (!paymentService.hasAccess(userId, id)) {
             throw new VideoAccessDeniedException();
         }
-        return ResponseEntity.ok(videoService.getStreamUrl(id));
+        return ResponseEntity.ok(videoService.getStreamUrl(id, userId));
     }
 
     @PutMapping(value = "/videos/{id}/thumbnail", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -113,28 +203,36 @@ public class VideoController {
     // ── HLS proxy (authenticated) ───────────────────────────
 
     @GetMapping("/videos/{id}/hls/{*path}")
-    public ResponseEntity<InputStreamResource> proxyHls(
+    public void proxyHls(
             @PathVariable UUID id,
             @PathVariable String path,
-            @CurrentUser UUID userId) {
+            @RequestHeader HttpHeaders headers,
+            @CurrentUser UUID userId,
+            HttpServletResponse response) throws IOException {
         if (!paymentService.hasAccess(userId, id)) {
             throw new VideoAccessDeniedException();
         }
 
         // Strip leading slash from path capture
         String filePath = path.startsWith("/") ? path.substring(1) : path;
-        InputStream stream = videoService.streamHlsContent(id, filePath);
+        String storageKey = videoService.resolveHlsKey(id, filePath);
+        hlsContentStreamer.stream(storageKey, hlsContentType(filePath), headers, response);
+    }
 
-        String contentType = "application/octet-stream";
-        if (filePath.endsWith(".m3u8")) {
-            contentType = "application/vnd.apple.mpegurl";
-        } else if (filePath.endsWith(".ts")) {
-            contentType = "video/mp2t";
-        }
+    // ── HLS playback (signed playback token, no DB access) ──
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .body(new InputStreamResource(stream));
+    @GetMapping("/videos/{id}/play/{token}/{*path}")
+    public void playHls(
+            @PathVariable UUID id,
+            @PathVariable String token,
+            @PathVariable String path,
+            @RequestHeader HttpHeaders headers,
+            HttpServletResponse response) throws IOException {
+        var playback = playbackTokenService.verify(token, id);
+
+        String filePath = path.startsWith("/") ? path.substring(1) : path;
+        String storageKey = videoService.playbackHlsKey(playback.creatorId(), id, filePath);
+        hlsContentStreamer.stream(storageKey, hlsContentType(filePath), headers, response);
     }
 
     @GetMapping("/creator/videos")
@@ -143,4 +241,21 @@ public class VideoController {
             @PageableDefault(size = 20, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
         return ResponseEntity.ok(videoService.listCreatorVideos(creatorId, pageable));
     }
+
+    @GetMapping(value = "/creator/videos", params = "cursor")
+    public ResponseEntity<CursorPage<VideoResponse>> listCreatorVideosByCursor(
+            @CurrentUser UUID creatorId,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(videoService.listCreatorVideos(creatorId, cursor, size));
+    }
+
+    private MediaType hlsContentType(String filePath) {
+        if (filePath.endsWith(".m3u8")) {
+            return MediaType.parseMediaType("application/vnd.apple.mpegurl");
+        } else if (filePath.endsWith(".ts")) {
+            return MediaType.parseMediaType("video/mp2t");
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
 }
@@ -6,6 +6,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface VideoRepository extends JpaRepository<Video, UUID> {
@@ -14,10 +17,39 @@ public interface VideoRepository extends JpaRepository<Video, UUID> {
 
     Page<Video> findByStatus(VideoStatus status, Pageable pageable);
 
-    @Query("SELECT v FROM Video v WHERE v.status = 'READY' " +
-           "AND (LOWER(v.title) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR LOWER(v.description) LIKE LOWER(CONCAT('%', :search, '%')))")
-    Page<Video> searchReadyVideos(@Param("search") String search, Pageable pageable);
+    // :query is a tsquery built by VideoService (prefix terms AND-ed); best matches first
+    @Query(value = "SELECT v.* FROM videos v, to_tsquery('simple', :query) q " +
+                   "WHERE v.status = 'READY' AND v.search_vector @@ q " +
+                   "ORDER BY ts_rank(v.search_vector, q) DESC, v.created_at DESC",
+           countQuery = "SELECT count(*) FROM videos v " +
+                        "WHERE v.status = 'READY' AND v.search_vector @@ to_tsquery('simple', :query)",
+           nativeQuery = true)
+    Page<Video> searchReadyVideos(@Param("query") String query, Pageable pageable);
+
+    // Keyset pages in (created_at DESC, id DESC) order; the row comparison lets Postgres
+    // seek straight into the matching composite index instead of counting past an OFFSET
+    @Query(value = "SELECT * FROM videos WHERE status = 'READY' " +
+                   "AND (created_at, id) < (:createdAt, :id) " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Video> findReadyBefore(@Param("createdAt") Instant createdAt, @Param("id") UUID id,
+                                @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM videos WHERE owner_id = :creatorId " +
+                   "AND (created_at, id) < (:createdAt, :id) " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Video> findByCreatorBefore(@Param("creatorId") UUID creatorId, @Param("createdAt") Instant createdAt,
+                                    @Param("id") UUID id, @Param("limit") int limit);
+
+    // Oldest READY copy of the same upload by the same creator; served by the partial content hash index
+    @Query(value = "SELECT * FROM videos WHERE owner_id = :creatorId AND content_hash = :contentHash " +
+                   "AND status = 'READY' AND content_hash IS NOT NULL AND id <> :excludeId " +
+                   "ORDER BY created_at LIMIT 1",
+           nativeQuery = true)
+    Optional<Video> findReadyByContentHash(@Param("creatorId") UUID creatorId,
+                                           @Param("contentHash") String contentHash,
+                                           @Param("excludeId") UUID excludeId);
 
     Page<Video> findByStatusOrderByCreatedAtDesc(VideoStatus status, Pageable pageable);
 
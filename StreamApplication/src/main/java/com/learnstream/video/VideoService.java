@@ -1,8 +1,13 @@
 package com.learnstream.video;
 
+import com.learnstream.auth.PlaybackTokenService;
+import com.learnstream.payment.AccessCache;
+import com.learnstream.payment.CreatorStatsService;
 import com.learnstream.storage.StorageService;
 import com.learnstream.transcoding.TranscodingService;
 import com.learnstream.video.dto.CreateVideoRequest;
+import com.learnstream.video.dto.CursorPage;
+import com.learnstream.video.dto.PageCursor;
 import com.learnstream.video.dto.PageResponse;
 import com.learnstream.video.dto.StreamResponse;
 import com.learnstream.video.dto.UpdateVideoRequest;
@@ -11,14 +16,21 @@ import com.learnstream.video.exception.InvalidThumbnailException;
 import com.learnstream.video.exception.InvalidVideoFileException;
 import com.learnstream.video.exception.VideoAccessDeniedException;
 import com.learnstream.video.exception.VideoNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class VideoService {
@@ -26,23 +38,38 @@ public class VideoService {
     private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of(
             "video/mp4", "video/quicktime", "video/webm"
     );
-    private static final long MAX_FILE_SIZE = 2L * 1024 * 1024 * 1024; // 2 GB
+    static final long MAX_FILE_SIZE = 2L * 1024 * 1024 * 1024; // 2 GB
 
     private static final Set<String> ALLOWED_THUMBNAIL_TYPES = Set.of(
             "image/jpeg", "image/png", "image/webp"
     );
     private static final long MAX_THUMBNAIL_SIZE = 5L * 1024 * 1024; // 5 MB
+    private static final int MAX_SEARCH_TERMS = 8;
 
     private final VideoRepository videoRepository;
     private final StorageService storageService;
     private final TranscodingService transcodingService;
+    private final AccessCache accessCache;
+    private final PlaybackTokenService playbackTokenService;
+    private final CreatorStatsService creatorStatsService;
+    private final String thumbnailBaseUrl;
 
     public VideoService(VideoRepository videoRepository,
                         StorageService storageService,
-                        TranscodingService transcodingService) {
+                        TranscodingService transcodingService,
+                        AccessCache accessCache,
+                        PlaybackTokenService playbackTokenService,
+                        CreatorStatsService creatorStatsService,
+                        @Value("${storage.thumbnail-base-url}") String thumbnailBaseUrl) {
         this.videoRepository = videoRepository;
         this.storageService = storageService;
         this.transcodingService = transcodingService;
+        this.accessCache = accessCache;
+        this.playbackTokenService = playbackTokenService;
+        this.creatorStatsService = creatorStatsService;
+        this.thumbnailBaseUrl = thumbnailBaseUrl.endsWith("/")
+                ? thumbnailBaseUrl.substring(0, thumbnailBaseUrl.length() - 1)
+                : thumbnailBaseUrl;
     }
 
     @Transactional
@@ -54,11 +81,14 @@ public class VideoService {
         video.setPriceCents(request.priceCents());
         video.setStatus(VideoStatus.DRAFT);
         videoRepository.save(video);
+        creatorStatsService.videoCreated(creatorId);
         return toResponse(video);
     }
 
-    @Transactional
-    public VideoResponse upload(UUID videoId, MultipartFile file, UUID creatorId) throws IOException {
+    // Checks ownership and the declared file before any bytes are transferred; the transfer
+    // itself runs outside a transaction so no DB connection is held while it streams
+    @Transactional(readOnly = true)
+    public String prepareUpload(UUID videoId, UUID creatorId, String contentType, long size, String filename) {
         var video = videoRepository.findById(videoId)
                 .orElseThrow(() -> new VideoNotFoundException(videoId));
 
@@ -66,20 +96,27 @@ public class VideoService {
             throw new VideoAccessDeniedException();
         }
 
-        validateVideoFile(file);
+        validateVideoFile(contentType, size);
 
-        String key = creatorId + "/" + videoId + "/original" + getExtension(file.getOriginalFilename());
-        storageService.upload(
-                storageService.rawBucket(),
-                key,
-                file.getInputStream(),
-                file.getSize(),
-                file.getContentType()
-        );
+        String extension = filename != null ? getExtension(filename) : getVideoExtension(contentType);
+        return creatorId + "/" + videoId + "/original" + extension;
+    }
+
+    // contentHash is null when the bytes never passed through the API (presigned part uploads)
+    @Transactional
+    public VideoResponse completeUpload(UUID videoId, UUID creatorId, String key, String contentHash) {
+        var video = videoRepository.findById(videoId)
+                .orElseThrow(() -> new VideoNotFoundException(videoId));
+
+        if (!video.getCreatorId().equals(creatorId)) {
+            throw new VideoAccessDeniedException();
+        }
 
         video.setRawStorageKey(key);
+        video.setContentHash(contentHash);
         video.setStatus(VideoStatus.PROCESSING);
         videoRepository.save(video);
+        accessCache.invalidateVideo(videoId);
 
         transcodingService.createJob(video.getId());
 
@@ -143,10 +180,25 @@ public class VideoService {
 
     @Transactional(readOnly = true)
     public PageResponse<VideoResponse> listPublicVideos(String search, Pageable pageable) {
-        var page = (search != null && !search.isBlank())
-                ? videoRepository.searchReadyVideos(search.trim(), pageable)
-                : videoRepository.findByStatus(VideoStatus.READY, pageable);
-        return PageResponse.from(page, this::toResponse);
+        if (search == null || search.isBlank()) {
+            return PageResponse.from(videoRepository.findByStatus(VideoStatus.READY, pageable), this::toResponse);
+        }
+        String query = toPrefixQuery(search);
+        if (query.isEmpty()) {
+            return PageResponse.from(Page.empty(pageable), this::toResponse);
+        }
+        // Search results come back in relevance order, so the requested sort does not apply
+        var unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        return PageResponse.from(videoRepository.searchReadyVideos(query, unsorted), this::toResponse);
+    }
+
+    // Cursor mode: no COUNT(*) and no OFFSET, so deep pages cost the same as the first
+    @Transactional(readOnly = true)
+    public CursorPage<VideoResponse> listPublicVideos(String cursor, int size) {
+        var after = PageCursor.decode(cursor);
+        int limit = CursorPage.clampSize(size);
+        var rows = videoRepository.findReadyBefore(after.createdAt(), after.id(), limit + 1);
+        return CursorPage.from(rows, limit, VideoService::cursorOf, this::toResponse);
     }
 
     @Transactional(readOnly = true)
@@ -171,8 +223,9 @@ public class VideoService {
         if (request.description() != null) {
             video.setDescription(request.description());
         }
-        if (request.priceCents() != null) {
+        if (request.priceCents() != null && request.priceCents() != video.getPriceCents()) {
             video.setPriceCents(request.priceCents());
+            accessCache.invalidateVideo(videoId);
         }
 
         videoRepository.save(video);
@@ -207,6 +260,8 @@ public class VideoService {
         }
 
         videoRepository.delete(video);
+        creatorStatsService.videoDeleted(creatorId);
+        accessCache.invalidateVideo(videoId);
     }
 
     @Transactional(readOnly = true)
@@ -216,7 +271,15 @@ public class VideoService {
     }
 
     @Transactional(readOnly = true)
-    public StreamResponse getStreamUrl(UUID videoId) {
+    public CursorPage<VideoResponse> listCreatorVideos(UUID creatorId, String cursor, int size) {
+        var after = PageCursor.decode(cursor);
+        int limit = CursorPage.clampSize(size);
+        var rows = videoRepository.findByCreatorBefore(creatorId, after.createdAt(), after.id(), limit + 1);
+        return CursorPage.from(rows, limit, VideoService::cursorOf, this::toResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public StreamResponse getStreamUrl(UUID videoId, UUID userId) {
         var video = videoRepository.findById(videoId)
                 .orElseThrow(() -> new VideoNotFoundException(videoId));
 
@@ -224,13 +287,22 @@ public class VideoService {
             throw new VideoAccessDeniedException();
         }
 
-        // Return backend proxy URL instead of presigned MinIO URL
-        String proxyUrl = "/api/videos/" + videoId + "/hls/master.m3u8";
-        return new StreamResponse(proxyUrl);
+        // Return a backend proxy URL scoped by a signed playback token. Playlists reference
+        // their renditions and segments relatively, so every follow-up request keeps the token.
+        // Tokens are short-lived; players refresh through this endpoint, which re-checks access.
+        // Taken before issuing, so the reported expiry is never later than the token's own.
+        Instant expiresAt = Instant.now().plus(playbackTokenService.tokenTtl()).truncatedTo(ChronoUnit.SECONDS);
+        String token = playbackTokenService.issue(userId, videoId, video.getCreatorId());
+        String proxyUrl = "/api/videos/" + videoId + "/play/" + token + "/master.m3u8";
+        return new StreamResponse(proxyUrl, expiresAt);
     }
 
     @Transactional(readOnly = true)
-    public java.io.InputStream streamHlsContent(UUID videoId, String path) {
+    public String resolveHlsKey(UUID videoId, String path) {
+        return accessCache.hlsBase(videoId, this::loadHlsBase) + validateHlsPath(path);
+    }
+
+    private String loadHlsBase(UUID videoId) {
         var video = videoRepository.findById(videoId)
                 .orElseThrow(() -> new VideoNotFoundException(videoId));
 
@@ -240,22 +312,16 @@ public class VideoService {
 
         // hlsStorageKey = "{creatorId}/{videoId}/hls/master.m3u8"
         // Derive the base path: "{creatorId}/{videoId}/hls/"
-        String hlsBase = video.getHlsStorageKey()
+        return video.getHlsStorageKey()
                 .substring(0, video.getHlsStorageKey().lastIndexOf('/') + 1);
-        String storageKey = hlsBase + path;
+    }
 
-        return storageService.download(storageService.processedBucket(), storageKey);
+    // Same layout TranscodingWorker writes to, so playback requests need no lookup
+    public String playbackHlsKey(UUID creatorId, UUID videoId, String path) {
+        return creatorId + "/" + videoId + "/hls/" + validateHlsPath(path);
     }
 
     private VideoResponse toResponse(Video video) {
-        String presignedThumbnailUrl = null;
-        if (video.getThumbnailUrl() != null) {
-            presignedThumbnailUrl = storageService.generatePresignedUrl(
-                    storageService.processedBucket(),
-                    video.getThumbnailUrl(),
-                    60
-            ).toString();
-        }
         return new VideoResponse(
                 video.getId(),
                 video.getCreatorId(),
@@ -263,21 +329,48 @@ public class VideoService {
                 video.getDescription(),
                 video.getPriceCents(),
                 video.getStatus(),
-                presignedThumbnailUrl,
+                thumbnailUrl(video.getThumbnailUrl()),
                 video.getDurationSecs(),
                 video.getCreatedAt(),
                 video.getUpdatedAt()
         );
     }
 
-    private void validateVideoFile(MultipartFile file) {
-        if (file.isEmpty()) {
+    private static PageCursor cursorOf(Video video) {
+        return new PageCursor(video.getCreatedAt(), video.getId());
+    }
+
+    // Free text to a tsquery: letters and digits only, so user input can never inject tsquery
+    // operators, and every term matches as a prefix ("spr boo" finds "Spring Boot")
+    static String toPrefixQuery(String search) {
+        return Arrays.stream(search.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .limit(MAX_SEARCH_TERMS)
+                .map(term -> term + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    // A public/CDN origin for thumbnails needs no signing at all; otherwise reuse a cached presigned URL
+    private String thumbnailUrl(String key) {
+        if (key == null) {
+            return null;
+        }
+        if (!thumbnailBaseUrl.isEmpty()) {
+            return thumbnailBaseUrl + "/" + key;
+        }
+        return storageService.generatePresignedUrl(storageService.processedBucket(), key, 60).toString();
+    }
+
+    // A negative size means the length is not known up front (chunked request body)
+    private void validateVideoFile(String contentType, long size) {
+        if (size == 0) {
             throw new InvalidVideoFileException("file is empty");
         }
-        if (!ALLOWED_CONTENT_TYPES.contains(file.getContentType())) {
+        if (!ALLOWED_CONTENT_TYPES.contains(contentType)) {
             throw new InvalidVideoFileException("unsupported format — use mp4, mov, or webm");
         }
-        if (file.getSize() > MAX_FILE_SIZE) {
+        if (size > MAX_FILE_SIZE) {
             throw new InvalidVideoFileException("file exceeds 2 GB limit");
         }
     }
@@ -294,12 +387,27 @@ public class VideoService {
         }
     }
 
+    private String validateHlsPath(String path) {
+        if (path.isEmpty() || path.contains("..")) {
+            throw new VideoAccessDeniedException();
+        }
+        return path;
+    }
+
     private String getExtension(String filename) {
         if (filename == null) return ".mp4";
         int dot = filename.lastIndexOf('.');
         return dot >= 0 ? filename.substring(dot) : ".mp4";
     }
 
+    private String getVideoExtension(String contentType) {
+        return switch (contentType) {
+            case "video/quicktime" -> ".mov";
+            case "video/webm" -> ".webm";
+            default -> ".mp4";
+        };
+    }
+
     private String getImageExtension(String contentType) {
         return switch (contentType) {
             case "image/png" -> ".png";
@@ -0,0 +1,294 @@
+package com.learnstream.video;
+
+import com.learnstream.storage.StorageService;
+import com.learnstream.storage.UploadedPart;
+import com.learnstream.video.dto.CreateUploadSessionRequest;
+import com.learnstream.video.dto.PartUploadUrlsResponse;
+import com.learnstream.video.dto.UploadSessionResponse;
+import com.learnstream.video.dto.VideoResponse;
+import com.learnstream.video.exception.InvalidVideoFileException;
+import com.learnstream.video.exception.UploadSessionNotFoundException;
+import com.learnstream.video.exception.VideoAccessDeniedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+// Moves upload bytes into storage without holding a transaction; VideoService owns the
+// validation before and the state change after each transfer
+@Service
+public class VideoUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(VideoUploadService.class);
+
+    private final VideoService videoService;
+    private final StorageService storageService;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final Duration partUrlExpiry;
+
+    public VideoUploadService(VideoService videoService,
+                              StorageService storageService,
+                              UploadSessionRepository uploadSessionRepository,
+                              @Value("${storage.multipart.part-url-expiry}") Duration partUrlExpiry) {
+        this.videoService = videoService;
+        this.storageService = storageService;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.partUrlExpiry = partUrlExpiry;
+    }
+
+    public VideoResponse upload(UUID videoId, MultipartFile file, UUID creatorId) throws IOException {
+        String key = videoService.prepareUpload(
+                videoId, creatorId, file.getContentType(), file.getSize(), file.getOriginalFilename());
+        // Hashed on the way through so a re-upload of the same file can reuse the existing renditions
+        var digest = sha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            storageService.uploadStream(storageService.rawBucket(), key, in, file.getContentType());
+        }
+        return videoService.completeUpload(videoId, creatorId, key, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    // Raw request body straight into an S3 multipart upload, one part buffer at a time
+    public VideoResponse uploadStream(UUID videoId, InputStream body, String contentType, long contentLength,
+                                      UUID creatorId) throws IOException {
+        String type = baseType(contentType);
+        String key = videoService.prepareUpload(videoId, creatorId, type, contentLength, null);
+        var digest = sha256();
+        long size = storageService.uploadStream(storageService.rawBucket(), key,
+                new DigestInputStream(new SizeLimitedInputStream(body), digest), type);
+        if (size == 0) {
+            storageService.delete(storageService.rawBucket(), key);
+            throw new InvalidVideoFileException("file is empty");
+        }
+        log.info("Streamed {} bytes for video {}", size, videoId);
+        return videoService.completeUpload(videoId, creatorId, key, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    public UploadSessionResponse createSession(UUID videoId, CreateUploadSessionRequest request, UUID creatorId) {
+        String type = baseType(request.contentType());
+        String key = videoService.prepareUpload(videoId, creatorId, type, request.size(), null);
+
+        // A new session supersedes any earlier, unfinished one for the same video
+        for (UploadSession stale : uploadSessionRepository.findByVideoId(videoId)) {
+            abort(stale);
+        }
+
+        var session = new UploadSession();
+        session.setVideoId(videoId);
+        session.setCreatorId(creatorId);
+        session.setStorageKey(key);
+        session.setContentType(type);
+        session.setTotalSize(request.size());
+        session.setPartSize(storageService.multipartPartSize());
+        session.setS3UploadId(storageService.startMultipartUpload(storageService.rawBucket(), key, type));
+        uploadSessionRepository.save(session);
+
+        return toResponse(session, List.of());
+    }
+
+    public UploadSessionResponse getSession(UUID videoId, UUID sessionId, UUID creatorId) {
+        var session = requireSession(videoId, sessionId, creatorId);
+        return toResponse(session, uploadedParts(session));
+    }
+
+    public void uploadPart(UUID videoId, UUID sessionId, int partNumber, InputStream body, long contentLength,
+                           UUID creatorId) {
+        var session = requireSession(videoId, sessionId, creatorId);
+        requireValidPart(session, partNumber);
+        long expected = session.expectedPartSize(partNumber);
+        if (contentLength != expected) {
+            throw new InvalidVideoFileException("part " + partNumber + " must be " + expected + " bytes");
+        }
+        // Re-sending a part replaces it, so a client resumes by re-uploading whatever is missing
+        storageService.uploadPart(storageService.rawBucket(), session.getStorageKey(), session.getS3UploadId(),
+                partNumber, body, contentLength);
+    }
+
+    // Presigned PUT URLs so the client sends part bytes straight to storage instead of through the API.
+    // With no part numbers given, every part storage has not received yet is signed.
+    public PartUploadUrlsResponse presignParts(UUID videoId, UUID sessionId, List<Integer> partNumbers,
+                                               UUID creatorId) {
+        var session = requireSession(videoId, sessionId, creatorId);
+        List<Integer> requested = partNumbers;
+        if (requested == null || requested.isEmpty()) {
+            var uploaded = new HashSet<>(uploadedParts(session));
+            requested = IntStream.rangeClosed(1, session.partCount())
+                    .filter(n -> !uploaded.contains(n))
+                    .boxed()
+                    .toList();
+        }
+
+        var expiresAt = Instant.now().plus(partUrlExpiry);
+        var urls = requested.stream().distinct().map(partNumber -> {
+            requireValidPart(session, partNumber);
+            long size = session.expectedPartSize(partNumber);
+            var url = storageService.presignUploadPart(storageService.rawBucket(), session.getStorageKey(),
+                    session.getS3UploadId(), partNumber, size, partUrlExpiry);
+            return new PartUploadUrlsResponse.PartUploadUrl(partNumber, size, url.toString());
+        }).toList();
+        return new PartUploadUrlsResponse(session.getId(), expiresAt, urls);
+    }
+
+    public VideoResponse completeSession(UUID videoId, UUID sessionId, UUID creatorId) {
+        var session = requireSession(videoId, sessionId, creatorId);
+        List<UploadedPart> parts = storageService.listParts(
+                storageService.rawBucket(), session.getStorageKey(), session.getS3UploadId());
+
+        var uploaded = parts.stream().map(UploadedPart::partNumber).toList();
+        if (parts.size() != session.partCount()
+                || parts.stream().anyMatch(p -> p.size() != session.expectedPartSize(p.partNumber()))) {
+            throw new InvalidVideoFileException("upload incomplete, received parts " + uploaded
+                    + " of " + session.partCount());
+        }
+
+        storageService.completeMultipartUpload(
+                storageService.rawBucket(), session.getStorageKey(), session.getS3UploadId(), parts);
+
+        // Parts may have come straight from the client, so check the assembled object before transcoding it.
+        // The session is only dropped once the object passed; a failed one is left to UploadSessionReaper.
+        long stored = storageService.stat(storageService.rawBucket(), session.getStorageKey()).contentLength();
+        if (stored != session.getTotalSize()) {
+            storageService.delete(storageService.rawBucket(), session.getStorageKey());
+            throw new InvalidVideoFileException("uploaded object is " + stored + " bytes, expected "
+                    + session.getTotalSize());
+        }
+        uploadSessionRepository.delete(session);
+        // Parts may have gone straight to storage, so there is no content hash to deduplicate on
+        return videoService.completeUpload(videoId, creatorId, session.getStorageKey(), null);
+    }
+
+    public void abortSession(UUID videoId, UUID sessionId, UUID creatorId) {
+        abort(requireSession(videoId, sessionId, creatorId));
+    }
+
+    // Sessions started before the cutoff that were never completed or aborted. Their parts are billed
+    // storage that no object will ever be assembled from, so the multipart upload goes with the session.
+    // Unlike a client abort, a session whose upload could not be aborted is kept for the next run.
+    // Returns the number of sessions removed.
+    public int expireSessions(Instant cutoff, int limit) {
+        int removed = 0;
+        for (UploadSession session : uploadSessionRepository.findByCreatedAtBeforeOrderByCreatedAt(
+                cutoff, Limit.of(limit))) {
+            try {
+                storageService.abortMultipartUpload(
+                        storageService.rawBucket(), session.getStorageKey(), session.getS3UploadId());
+            } catch (RuntimeException e) {
+                log.warn("Failed to abort multipart upload of expired session {}: {}", session.getId(), e.getMessage());
+                continue;
+            }
+            uploadSessionRepository.delete(session);
+            removed++;
+            log.info("Expired upload session {} of video {} started at {}",
+                    session.getId(), session.getVideoId(), session.getCreatedAt());
+        }
+        return removed;
+    }
+
+    private UploadSession requireSession(UUID videoId, UUID sessionId, UUID creatorId) {
+        var session = uploadSessionRepository.findByIdAndVideoId(sessionId, videoId)
+                .orElseThrow(() -> new UploadSessionNotFoundException(sessionId));
+        if (!session.getCreatorId().equals(creatorId)) {
+            throw new VideoAccessDeniedException();
+        }
+        return session;
+    }
+
+    private void requireValidPart(UploadSession session, int partNumber) {
+        if (partNumber < 1 || partNumber > session.partCount()) {
+            throw new InvalidVideoFileException("part number must be between 1 and " + session.partCount());
+        }
+    }
+
+    private void abort(UploadSession session) {
+        try {
+            storageService.abortMultipartUpload(
+                    storageService.rawBucket(), session.getStorageKey(), session.getS3UploadId());
+        } catch (RuntimeException e) {
+            log.warn("Failed to abort multipart upload for session {}: {}", session.getId(), e.getMessage());
+        }
+        uploadSessionRepository.delete(session);
+    }
+
+    private List<Integer> uploadedParts(UploadSession session) {
+        return storageService.listParts(storageService.rawBucket(), session.getStorageKey(), session.getS3UploadId())
+                .stream()
+                .map(UploadedPart::partNumber)
+                .sorted()
+                .toList();
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session, List<Integer> uploadedParts) {
+        return new UploadSessionResponse(session.getId(), session.getTotalSize(), session.getPartSize(),
+                session.partCount(), uploadedParts);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private String baseType(String contentType) {
+        if (contentType == null) {
+            throw new InvalidVideoFileException("missing content type");
+        }
+        try {
+            var mediaType = MediaType.parseMediaType(contentType);
+            return mediaType.getType() + "/" + mediaType.getSubtype();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidVideoFileException("malformed content type");
+        }
+    }
+
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+
+        private long remaining = VideoService.MAX_FILE_SIZE;
+
+        private SizeLimitedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                consume(n);
+            }
+            return n;
+        }
+
+        private void consume(long n) {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new InvalidVideoFileException("file exceeds 2 GB limit");
+            }
+        }
+    }
+}
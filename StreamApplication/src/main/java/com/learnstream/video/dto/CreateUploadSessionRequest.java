@@ -0,0 +1,9 @@
+package com.learnstream.video.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+
+public record CreateUploadSessionRequest(
+        @NotBlank String contentType,
+        @Positive long size
+) {}
@@ -0,0 +1,26 @@
+package com.learnstream.video.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+public record CursorPage<T>(
+        List<T> content,
+        int size,
+        String nextCursor,
+        boolean last
+) {
+    public static final int MAX_SIZE = 100;
+
+    // rows holds up to size + 1 entries; the extra one only signals that another page exists
+    public static <E, T> CursorPage<T> from(List<E> rows, int size, Function<E, PageCursor> cursorOf,
+                                            Function<E, T> mapper) {
+        boolean last = rows.size() <= size;
+        List<E> page = last ? rows : rows.subList(0, size);
+        String nextCursor = last ? null : cursorOf.apply(page.getLast()).encode();
+        return new CursorPage<>(page.stream().map(mapper).toList(), size, nextCursor, last);
+    }
+
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+}
@@ -0,0 +1,40 @@
+package com.learnstream.video.dto;
+
+import com.learnstream.video.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+// Position after the last row of a page in (createdAt DESC, id DESC) order; opaque to clients
+public record PageCursor(
+        Instant createdAt,
+        UUID id
+) {
+    // Sorts before every real row, so the first page uses the same keyset query as the rest
+    public static final PageCursor FIRST = new PageCursor(Instant.parse("9999-12-31T00:00:00Z"), new UUID(-1L, -1L));
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('/');
+            if (separator < 0) {
+                throw new InvalidCursorException();
+            }
+            return new PageCursor(Instant.parse(decoded.substring(0, separator)),
+                    UUID.fromString(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "/" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,17 @@
+package com.learnstream.video.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public record PartUploadUrlsResponse(
+        UUID sessionId,
+        Instant expiresAt,
+        List<PartUploadUrl> parts
+) {
+    public record PartUploadUrl(
+            int partNumber,
+            long size,
+            String url
+    ) {}
+}
@@ -1,5 +1,9 @@
 package com.learnstream.video.dto;
 
+import java.time.Instant;
+
+// Call /stream again before expiresAt and swap the token segment of the URL to keep playing
 public record StreamResponse(
-        String hlsUrl
+        String hlsUrl,
+        Instant expiresAt
 ) {}
@@ -0,0 +1,12 @@
+package com.learnstream.video.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record UploadSessionResponse(
+        UUID sessionId,
+        long size,
+        long partSize,
+        int partCount,
+        List<Integer> uploadedParts
+) {}
@@ -0,0 +1,8 @@
+package com.learnstream.video.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException() {
+        super("Invalid page cursor");
+    }
+}
@@ -0,0 +1,10 @@
+package com.learnstream.video.exception;
+
+import java.util.UUID;
+
+public class UploadSessionNotFoundException extends RuntimeException {
+
+    public UploadSessionNotFoundException(UUID sessionId) {
+        super("Upload session not found: " + sessionId);
+    }
+}
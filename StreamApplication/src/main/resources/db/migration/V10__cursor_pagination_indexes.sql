@@ -0,0 +1,13 @@
+-- Composite indexes matching the keyset queries: (created_at DESC, id DESC) per listing.
+-- They also serve the offset listings, which sort by created_at.
+
+-- Public catalog: READY videos only
+CREATE INDEX idx_videos_ready_created ON videos (created_at DESC, id DESC) WHERE status = 'READY';
+
+-- Creator dashboard; supersedes the single-column owner index
+CREATE INDEX idx_videos_owner_created ON videos (owner_id, created_at DESC, id DESC);
+DROP INDEX IF EXISTS idx_videos_owner;
+
+-- Purchase history: completed purchases per buyer
+CREATE INDEX idx_purchases_buyer_completed_created ON purchases (buyer_id, created_at DESC, id DESC)
+    WHERE status = 'COMPLETED';
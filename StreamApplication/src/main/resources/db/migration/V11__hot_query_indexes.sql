@@ -0,0 +1,11 @@
+-- Indexes for the remaining hot repository methods. Already covered elsewhere:
+--   existsByBuyerIdAndVideoIdAndStatus / findByBuyerIdAndVideoId -> UNIQUE (buyer_id, video_id) from V1
+--   findByStatus(READY) and findCompletedByBuyer sorted by created_at -> V10 keyset indexes
+--   countByCreatorId -> idx_videos_owner_created (V10)
+
+-- Creator stats: completed purchases of the creator's videos, summed straight from the index
+CREATE INDEX idx_purchases_video_completed ON purchases (video_id) INCLUDE (amount_cents)
+    WHERE status = 'COMPLETED';
+
+-- Leading column of UNIQUE (buyer_id, video_id), so it only costs writes
+DROP INDEX IF EXISTS idx_purchases_buyer;
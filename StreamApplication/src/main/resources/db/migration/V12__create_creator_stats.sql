@@ -0,0 +1,18 @@
+-- Per-creator dashboard totals, maintained incrementally and reconciled periodically
+CREATE TABLE creator_stats (
+    creator_id           UUID      PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    total_videos         BIGINT    NOT NULL DEFAULT 0,
+    total_purchases      BIGINT    NOT NULL DEFAULT 0,
+    total_earnings_cents BIGINT    NOT NULL DEFAULT 0,
+    updated_at           TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Backfill from existing data
+INSERT INTO creator_stats (creator_id, total_videos, total_purchases, total_earnings_cents)
+SELECT v.owner_id,
+       count(DISTINCT v.id),
+       count(p.id),
+       coalesce(sum(p.amount_cents), 0)
+FROM videos v
+LEFT JOIN purchases p ON p.video_id = v.id AND p.status = 'COMPLETED'
+GROUP BY v.owner_id;
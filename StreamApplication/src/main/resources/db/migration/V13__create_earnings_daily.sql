@@ -0,0 +1,31 @@
+-- Daily sales and earnings buckets (UTC days), written when a purchase completes.
+-- Range queries read at most one row per day, however many purchases a day holds.
+CREATE TABLE video_earnings_daily (
+    video_id       UUID   NOT NULL REFERENCES videos(id) ON DELETE CASCADE,
+    day            DATE   NOT NULL,
+    sales          BIGINT NOT NULL DEFAULT 0,
+    earnings_cents BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (video_id, day)
+);
+
+CREATE TABLE creator_earnings_daily (
+    creator_id     UUID   NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    day            DATE   NOT NULL,
+    sales          BIGINT NOT NULL DEFAULT 0,
+    earnings_cents BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (creator_id, day)
+);
+
+-- Backfill. Purchases have no completion timestamp, so existing sales land on their creation day.
+INSERT INTO video_earnings_daily (video_id, day, sales, earnings_cents)
+SELECT video_id, created_at::date, count(*), sum(amount_cents)
+FROM purchases
+WHERE status = 'COMPLETED'
+GROUP BY video_id, created_at::date;
+
+INSERT INTO creator_earnings_daily (creator_id, day, sales, earnings_cents)
+SELECT v.owner_id, p.created_at::date, count(*), sum(p.amount_cents)
+FROM purchases p
+JOIN videos v ON v.id = p.video_id
+WHERE p.status = 'COMPLETED'
+GROUP BY v.owner_id, p.created_at::date;
@@ -0,0 +1,12 @@
+-- stripe_events becomes an inbox: webhooks only insert, a background processor drains it
+ALTER TABLE stripe_events
+    ADD COLUMN attempts        INT       NOT NULL DEFAULT 0,
+    ADD COLUMN last_error      TEXT,
+    ADD COLUMN next_attempt_at TIMESTAMP NOT NULL DEFAULT now(),
+    ADD COLUMN processed_at    TIMESTAMP;
+
+-- Rows already stored were handled synchronously
+UPDATE stripe_events SET processed_at = created_at WHERE processed;
+
+-- Pending work only; processed rows drop out of the index
+CREATE INDEX idx_stripe_events_pending ON stripe_events (next_attempt_at) WHERE NOT processed;
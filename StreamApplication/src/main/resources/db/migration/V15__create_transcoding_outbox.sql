@@ -0,0 +1,13 @@
+-- Transcoding events written in the same transaction as the job change and relayed to Kafka afterwards.
+-- Rows are deleted once the broker acknowledges them, so the table only holds the backlog.
+CREATE TABLE transcoding_outbox (
+    id          BIGSERIAL   PRIMARY KEY,
+    job_id      UUID        NOT NULL REFERENCES transcoding_jobs(id) ON DELETE CASCADE,
+    video_id    UUID        NOT NULL,
+    stage       VARCHAR(10) NOT NULL,
+    chunk_index INT         NOT NULL DEFAULT 0,
+    message_key VARCHAR(80) NOT NULL,
+    created_at  TIMESTAMP   NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_transcoding_outbox_job ON transcoding_outbox(job_id);
@@ -0,0 +1,24 @@
+-- FULL and MERGE tasks hold a lease on their job and renew it while they run; a job whose lease has
+-- run out is re-queued by the reaper. attempts counts lease acquisitions.
+ALTER TABLE transcoding_jobs
+    ADD COLUMN duration_secs    INT,
+    ADD COLUMN attempts         INT NOT NULL DEFAULT 0,
+    ADD COLUMN lease_stage      VARCHAR(10),
+    ADD COLUMN lease_owner      VARCHAR(100),
+    ADD COLUMN lease_expires_at TIMESTAMP,
+    ADD COLUMN heartbeat_at     TIMESTAMP;
+
+CREATE INDEX idx_transcoding_jobs_lease ON transcoding_jobs(lease_expires_at) WHERE status = 'IN_PROGRESS';
+
+-- Stages a retried job can skip: downloaded, probed, thumbnail, rendition:<label>, uploaded
+CREATE TABLE transcoding_checkpoints (
+    job_id        UUID        NOT NULL REFERENCES transcoding_jobs(id) ON DELETE CASCADE,
+    stage         VARCHAR(40) NOT NULL,
+    completed_at  TIMESTAMP   NOT NULL DEFAULT now(),
+    PRIMARY KEY (job_id, stage)
+);
+
+-- Jobs orphaned before leases existed are handed to the first reaper run
+UPDATE transcoding_jobs
+SET lease_stage = 'FULL', lease_expires_at = now()
+WHERE status = 'IN_PROGRESS' AND chunk_count IS NULL;
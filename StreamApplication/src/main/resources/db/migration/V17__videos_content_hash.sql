@@ -0,0 +1,6 @@
+-- SHA-256 of the raw upload, computed while it streams through the API. A READY video of the same
+-- creator with the same hash is the HLS output index: its renditions are copied instead of re-encoded.
+ALTER TABLE videos ADD COLUMN content_hash VARCHAR(64);
+
+CREATE INDEX idx_videos_content_hash ON videos(owner_id, content_hash)
+    WHERE status = 'READY' AND content_hash IS NOT NULL;
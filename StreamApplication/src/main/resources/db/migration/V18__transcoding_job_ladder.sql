@@ -0,0 +1,5 @@
+-- Encoding ladder picked for the job ("label:WxH:bitrate,..."), null when the configured ladder is used.
+-- complexity_kbps is the bitrate of the low-resolution constant-quality probe it was derived from.
+ALTER TABLE transcoding_jobs
+    ADD COLUMN ladder          TEXT,
+    ADD COLUMN complexity_kbps INT;
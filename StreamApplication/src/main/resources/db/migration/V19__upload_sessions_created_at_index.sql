@@ -0,0 +1,2 @@
+-- UploadSessionReaper looks up the oldest sessions past their TTL
+CREATE INDEX idx_upload_sessions_created ON upload_sessions(created_at);
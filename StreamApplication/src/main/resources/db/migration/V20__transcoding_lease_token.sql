@@ -0,0 +1,2 @@
+-- lease_owner now holds a per-acquisition token: pid@host plus a random UUID
+ALTER TABLE transcoding_jobs ALTER COLUMN lease_owner TYPE VARCHAR(200);
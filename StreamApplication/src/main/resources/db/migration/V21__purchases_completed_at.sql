@@ -0,0 +1,26 @@
+-- Completion time of a purchase, the instant its sale is bucketed by. Like every TIMESTAMP column it
+-- holds local time in the session time zone (the JVM's), so UTC days are derived by converting from
+-- that zone explicitly; a bare ::date would bucket by the server's local day.
+ALTER TABLE purchases ADD COLUMN completed_at TIMESTAMP;
+
+-- Existing sales have no completion time; keep their creation time as V13 did
+UPDATE purchases SET completed_at = created_at WHERE status = 'COMPLETED';
+
+-- Rebuild the V13 backfill, which bucketed by created_at::date
+DELETE FROM video_earnings_daily;
+DELETE FROM creator_earnings_daily;
+
+INSERT INTO video_earnings_daily (video_id, day, sales, earnings_cents)
+SELECT video_id, ((completed_at AT TIME ZONE current_setting('TimeZone')) AT TIME ZONE 'UTC')::date,
+       count(*), sum(amount_cents)
+FROM purchases
+WHERE status = 'COMPLETED'
+GROUP BY 1, 2;
+
+INSERT INTO creator_earnings_daily (creator_id, day, sales, earnings_cents)
+SELECT v.owner_id, ((p.completed_at AT TIME ZONE current_setting('TimeZone')) AT TIME ZONE 'UTC')::date,
+       count(*), sum(p.amount_cents)
+FROM purchases p
+JOIN videos v ON v.id = p.video_id
+WHERE p.status = 'COMPLETED'
+GROUP BY 1, 2;
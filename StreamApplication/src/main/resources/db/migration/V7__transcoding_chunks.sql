@@ -0,0 +1,11 @@
+ALTER TABLE transcoding_jobs
+    ADD COLUMN chunk_count      INT,
+    ADD COLUMN chunk_seconds    INT,
+    ADD COLUMN chunks_completed INT NOT NULL DEFAULT 0;
+
+CREATE TABLE transcoding_chunks (
+    job_id        UUID      NOT NULL REFERENCES transcoding_jobs(id) ON DELETE CASCADE,
+    chunk_index   INT       NOT NULL,
+    completed_at  TIMESTAMP NOT NULL DEFAULT now(),
+    PRIMARY KEY (job_id, chunk_index)
+);
@@ -0,0 +1,14 @@
+CREATE TABLE upload_sessions (
+    id              UUID         PRIMARY KEY DEFAULT gen_random_uuid(),
+    video_id        UUID         NOT NULL REFERENCES videos(id) ON DELETE CASCADE,
+    creator_id      UUID         NOT NULL,
+    storage_key     VARCHAR(500) NOT NULL,
+    s3_upload_id    VARCHAR(1024) NOT NULL,
+    content_type    VARCHAR(100) NOT NULL,
+    total_size      BIGINT       NOT NULL,
+    part_size       BIGINT       NOT NULL,
+    created_at      TIMESTAMP    NOT NULL DEFAULT now(),
+    updated_at      TIMESTAMP    NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_upload_sessions_video ON upload_sessions(video_id);
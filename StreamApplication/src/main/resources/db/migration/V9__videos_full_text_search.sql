@@ -0,0 +1,11 @@
+-- Full-text search over the catalog: title terms rank above description terms.
+-- 'simple' keeps words as typed (no language stemming), which suits mixed-language titles
+-- and lets prefix queries (lect:*) match what the user is typing.
+ALTER TABLE videos ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(description, '')), 'B')
+    ) STORED;
+
+-- Only READY videos are searchable
+CREATE INDEX idx_videos_search_vector ON videos USING GIN (search_vector) WHERE status = 'READY';
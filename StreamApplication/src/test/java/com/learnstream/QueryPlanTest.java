@@ -0,0 +1,211 @@
+package com.learnstream;
+
+import com.learnstream.payment.PurchaseRepository;
+import com.learnstream.payment.PurchaseStatus;
+import com.learnstream.video.VideoRepository;
+import com.learnstream.video.VideoStatus;
+import org.flywaydb.core.Flyway;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Calls the hot repository methods against a migrated, seeded Postgres, captures the SQL Hibernate
+// sends for them and fails if its plan falls back to a sequential scan of videos or purchases.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryPlanTest {
+
+    private static final int USERS = 5_000;
+    private static final int VIDEOS = 200_000;
+    private static final int PURCHASES = 500_000;
+
+    @Container
+    static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+
+    private static final List<String> issued = new CopyOnWriteArrayList<>();
+
+    private static Connection connection;
+    private static UUID creatorId;
+    private static UUID buyerId;
+    private static UUID videoId;
+
+    @Autowired
+    VideoRepository videoRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .load()
+                .migrate();
+        connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TEMP TABLE seed_users AS "
+                    + "SELECT i AS n, gen_random_uuid() AS id FROM generate_series(0, " + (USERS - 1) + ") i");
+            st.execute("INSERT INTO users (id, email, password_hash, role) "
+                    + "SELECT id, 'user' || n || '@example.com', 'x', 'USER' FROM seed_users");
+            st.execute("CREATE TEMP TABLE seed_videos AS "
+                    + "SELECT i AS n, gen_random_uuid() AS id FROM generate_series(0, " + (VIDEOS - 1) + ") i");
+            // 40 videos per creator, 90% READY, one per minute going back in time
+            st.execute("INSERT INTO videos (id, owner_id, title, description, price_cents, status, created_at, updated_at) "
+                    + "SELECT v.id, u.id, 'Video ' || v.n, 'Lecture number ' || v.n, 499, "
+                    + "CASE WHEN v.n % 10 = 0 THEN 'DRAFT' ELSE 'READY' END, "
+                    + "now() - v.n * interval '1 minute', now() "
+                    + "FROM seed_videos v JOIN seed_users u ON u.n = v.n % " + USERS);
+            // Distinct (buyer, video) pairs, 95% COMPLETED
+            st.execute("INSERT INTO purchases (buyer_id, video_id, amount_cents, stripe_payment_id, status, created_at) "
+                    + "SELECT u.id, v.id, 499, 'pi_' || i, "
+                    + "CASE WHEN i % 20 = 0 THEN 'PENDING' ELSE 'COMPLETED' END, "
+                    + "now() - i * interval '1 second' "
+                    + "FROM generate_series(0, " + (PURCHASES - 1) + ") i "
+                    + "JOIN seed_videos v ON v.n = i % " + VIDEOS + " "
+                    + "JOIN seed_users u ON u.n = (i + i / " + VIDEOS + ") % " + USERS);
+            st.execute("VACUUM ANALYZE");
+
+            try (var rs = st.executeQuery("SELECT buyer_id, video_id, v.owner_id FROM purchases p "
+                    + "JOIN videos v ON v.id = p.video_id WHERE p.status = 'COMPLETED' LIMIT 1")) {
+                rs.next();
+                buyerId = rs.getObject(1, UUID.class);
+                videoId = rs.getObject(2, UUID.class);
+                creatorId = rs.getObject(3, UUID.class);
+            }
+        }
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    // Invoked after @BeforeAll, so the seeded ids are available
+    static Stream<HotQuery> hotQueries() {
+        var newestFirst = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+        return Stream.of(
+                new HotQuery("VideoRepository.findByStatus(READY) by createdAt",
+                        (videos, purchases) -> videos.findByStatus(VideoStatus.READY, newestFirst)),
+                new HotQuery("VideoRepository.findReadyBefore",
+                        (videos, purchases) -> videos.findReadyBefore(
+                                Instant.now().minus(Duration.ofDays(30)), new UUID(-1L, -1L), 21)),
+                new HotQuery("VideoRepository.searchReadyVideos",
+                        (videos, purchases) -> videos.searchReadyVideos("12345:*", PageRequest.of(0, 20))),
+                new HotQuery("VideoRepository.findByCreatorId by createdAt",
+                        (videos, purchases) -> videos.findByCreatorId(creatorId, newestFirst)),
+                new HotQuery("VideoRepository.countByCreatorId",
+                        (videos, purchases) -> videos.countByCreatorId(creatorId)),
+                new HotQuery("PurchaseRepository.existsByBuyerIdAndVideoIdAndStatus",
+                        (videos, purchases) -> purchases.existsByBuyerIdAndVideoIdAndStatus(
+                                buyerId, videoId, PurchaseStatus.COMPLETED)),
+                new HotQuery("PurchaseRepository.findCompletedByBuyer",
+                        (videos, purchases) -> purchases.findCompletedByBuyer(buyerId, PageRequest.of(0, 20))),
+                new HotQuery("PurchaseRepository.countCompletedByCreator",
+                        (videos, purchases) -> purchases.countCompletedByCreator(creatorId)),
+                new HotQuery("PurchaseRepository.sumEarningsByCreator",
+                        (videos, purchases) -> purchases.sumEarningsByCreator(creatorId)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQueryUsesAnIndex(HotQuery query) throws SQLException {
+        issued.clear();
+        query.call().accept(videoRepository, purchaseRepository);
+        assertThat(issued).as("SQL issued by %s", query.name()).isNotEmpty();
+
+        // Only the row query: a Page's follow-up count is not on the hot path being guarded.
+        // GENERIC_PLAN plans the statement as Hibernate prepared it, placeholders and all.
+        var plan = new ArrayList<String>();
+        try (Statement st = connection.createStatement();
+             var rs = st.executeQuery("EXPLAIN (GENERIC_PLAN) " + numberPlaceholders(issued.getFirst()))) {
+            while (rs.next()) {
+                plan.add(rs.getString(1));
+            }
+        }
+
+        assertThat(plan)
+                .as("plan for %s:%n%s%n%s", query.name(), issued.getFirst(), String.join("\n", plan))
+                .noneMatch(line -> line.contains("Seq Scan on videos") || line.contains("Seq Scan on purchases"));
+    }
+
+    // JDBC's ? placeholders as the $n Postgres parses, skipping any ? inside a string literal
+    private static String numberPlaceholders(String sql) {
+        var out = new StringBuilder();
+        boolean quoted = false;
+        int n = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            if (c == '?' && !quoted) {
+                out.append('$').append(++n);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    record HotQuery(String name, BiConsumer<VideoRepository, PurchaseRepository> call) {
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @TestConfiguration
+    static class RecordSql {
+
+        @Bean
+        HibernatePropertiesCustomizer statementRecorder() {
+            StatementInspector recorder = sql -> {
+                issued.add(sql);
+                return sql;
+            };
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, recorder);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.learnstream.auth;
+
+import com.learnstream.payment.AccessCache;
+import com.learnstream.user.Role;
+import com.learnstream.user.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+
+// Per-segment authorization cost: the JWT filter plus a cached access decision, as /hls requests pay,
+// against verifying a playback token. The JWT path's per-segment HLS key lookup in the database is not
+// included, so the real gap is larger than shown.
+// Run with: gradle benchmark --tests '*PlaybackAuthBenchmark'
+@Tag("benchmark")
+class PlaybackAuthBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final int WARMUP = 50_000;
+    private static final int MEASURED = 200_000;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID videoId = UUID.randomUUID();
+    private final JwtService jwtService = new JwtService(SECRET, 900_000, 604_800_000);
+    private final JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService);
+    private final AccessCache accessCache = new AccessCache(Duration.ofMinutes(5), 1_000, new SimpleMeterRegistry());
+    private final PlaybackTokenService playbackTokenService = new PlaybackTokenService(SECRET, Duration.ofMinutes(10));
+    private final FilterChain chain = (request, response) -> { };
+
+    @Test
+    void compareSegmentAuthorization() throws Exception {
+        var user = new User();
+        user.setId(userId);
+        user.setEmail("viewer@example.com");
+        user.setRole(Role.USER);
+        var request = new MockHttpServletRequest("GET", "/api/videos/" + videoId + "/hls/stream_720p_001.ts");
+        request.addHeader("Authorization", "Bearer " + jwtService.generateAccessToken(user));
+        var response = new MockHttpServletResponse();
+        String token = playbackTokenService.issue(userId, videoId, UUID.randomUUID());
+
+        System.out.printf("%-28s %10s %12s%n", "path", "ns/req", "alloc B/req");
+        report("JWT filter + access cache", () -> {
+            filter.doFilterInternal(request, response, chain);
+            var principal = (UUID) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+            accessCache.get(principal, videoId, () -> true);
+            SecurityContextHolder.clearContext();
+        });
+        report("playback token", () -> playbackTokenService.verify(token, videoId));
+    }
+
+    private static void report(String name, Request request) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            request.run();
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long started = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) {
+            request.run();
+        }
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%-28s %10d %12d%n", name, elapsed / MEASURED, allocated / MEASURED);
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,88 @@
+package com.learnstream.auth;
+
+import com.learnstream.auth.exception.InvalidTokenException;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PlaybackTokenServiceTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID videoId = UUID.randomUUID();
+    private final UUID creatorId = UUID.randomUUID();
+
+    private final PlaybackTokenService service = serviceAt(NOW);
+
+    @Test
+    void roundTripsClaims() {
+        String token = service.issue(userId, videoId, creatorId);
+
+        var playback = service.verify(token, videoId);
+
+        assertThat(playback.userId()).isEqualTo(userId);
+        assertThat(playback.videoId()).isEqualTo(videoId);
+        assertThat(playback.creatorId()).isEqualTo(creatorId);
+        assertThat(playback.expiresAt()).isEqualTo(NOW.plus(Duration.ofHours(1)).getEpochSecond());
+    }
+
+    @Test
+    void rejectsTokenForAnotherVideo() {
+        String token = service.issue(userId, videoId, creatorId);
+
+        assertThatThrownBy(() -> service.verify(token, UUID.randomUUID()))
+                .isInstanceOf(InvalidTokenException.class);
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        char[] token = service.issue(userId, videoId, creatorId).toCharArray();
+        token[10] = token[10] == 'A' ? 'B' : 'A';
+
+        assertThatThrownBy(() -> service.verify(new String(token), videoId))
+                .isInstanceOf(InvalidTokenException.class);
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        String token = service.issue(userId, videoId, creatorId);
+
+        assertThatThrownBy(() -> serviceAt(NOW.plus(Duration.ofHours(2))).verify(token, videoId))
+                .isInstanceOf(InvalidTokenException.class);
+    }
+
+    @Test
+    void rejectsMalformedToken() {
+        assertThatThrownBy(() -> service.verify("not-a-token", videoId))
+                .isInstanceOf(InvalidTokenException.class);
+    }
+
+    @Test
+    void rejectsTokenSignedWithTheConfiguredSecretItself() throws Exception {
+        // The secret may be shared with the JWTs, so a MAC keyed by it directly must not verify
+        byte[] token = Base64.getUrlDecoder().decode(service.issue(userId, videoId, creatorId));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(Base64.getDecoder().decode(SECRET), "HmacSHA256"));
+        mac.update(token, 0, token.length - 16);
+        System.arraycopy(mac.doFinal(), 0, token, token.length - 16, 16);
+
+        assertThatThrownBy(() -> service.verify(Base64.getUrlEncoder().withoutPadding().encodeToString(token), videoId))
+                .isInstanceOf(InvalidTokenException.class);
+    }
+
+    private static PlaybackTokenService serviceAt(Instant now) {
+        return new PlaybackTokenService(SECRET, Duration.ofHours(1), Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,53 @@
+package com.learnstream.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLoggingFilterTest {
+
+    private static final String TOKEN = "eyJ2IjoiMSJ9.c2lnbmF0dXJl";
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(RequestLoggingFilter.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private Level previousLevel;
+
+    @BeforeEach
+    void captureLog() {
+        previousLevel = logger.getLevel();
+        logger.setLevel(Level.DEBUG);
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void restoreLog() {
+        logger.detachAppender(appender);
+        logger.setLevel(previousLevel);
+    }
+
+    @Test
+    void playbackRequestsAreNotLoggedWithTheirToken() throws Exception {
+        var filter = new RequestLoggingConfig().requestLoggingFilter();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/videos/42/play/" + TOKEN + "/360p/segment_001.ts"),
+                new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(appender.list).isEmpty();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/videos/42"),
+                new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage)
+                .anySatisfy(message -> assertThat(message).contains("/api/videos/42"))
+                .noneSatisfy(message -> assertThat(message).contains(TOKEN));
+    }
+}
@@ -0,0 +1,84 @@
+package com.learnstream.payment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccessCacheTest {
+
+    private final AccessCache cache = new AccessCache(Duration.ofMinutes(5), 1_000, new SimpleMeterRegistry());
+    private final UUID buyerId = UUID.randomUUID();
+    private final UUID videoId = UUID.randomUUID();
+
+    @Test
+    void grantsAfterADenyWithoutAnEviction() {
+        assertThat(cache.get(buyerId, videoId, () -> false)).isFalse();
+
+        // The purchase completed on another node, so nothing evicted the entry here
+        assertThat(cache.get(buyerId, videoId, () -> true)).isTrue();
+    }
+
+    @Test
+    void cachesGrantsUntilInvalidated() {
+        var loads = new AtomicInteger();
+
+        cache.get(buyerId, videoId, () -> loads.incrementAndGet() > 0);
+        assertThat(cache.get(buyerId, videoId, () -> loads.incrementAndGet() > 0)).isTrue();
+        assertThat(loads).hasValue(1);
+
+        cache.invalidateVideo(videoId);
+        assertThat(cache.get(buyerId, videoId, () -> false)).isFalse();
+    }
+
+    @Test
+    void invalidatingAVideoKeepsTheGrantsOfOtherVideos() {
+        var otherVideo = UUID.randomUUID();
+        var loads = new AtomicInteger();
+        cache.get(buyerId, videoId, () -> true);
+        cache.get(buyerId, otherVideo, () -> loads.incrementAndGet() > 0);
+
+        cache.invalidateVideo(videoId);
+
+        assertThat(cache.get(buyerId, otherVideo, () -> loads.incrementAndGet() > 0)).isTrue();
+        assertThat(loads).hasValue(1);
+        assertThat(cache.get(UUID.randomUUID(), videoId, () -> false)).isFalse();
+    }
+
+    @Test
+    void cachesTheHlsBaseOfAPlayableVideoUntilTheVideoChanges() {
+        var loads = new AtomicInteger();
+        Function<UUID, String> loader = id -> {
+            loads.incrementAndGet();
+            return "c/" + id + "/hls/";
+        };
+
+        assertThat(cache.hlsBase(videoId, loader)).isEqualTo("c/" + videoId + "/hls/");
+        cache.hlsBase(videoId, loader);
+        assertThat(loads).hasValue(1);
+
+        cache.invalidateVideo(videoId);
+        assertThatThrownBy(() -> cache.hlsBase(videoId, id -> {
+            throw new IllegalStateException("not ready");
+        })).hasMessage("not ready");
+        assertThat(cache.hlsBase(videoId, loader)).isEqualTo("c/" + videoId + "/hls/");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void aGrantLookedUpBeforeAnInvalidationIsNotTrusted() {
+        // The video is deleted while the grant is being resolved from the pre-delete state
+        assertThat(cache.get(buyerId, videoId, () -> {
+            cache.invalidateVideo(videoId);
+            return true;
+        })).isTrue();
+
+        assertThat(cache.get(buyerId, videoId, () -> false)).isFalse();
+    }
+}
@@ -0,0 +1,55 @@
+package com.learnstream.payment;
+
+import com.learnstream.video.VideoRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CreatorStatsServiceTest {
+
+    private static final UUID CREATOR_ID = UUID.randomUUID();
+
+    private final CreatorStatsRepository statsRepository = mock(CreatorStatsRepository.class);
+    private final VideoRepository videoRepository = mock(VideoRepository.class);
+    private final PurchaseRepository purchaseRepository = mock(PurchaseRepository.class);
+    private final CreatorStatsService service =
+            new CreatorStatsService(statsRepository, videoRepository, purchaseRepository);
+
+    @Test
+    void reconcileCorrectsDriftUnderTheRowLock() {
+        var stats = stats(3, 10, 4_990);
+        when(statsRepository.findForUpdate(CREATOR_ID)).thenReturn(Optional.of(stats));
+        when(videoRepository.countByCreatorId(CREATOR_ID)).thenReturn(3L);
+        when(purchaseRepository.countCompletedByCreator(CREATOR_ID)).thenReturn(11L);
+        when(purchaseRepository.sumEarningsByCreator(CREATOR_ID)).thenReturn(5_489L);
+
+        assertThat(service.reconcile(CREATOR_ID)).isTrue();
+
+        verify(statsRepository).addVideos(CREATOR_ID, 0);
+        assertThat(stats.getTotalPurchases()).isEqualTo(11);
+        assertThat(stats.getTotalEarningsCents()).isEqualTo(5_489);
+    }
+
+    @Test
+    void reconcileLeavesMatchingTotalsAlone() {
+        when(statsRepository.findForUpdate(CREATOR_ID)).thenReturn(Optional.of(stats(2, 0, 0)));
+        when(videoRepository.countByCreatorId(CREATOR_ID)).thenReturn(2L);
+
+        assertThat(service.reconcile(CREATOR_ID)).isFalse();
+    }
+
+    private static CreatorStats stats(long videos, long purchases, long earnings) {
+        var stats = new CreatorStats();
+        stats.setCreatorId(CREATOR_ID);
+        stats.setTotalVideos(videos);
+        stats.setTotalPurchases(purchases);
+        stats.setTotalEarningsCents(earnings);
+        return stats;
+    }
+}
@@ -0,0 +1,82 @@
+package com.learnstream.payment;
+
+import com.learnstream.payment.dto.EarningsBucket;
+import com.learnstream.payment.exception.InvalidStatsQueryException;
+import com.learnstream.video.VideoRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EarningsServiceTest {
+
+    private static final UUID CREATOR_ID = UUID.randomUUID();
+
+    private final VideoEarningsDayRepository videoDays = mock(VideoEarningsDayRepository.class);
+    private final CreatorEarningsDayRepository creatorDays = mock(CreatorEarningsDayRepository.class);
+    private final EarningsService service = new EarningsService(videoDays, creatorDays, mock(VideoRepository.class));
+
+    @Test
+    void fillsQuietDaysAndRollsUpWeeksFromMonday() {
+        // 2026-03-04 is a Wednesday
+        var from = LocalDate.of(2026, 3, 4);
+        var to = LocalDate.of(2026, 3, 10);
+        when(creatorDays.findRange(CREATOR_ID, from, to)).thenReturn(List.of(
+                new EarningsBucket(LocalDate.of(2026, 3, 5), 2, 998),
+                new EarningsBucket(LocalDate.of(2026, 3, 9), 1, 499)));
+
+        var daily = service.timeseries(CREATOR_ID, null, from, to, "day");
+        assertThat(daily.buckets()).hasSize(7);
+        assertThat(daily.buckets().get(1)).isEqualTo(new EarningsBucket(LocalDate.of(2026, 3, 5), 2, 998));
+        assertThat(daily.buckets().get(2)).isEqualTo(new EarningsBucket(LocalDate.of(2026, 3, 6), 0, 0));
+
+        var weekly = service.timeseries(CREATOR_ID, null, from, to, "WEEK");
+        assertThat(weekly.granularity()).isEqualTo("week");
+        assertThat(weekly.buckets()).containsExactly(
+                new EarningsBucket(LocalDate.of(2026, 3, 2), 2, 998),
+                new EarningsBucket(LocalDate.of(2026, 3, 9), 1, 499));
+    }
+
+    @Test
+    void bucketsASaleByItsUtcCompletionDay() {
+        var videoId = UUID.randomUUID();
+        // 23:30 in New York on the 4th is already the 5th in UTC
+        var completedAt = ZonedDateTime.of(2026, 3, 4, 23, 30, 0, 0, ZoneId.of("America/New_York")).toInstant();
+
+        service.onPurchaseCompleted(new PurchaseCompletedEvent(UUID.randomUUID(), videoId, 499, completedAt));
+
+        verify(videoDays).addSale(videoId, LocalDate.of(2026, 3, 5), 499);
+        verify(creatorDays).addSale(videoId, LocalDate.of(2026, 3, 5), 499);
+    }
+
+    @Test
+    void reportsDriftOnlyWhenABucketWasCorrected() {
+        when(videoDays.reconcileCreator(CREATOR_ID)).thenReturn(0);
+        when(creatorDays.reconcile(CREATOR_ID)).thenReturn(0);
+        assertThat(service.reconcile(CREATOR_ID)).isFalse();
+
+        when(creatorDays.reconcile(CREATOR_ID)).thenReturn(2);
+        assertThat(service.reconcile(CREATOR_ID)).isTrue();
+    }
+
+    @Test
+    void rejectsInvertedOrOversizedRanges() {
+        var day = LocalDate.of(2026, 3, 4);
+
+        assertThatThrownBy(() -> service.timeseries(CREATOR_ID, null, day, day.minusDays(1), "day"))
+                .isInstanceOf(InvalidStatsQueryException.class);
+        assertThatThrownBy(() -> service.timeseries(CREATOR_ID, null, day, day.plusYears(3), "day"))
+                .isInstanceOf(InvalidStatsQueryException.class);
+        assertThatThrownBy(() -> service.timeseries(CREATOR_ID, null, day, day, "month"))
+                .isInstanceOf(InvalidStatsQueryException.class);
+    }
+}
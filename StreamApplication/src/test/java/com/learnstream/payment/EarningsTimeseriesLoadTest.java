@@ -0,0 +1,145 @@
+package com.learnstream.payment;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compares a 90-day creator timeseries read from creator_earnings_daily with the same series
+// aggregated straight from purchases, as the creator's purchase history grows. The bucket
+// query should stay flat while the aggregate grows with volume. Run with: gradle benchmark
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class EarningsTimeseriesLoadTest {
+
+    private static final int[] PURCHASE_VOLUMES = {10_000, 100_000, 1_000_000};
+    private static final int VIDEOS = 200;
+    private static final int HISTORY_DAYS = 730;
+    private static final int ITERATIONS = 50;
+
+    private static final String BUCKET_QUERY = "SELECT day, sales, earnings_cents FROM creator_earnings_daily "
+            + "WHERE creator_id = ? AND day BETWEEN ? AND ? ORDER BY day";
+    private static final String PURCHASE_QUERY = "SELECT p.created_at::date, count(*), sum(p.amount_cents) "
+            + "FROM purchases p JOIN videos v ON v.id = p.video_id "
+            + "WHERE v.owner_id = ? AND p.status = 'COMPLETED' "
+            + "AND p.created_at >= ? AND p.created_at < ? GROUP BY 1 ORDER BY 1";
+
+    @Container
+    static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+
+    private static Connection connection;
+    private static UUID creatorId;
+
+    @BeforeAll
+    static void migrate() throws SQLException {
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .load()
+                .migrate();
+        connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        creatorId = UUID.randomUUID();
+
+        try (Statement st = connection.createStatement()) {
+            st.execute("INSERT INTO users (id, email, password_hash, role) "
+                    + "VALUES ('" + creatorId + "', 'creator@example.com', 'x', 'CREATOR')");
+            st.execute("CREATE TEMP TABLE seed_videos AS "
+                    + "SELECT i AS n, gen_random_uuid() AS id FROM generate_series(0, " + (VIDEOS - 1) + ") i");
+            st.execute("INSERT INTO videos (id, owner_id, title, price_cents, status, created_at, updated_at) "
+                    + "SELECT id, '" + creatorId + "', 'Video ' || n, 499, 'READY', now(), now() FROM seed_videos");
+        }
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Test
+    void bucketQueryStaysFlatAsPurchasesGrow() throws SQLException {
+        var to = LocalDate.now();
+        var from = to.minusDays(89);
+        var bucketMicros = new ArrayList<Double>();
+        int seeded = 0;
+
+        for (int volume : PURCHASE_VOLUMES) {
+            seed(seeded, volume);
+            seeded = volume;
+
+            double buckets = time(BUCKET_QUERY, from, to);
+            double aggregate = time(PURCHASE_QUERY, from, to.plusDays(1));
+            bucketMicros.add(buckets);
+            System.out.printf("%,10d purchases: buckets %8.1f us/query, purchase aggregate %10.1f us/query%n",
+                    volume, buckets, aggregate);
+        }
+
+        // Same number of bucket rows at every volume, so allow only noise between runs
+        assertThat(bucketMicros.getLast()).isLessThan(bucketMicros.getFirst() * 3 + 500);
+    }
+
+    // Each new purchase is a distinct buyer so the (buyer, video) uniqueness holds; the daily
+    // buckets are filled the way the application does, one upsert per completed sale
+    private static void seed(int fromIndex, int toIndex) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TEMP TABLE batch AS SELECT i, gen_random_uuid() AS buyer_id, v.id AS video_id, "
+                    + "now() - (i % " + HISTORY_DAYS + ") * interval '1 day' AS created_at "
+                    + "FROM generate_series(" + fromIndex + ", " + (toIndex - 1) + ") i "
+                    + "JOIN seed_videos v ON v.n = i % " + VIDEOS);
+            st.execute("INSERT INTO users (id, email, password_hash, role) "
+                    + "SELECT buyer_id, 'buyer' || i || '@example.com', 'x', 'USER' FROM batch");
+            st.execute("INSERT INTO purchases (buyer_id, video_id, amount_cents, stripe_payment_id, status, created_at) "
+                    + "SELECT buyer_id, video_id, 499, 'pi_' || i, 'COMPLETED', created_at FROM batch");
+            st.execute("INSERT INTO video_earnings_daily (video_id, day, sales, earnings_cents) "
+                    + "SELECT video_id, created_at::date, count(*), sum(499) FROM batch GROUP BY 1, 2 "
+                    + "ON CONFLICT (video_id, day) DO UPDATE SET sales = video_earnings_daily.sales + EXCLUDED.sales, "
+                    + "earnings_cents = video_earnings_daily.earnings_cents + EXCLUDED.earnings_cents");
+            st.execute("INSERT INTO creator_earnings_daily (creator_id, day, sales, earnings_cents) "
+                    + "SELECT '" + creatorId + "', created_at::date, count(*), sum(499) FROM batch GROUP BY 2 "
+                    + "ON CONFLICT (creator_id, day) DO UPDATE SET sales = creator_earnings_daily.sales + EXCLUDED.sales, "
+                    + "earnings_cents = creator_earnings_daily.earnings_cents + EXCLUDED.earnings_cents");
+            st.execute("DROP TABLE batch");
+            st.execute("VACUUM ANALYZE");
+        }
+    }
+
+    private static double time(String sql, LocalDate from, LocalDate to) throws SQLException {
+        try (var ps = connection.prepareStatement(sql)) {
+            ps.setObject(1, creatorId);
+            ps.setDate(2, Date.valueOf(from));
+            ps.setDate(3, Date.valueOf(to));
+            for (int i = 0; i < 5; i++) {
+                drain(ps);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                drain(ps);
+            }
+            return (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+        }
+    }
+
+    private static void drain(PreparedStatement ps) throws SQLException {
+        try (var rs = ps.executeQuery()) {
+            while (rs.next()) {
+                rs.getLong(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.learnstream.payment;
+
+import com.learnstream.payment.exception.PaymentProcessingException;
+import com.learnstream.video.VideoRepository;
+import com.stripe.Stripe;
+import com.stripe.net.Webhook;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Signed sample payloads through the inbox: the webhook only stores, the processor applies
+class StripeWebhookTest {
+
+    private static final String SECRET = "whsec_test";
+    private static final UUID BUYER_ID = UUID.randomUUID();
+    private static final UUID VIDEO_ID = UUID.randomUUID();
+
+    private final StripeEventRepository stripeEventRepository = mock(StripeEventRepository.class);
+    private final PurchaseRepository purchaseRepository = mock(PurchaseRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final PaymentService paymentService = new PaymentService(purchaseRepository, stripeEventRepository,
+            mock(VideoRepository.class), mock(AccessCache.class), mock(CreatorStatsService.class),
+            mock(EarningsService.class), eventPublisher);
+    private final StripeEventProcessor processor = new StripeEventProcessor(stripeEventRepository, purchaseRepository,
+            mock(AccessCache.class), eventPublisher, 100, Duration.ofSeconds(10), Duration.ofHours(1));
+
+    StripeWebhookTest() {
+        ReflectionTestUtils.setField(paymentService, "webhookSecret", SECRET);
+    }
+
+    @Test
+    void webhookStoresTheVerifiedEventWithoutApplyingIt() throws Exception {
+        String payload = checkoutCompleted("evt_1");
+        when(stripeEventRepository.insertIfAbsent("evt_1", "checkout.session.completed", payload)).thenReturn(1);
+
+        paymentService.handleWebhook(payload, sign(payload));
+
+        verify(stripeEventRepository).insertIfAbsent("evt_1", "checkout.session.completed", payload);
+        verify(purchaseRepository, never()).markCompleted(any(), any(), any());
+    }
+
+    @Test
+    void webhookRejectsTamperedPayloads() throws Exception {
+        String payload = checkoutCompleted("evt_2");
+        String signature = sign(payload);
+
+        assertThatThrownBy(() -> paymentService.handleWebhook(payload.replace("pi_test", "pi_fake"), signature))
+                .isInstanceOf(PaymentProcessingException.class);
+        verify(stripeEventRepository, never()).insertIfAbsent(any(), any(), any());
+    }
+
+    @Test
+    void processorCompletesThePurchaseAndMarksTheEventProcessed() {
+        var purchase = new Purchase();
+        purchase.setId(UUID.randomUUID());
+        purchase.setAmountCents(499);
+        var stored = stored(checkoutCompleted("evt_3"));
+        when(stripeEventRepository.claimPending(any(), anyInt())).thenReturn(List.of(stored));
+        when(purchaseRepository.findByBuyerIdAndVideoId(BUYER_ID, VIDEO_ID)).thenReturn(Optional.of(purchase));
+        var completedAt = ArgumentCaptor.forClass(Instant.class);
+        when(purchaseRepository.markCompleted(eq(purchase.getId()), eq("pi_test"), completedAt.capture()))
+                .thenReturn(1);
+
+        assertThat(processor.processBatch()).isEqualTo(1);
+
+        // The sale is bucketed by the completion time stored on the purchase
+        verify(eventPublisher).publishEvent(
+                new PurchaseCompletedEvent(purchase.getId(), VIDEO_ID, 499, completedAt.getValue()));
+        assertThat(stored.isProcessed()).isTrue();
+        assertThat(stored.getProcessedAt()).isNotNull();
+    }
+
+    @Test
+    void failuresBackOffExponentially() {
+        var stored = stored(checkoutCompleted("evt_4"));
+        stored.setAttempts(2);
+        when(stripeEventRepository.findById(stored.getId())).thenReturn(Optional.of(stored));
+
+        processor.recordFailure(stored.getId(), new IllegalStateException("db down"));
+
+        assertThat(stored.getAttempts()).isEqualTo(3);
+        assertThat(stored.getLastError()).isEqualTo("db down");
+        assertThat(stored.getNextAttemptAt()).isBetween(Instant.now().plusSeconds(35), Instant.now().plusSeconds(40));
+        assertThat(stored.isProcessed()).isFalse();
+    }
+
+    private static StripeEvent stored(String payload) {
+        var event = new StripeEvent();
+        event.setId(UUID.randomUUID());
+        event.setStripeEventId("evt");
+        event.setEventType("checkout.session.completed");
+        event.setPayload(payload);
+        return event;
+    }
+
+    private static String sign(String payload) throws Exception {
+        long timestamp = Webhook.Util.getTimeNow();
+        String signature = Webhook.Util.computeHmacSha256(SECRET, timestamp + "." + payload);
+        return "t=" + timestamp + ",v1=" + signature;
+    }
+
+    private static String checkoutCompleted(String eventId) {
+        return """
+                {
+                  "id": "%s",
+                  "object": "event",
+                  "api_version": "%s",
+                  "type": "checkout.session.completed",
+                  "data": {
+                    "object": {
+                      "id": "cs_test",
+                      "object": "checkout.session",
+                      "payment_intent": "pi_test",
+                      "metadata": {"buyer_id": "%s", "video_id": "%s"}
+                    }
+                  }
+                }
+                """.formatted(eventId, Stripe.API_VERSION, BUYER_ID, VIDEO_ID);
+    }
+}
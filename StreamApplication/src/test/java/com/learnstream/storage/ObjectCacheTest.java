@@ -0,0 +1,144 @@
+package com.learnstream.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ObjectCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private ObjectCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        var config = new StorageCacheConfig(true, DataSize.ofMegabytes(1), DataSize.ofMegabytes(8),
+                cacheDir.toString(), DataSize.ofKilobytes(64), Duration.ofMinutes(5));
+        cache = new ObjectCache(config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void collapsesConcurrentMissesIntoOneLoad() throws Exception {
+        var loads = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var callers = new CopyOnWriteArrayList<Thread>();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var results = new ArrayList<Future<CachedObject>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    callers.add(Thread.currentThread());
+                    return cache.get("processed-videos", "a.ts", () -> {
+                        loads.incrementAndGet();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return object("segment");
+                    });
+                }));
+            }
+            // One caller parked in the loader, the other seven parked on its result
+            await().atMost(Duration.ofSeconds(10)).until(() -> callers.size() == 8
+                    && callers.stream().allMatch(t -> t.getState() == Thread.State.WAITING));
+            release.countDown();
+            for (var result : results) {
+                assertThat(read(result.get())).isEqualTo("segment");
+            }
+        }
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void servesRangesAndInvalidates() throws Exception {
+        cache.get("processed-videos", "a.ts", () -> object("0123456789"));
+
+        assertThat(cache.peek("processed-videos", "a.ts").contentLength()).isEqualTo(10);
+        var cached = cache.get("processed-videos", "a.ts", () -> {
+            throw new AssertionError("should be cached");
+        });
+        assertThat(new String(cached.openStream(2, 4).readAllBytes(), StandardCharsets.US_ASCII))
+                .isEqualTo("234");
+
+        cache.invalidate("processed-videos", "a.ts");
+        assertThat(cache.peek("processed-videos", "a.ts")).isNull();
+    }
+
+    @Test
+    void doesNotCacheDeclinedObjects() {
+        assertThat(cache.get("processed-videos", "big.ts", () -> null)).isNull();
+        assertThat(cache.peek("processed-videos", "big.ts")).isNull();
+    }
+
+    @Test
+    void remembersObjectsTooLargeToCache() {
+        var loads = new AtomicInteger();
+
+        cache.get("processed-videos", "big.ts", () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        cache.get("processed-videos", "big.ts", () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        assertThat(loads).hasValue(1);
+        cache.invalidate("processed-videos", "big.ts");
+        assertThat(cache.get("processed-videos", "big.ts", () -> object("smaller now"))).isNotNull();
+    }
+
+    @Test
+    void invalidateDuringALoadKeepsTheLoadedCopyOut() throws Exception {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var stale = executor.submit(() -> cache.get("processed-videos", "a.ts", () -> {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return object("old");
+            }));
+            loading.await();
+            cache.invalidate("processed-videos", "a.ts");
+            release.countDown();
+            assertThat(read(stale.get())).isEqualTo("old");
+        }
+
+        assertThat(cache.peek("processed-videos", "a.ts")).isNull();
+        assertThat(read(cache.get("processed-videos", "a.ts", () -> object("new")))).isEqualTo("new");
+    }
+
+    private static CachedObject object(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+        return new CachedObject(new ObjectInfo(bytes.length, "\"etag\"", Instant.now()), ByteBuffer.wrap(bytes));
+    }
+
+    private static String read(CachedObject object) throws Exception {
+        return new String(object.openStream().readAllBytes(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,53 @@
+package com.learnstream.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PresignedUrlCacheTest {
+
+    private final PresignedUrlCache cache = new PresignedUrlCache(100, new SimpleMeterRegistry());
+    private final AtomicInteger signed = new AtomicInteger();
+
+    @Test
+    void invalidateDropsEveryExpiryOfThatObjectOnly() {
+        sign("a.m3u8", Duration.ofMinutes(60));
+        sign("a.m3u8", Duration.ofMinutes(5));
+        sign("b.m3u8", Duration.ofMinutes(60));
+        assertThat(signed).hasValue(3);
+
+        cache.invalidate("processed-videos", "a.m3u8");
+
+        sign("a.m3u8", Duration.ofMinutes(60));
+        sign("a.m3u8", Duration.ofMinutes(5));
+        sign("b.m3u8", Duration.ofMinutes(60));
+        assertThat(signed).hasValue(5);
+    }
+
+    @Test
+    void invalidatingAnObjectNeverSignedIsANoOp() {
+        sign("a.m3u8", Duration.ofMinutes(60));
+
+        cache.invalidate("raw-videos", "a.m3u8");
+        cache.invalidate("processed-videos", "missing.m3u8");
+
+        sign("a.m3u8", Duration.ofMinutes(60));
+        assertThat(signed).hasValue(1);
+    }
+
+    private URL sign(String key, Duration expiry) {
+        return cache.get("processed-videos", key, expiry, () -> {
+            try {
+                return URI.create("http://minio/" + key + "?sig=" + signed.incrementAndGet()).toURL();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
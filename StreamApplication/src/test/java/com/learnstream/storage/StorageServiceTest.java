@@ -0,0 +1,192 @@
+package com.learnstream.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpRange;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private S3Client s3Client;
+    private S3Presigner s3Presigner;
+    private StorageService storageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        s3Client = mock(S3Client.class);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("\"etag\"").build());
+        var cacheConfig = new StorageCacheConfig(false, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1),
+                "/tmp", DataSize.ofKilobytes(64), Duration.ofMinutes(1));
+        s3Presigner = mock(S3Presigner.class);
+        storageService = new StorageService(s3Client, s3Presigner, mock(S3Presigner.class),
+                new ObjectCache(cacheConfig, new SimpleMeterRegistry()),
+                new PresignedUrlCache(100, new SimpleMeterRegistry()), DataSize.ofBytes(10), DataSize.ofBytes(4));
+    }
+
+    @Test
+    void streamsLargeBodyAsPartSizedParts() throws Exception {
+        long size = storageService.uploadStream("raw-videos", "k", new ByteArrayInputStream(new byte[10]), "video/mp4");
+
+        assertThat(size).isEqualTo(10);
+        var parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(3)).uploadPart(parts.capture(), any(RequestBody.class));
+        assertThat(parts.getAllValues()).extracting(UploadPartRequest::contentLength).containsExactly(4L, 4L, 2L);
+        verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void smallBodyIsASinglePut() throws Exception {
+        storageService.uploadStream("raw-videos", "k", new ByteArrayInputStream(new byte[3]), "video/mp4");
+
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void abortsWhenTheBodyFailsMidway() {
+        InputStream failing = new InputStream() {
+            private int served;
+
+            @Override
+            public int read() throws IOException {
+                if (served++ >= 6) {
+                    throw new IOException("connection reset");
+                }
+                return 0;
+            }
+        };
+
+        assertThatThrownBy(() -> storageService.uploadStream("raw-videos", "k", failing, "video/mp4"))
+                .isInstanceOf(IOException.class);
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void uploadsFilesOverTheThresholdAsParts() throws Exception {
+        Path file = Files.write(tempDir.resolve("big.ts"), new byte[11]);
+
+        storageService.uploadFile("processed-videos", "big.ts", file, "video/mp2t");
+
+        var parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(3)).uploadPart(parts.capture(), any(RequestBody.class));
+        assertThat(parts.getAllValues()).extracting(UploadPartRequest::partNumber).containsExactly(1, 2, 3);
+        assertThat(parts.getAllValues()).extracting(UploadPartRequest::contentLength).containsExactly(4L, 4L, 3L);
+        verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(Path.class));
+    }
+
+    @Test
+    void failedAbortDoesNotHideTheUploadFailure() throws Exception {
+        Path file = Files.write(tempDir.resolve("big.ts"), new byte[11]);
+        var partFailure = SdkClientException.create("part failed");
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenThrow(partFailure);
+        when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenThrow(SdkClientException.create("abort failed"));
+
+        assertThatThrownBy(() -> storageService.uploadFile("processed-videos", "big.ts", file, "video/mp2t"))
+                .isSameAs(partFailure)
+                .satisfies(e -> assertThat(e.getSuppressed()).extracting(Throwable::getMessage)
+                        .containsExactly("abort failed"));
+    }
+
+    @Test
+    void abortingAnUploadThatIsAlreadyGoneSucceeds() {
+        when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenThrow(NoSuchUploadException.builder().statusCode(404).message("no such upload").build());
+
+        assertThatCode(() -> storageService.abortMultipartUpload("raw-videos", "c/v/original.mp4", "upload-1"))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void reusesPresignedUrlsUntilTheObjectIsDeleted() throws Exception {
+        var presigned = mock(PresignedGetObjectRequest.class);
+        when(presigned.url()).thenReturn(URI.create("http://minio/processed-videos/thumb.jpg?sig").toURL());
+        when(s3Presigner.presignGetObject(any(GetObjectPresignRequest.class))).thenReturn(presigned);
+
+        var first = storageService.generatePresignedUrl("processed-videos", "thumb.jpg", 60);
+        var second = storageService.generatePresignedUrl("processed-videos", "thumb.jpg", 60);
+        storageService.delete("processed-videos", "thumb.jpg");
+        storageService.generatePresignedUrl("processed-videos", "thumb.jpg", 60);
+
+        assertThat(second).isSameAs(first);
+        verify(s3Presigner, times(2)).presignGetObject(any(GetObjectPresignRequest.class));
+    }
+
+    @Test
+    void openTakesLengthAndValidatorsFromTheRangedGet() throws Exception {
+        var response = GetObjectResponse.builder().contentLength(5L).contentRange("bytes 5-9/20").eTag("\"abc\"")
+                .build();
+        when(s3Client.getObject(any(GetObjectRequest.class)))
+                .thenReturn(new ResponseInputStream<>(response, new ByteArrayInputStream("56789".getBytes())));
+
+        try (var object = storageService.open("processed-videos", "seg.ts", HttpRange.createByteRange(5, 9))) {
+            assertThat(object.info().contentLength()).isEqualTo(20);
+            assertThat(object.info().eTag()).isEqualTo("\"abc\"");
+            assertThat(object.content().readAllBytes()).asString().isEqualTo("56789");
+        }
+        var request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client).getObject(request.capture());
+        assertThat(request.getValue().range()).isEqualTo("bytes=5-9");
+        verify(s3Client, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    void openFallsBackToTheWholeObjectForAnUnsatisfiableRange() throws Exception {
+        var full = GetObjectResponse.builder().contentLength(20L).build();
+        when(s3Client.getObject(any(GetObjectRequest.class)))
+                .thenThrow(S3Exception.builder().statusCode(416).build())
+                .thenReturn(new ResponseInputStream<>(full, new ByteArrayInputStream(new byte[20])));
+
+        try (var object = storageService.open("processed-videos", "seg.ts", HttpRange.createByteRange(50, 60))) {
+            assertThat(object.info().contentLength()).isEqualTo(20);
+        }
+    }
+}
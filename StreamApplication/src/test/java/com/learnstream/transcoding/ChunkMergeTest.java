@@ -0,0 +1,213 @@
+package com.learnstream.transcoding;
+
+import com.learnstream.payment.AccessCache;
+import com.learnstream.storage.StorageService;
+import com.learnstream.video.Video;
+import com.learnstream.video.VideoRepository;
+import com.learnstream.video.VideoStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// A MERGE task delivered twice through the broker, with nothing else (no lease, no checkpoint) to
+// stop the second run: the video must end up READY with a merged playlist, not FAILED.
+@SpringJUnitConfig(ChunkMergeTest.Config.class)
+@EmbeddedKafka(partitions = 1, topics = ChunkMergeTest.TOPIC)
+class ChunkMergeTest {
+
+    static final String TOPIC = "transcoding-jobs";
+    static final String BUCKET = "processed-videos";
+    static final String TOKEN = "1@worker/" + UUID.randomUUID();
+    static final TranscodingConfig.QualityPreset RUNG = new TranscodingConfig.QualityPreset("360p", 640, 360, "800k");
+
+    static final Map<String, byte[]> stored = new ConcurrentHashMap<>();
+    static final Video video = new Video();
+    static final TranscodingJob job = new TranscodingJob();
+
+    static {
+        video.setId(UUID.randomUUID());
+        video.setCreatorId(UUID.randomUUID());
+        video.setStatus(VideoStatus.PROCESSING);
+        job.setId(UUID.randomUUID());
+        job.setVideoId(video.getId());
+        job.setChunkCount(2);
+        job.setChunkSeconds(12);
+    }
+
+    @Autowired
+    EmbeddedKafkaBroker broker;
+
+    @Autowired
+    TranscodingService transcodingService;
+
+    @Test
+    void redeliveredMergeLeavesTheVideoReady() throws Exception {
+        String prefix = video.getCreatorId() + "/" + video.getId() + "/hls/";
+        store(prefix + "chunks/0/stream_360p.m3u8", chunkPlaylist(0, 1));
+        store(prefix + "chunks/1/stream_360p.m3u8", chunkPlaylist(2, 3));
+        store(prefix + HlsPlaylists.AUDIO_PLAYLIST, "#EXTM3U\n");
+
+        var producerFactory = new DefaultKafkaProducerFactory<String, TranscodingRequestedEvent>(
+                Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()),
+                new StringSerializer(), new JacksonJsonSerializer<>());
+        var template = new KafkaTemplate<>(producerFactory);
+        var merge = new TranscodingRequestedEvent(job.getId(), video.getId(), TranscodingRequestedEvent.Stage.MERGE, 0);
+        template.send(TOPIC, video.getId().toString(), merge).get();
+        template.send(TOPIC, video.getId().toString(), merge).get();
+        producerFactory.destroy();
+
+        // The first run completes the job under its lease, the redelivery only finds the video READY
+        await().atMost(Duration.ofSeconds(30))
+                .untilAsserted(() -> verify(transcodingService).markCompleted(job.getId()));
+        verify(transcodingService).completeLeased(job.getId(), TOKEN, video);
+
+        assertThat(video.getStatus()).isEqualTo(VideoStatus.READY);
+        assertThat(video.getHlsStorageKey()).isEqualTo(prefix + "master.m3u8");
+        verify(transcodingService, never()).retryOrFail(any(), any(), any());
+        assertThat(read(prefix + "stream_360p.m3u8"))
+                .contains("stream_360p_000.ts", "stream_360p_003.ts")
+                .endsWith("#EXT-X-ENDLIST\n");
+        assertThat(read(prefix + "master.m3u8"))
+                .contains("URI=\"stream_audio.m3u8\"", "RESOLUTION=640x360,AUDIO=\"audio\"");
+        assertThat(stored.keySet()).noneMatch(key -> key.contains("/chunks/"));
+    }
+
+    private static String chunkPlaylist(int... segments) {
+        return "#EXTM3U\n#EXT-X-TARGETDURATION:6\n" + Arrays.stream(segments)
+                .mapToObj(i -> String.format("#EXTINF:6.000000,\nstream_360p_%03d.ts\n", i))
+                .collect(Collectors.joining()) + "#EXT-X-ENDLIST\n";
+    }
+
+    private static void store(String key, String content) {
+        stored.put(key, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(String key) {
+        assertThat(stored).containsKey(key);
+        return new String(stored.get(key), StandardCharsets.UTF_8);
+    }
+
+    @Configuration
+    @EnableKafka
+    @Import({TranscodingKafkaConfig.class, TranscodingJobListener.class, TranscodingWorker.class, HlsUploader.class})
+    static class Config {
+
+        @Bean
+        ConsumerFactory<Object, Object> consumerFactory(EmbeddedKafkaBroker broker) {
+            Map<String, Object> props = KafkaTestUtils.consumerProps(broker, "learnstream-transcoding", false);
+            props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+            props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JacksonJsonDeserializer.class);
+            props.put(JacksonJsonDeserializer.VALUE_DEFAULT_TYPE, TranscodingRequestedEvent.class.getName());
+            props.put(JacksonJsonDeserializer.TRUSTED_PACKAGES, "com.learnstream.transcoding");
+            return new DefaultKafkaConsumerFactory<>(props);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        TranscodingConfig transcodingConfig() throws Exception {
+            return new TranscodingConfig("ffmpeg", "ffprobe", Files.createTempDirectory("merge").toString(), TOPIC,
+                    List.of(RUNG), 4, 3, false, 4, 1, true, 120, 900, false, Duration.ofHours(1), false);
+        }
+
+        @Bean
+        TranscodeScheduler transcodeScheduler(TranscodingConfig config, MeterRegistry meterRegistry) {
+            return new TranscodeScheduler(config, meterRegistry);
+        }
+
+        @Bean
+        LadderPlanner ladderPlanner() {
+            return mock(LadderPlanner.class);
+        }
+
+        @Bean
+        AccessCache accessCache() {
+            return mock(AccessCache.class);
+        }
+
+        @Bean
+        VideoRepository videoRepository() {
+            var repository = mock(VideoRepository.class);
+            when(repository.findById(video.getId())).thenReturn(Optional.of(video));
+            return repository;
+        }
+
+        @Bean
+        TranscodingService transcodingService() {
+            var service = mock(TranscodingService.class);
+            when(service.acquireLease(any(), any())).thenReturn(Optional.of(TOKEN));
+            when(service.leaseDuration()).thenReturn(Duration.ofMinutes(1));
+            when(service.getJob(job.getId())).thenReturn(job);
+            when(service.completeLeased(job.getId(), TOKEN, video)).thenReturn(true);
+            return service;
+        }
+
+        @Bean
+        StorageService storageService() {
+            var storage = mock(StorageService.class);
+            when(storage.processedBucket()).thenReturn(BUCKET);
+            when(storage.download(anyString(), anyString())).thenAnswer(inv -> {
+                byte[] content = stored.get(inv.<String>getArgument(1));
+                if (content == null) {
+                    throw NoSuchKeyException.builder().message("no such key").build();
+                }
+                return new ByteArrayInputStream(content);
+            });
+            when(storage.listObjectSizes(anyString(), anyString())).thenAnswer(inv -> stored.entrySet().stream()
+                    .filter(e -> e.getKey().startsWith(inv.getArgument(1)))
+                    .collect(Collectors.toMap(Map.Entry::getKey, e -> (long) e.getValue().length)));
+            doAnswer(inv -> stored.put(inv.getArgument(1), Files.readAllBytes(inv.<Path>getArgument(2))))
+                    .when(storage).uploadFile(anyString(), anyString(), any(Path.class), anyString());
+            doAnswer(inv -> stored.remove(inv.<String>getArgument(1)))
+                    .when(storage).delete(anyString(), anyString());
+            return storage;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.learnstream.transcoding;
+
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Encode throughput per x264 preset and thread count of the configured ladder (transcoding.qualities in
+// application.yml), both as the single-pass command the worker runs with transcoding.single-pass and as one
+// rendition command per rung. Frames per CPU second is the number to compare across machines; the JSON report
+// is meant to be diffed between releases.
+// Run with: gradle benchmark --tests '*EncoderThroughputBenchmark' [-Dbenchmark.presets=veryfast,medium]
+//   [-Dbenchmark.threads=1,2,4] [-Dbenchmark.seconds=20] [-Dbenchmark.sample=file.mp4] [-Dbenchmark.report=path]
+@Tag("benchmark")
+@EnabledIf("ffmpegAvailable")
+class EncoderThroughputBenchmark {
+
+    private static final Pattern BENCH = Pattern.compile("bench: utime=([\\d.]+)s stime=([\\d.]+)s rtime=([\\d.]+)s");
+    private static final Pattern MAXRSS = Pattern.compile("bench: maxrss=(\\d+)\\s*(?:KiB|kB)");
+    private static final Pattern FRAME = Pattern.compile("frame=\\s*(\\d+)");
+    private static final String SINGLE_PASS = "single-pass";
+    private static final String SEPARATE = "separate";
+
+    @TempDir
+    static Path workDir;
+
+    private static List<TranscodingConfig.QualityPreset> qualities;
+    private static String sample;
+    private final FfmpegCommands commands = new FfmpegCommands(new TranscodingConfig("ffmpeg", "ffprobe",
+            workDir.toString(), "transcoding-jobs", qualities, 1, 1, false, 0, 1, false, 120, 900,
+            false, Duration.ofHours(1), true));
+
+    @BeforeAll
+    static void prepareSample() throws Exception {
+        qualities = configuredLadder();
+        sample = System.getProperty("benchmark.sample");
+        if (sample == null) {
+            int seconds = Integer.parseInt(System.getProperty("benchmark.seconds", "20"));
+            Path generated = workDir.resolve("testsrc.mp4");
+            run(List.of("ffmpeg", "-v", "error",
+                    "-f", "lavfi", "-i", "testsrc=size=1920x1080:rate=30:duration=" + seconds,
+                    "-f", "lavfi", "-i", "sine=frequency=440:duration=" + seconds,
+                    "-c:v", "libx264", "-preset", "veryfast", "-crf", "18", "-c:a", "aac", "-shortest",
+                    generated.toString()),
+                    workDir.resolve("generate.log"));
+            sample = generated.toString();
+        }
+    }
+
+    @Test
+    void measureEncodeThroughput() throws Exception {
+        List<String> presets = listProperty("benchmark.presets", "veryfast,medium");
+        List<Integer> threads = listProperty("benchmark.threads", "1,2,4").stream().map(Integer::parseInt).toList();
+
+        var results = new ArrayList<Result>();
+        System.out.printf("%-12s %-10s %7s %8s %8s %10s %10s %10s%n",
+                "rung", "preset", "threads", "fps", "cpu s", "frames/cpu", "rss MB", "MB");
+        for (String preset : presets) {
+            for (int t : threads) {
+                var separate = new ArrayList<Result>();
+                for (var q : qualities) {
+                    separate.add(print(encode(q, preset, t)));
+                }
+                // The whole ladder as separate commands, run one after the other, against the single pass
+                results.addAll(separate);
+                results.add(print(total(separate)));
+                results.add(print(encodeSinglePass(preset, t)));
+            }
+        }
+
+        var report = new Report(firstLine(List.of("ffmpeg", "-version")), Runtime.getRuntime().availableProcessors(),
+                System.getProperty("os.arch"), System.getProperty("benchmark.sample", "testsrc"), results);
+        Path reportFile = Path.of(System.getProperty("benchmark.report",
+                "build/reports/benchmark/encoder-throughput.json"));
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        Files.writeString(reportFile, new GsonBuilder().setPrettyPrinting().create().toJson(report));
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+
+        assertThat(results).allSatisfy(r -> assertThat(r.outputBytes()).isPositive());
+    }
+
+    static boolean ffmpegAvailable() {
+        try {
+            return new ProcessBuilder("ffmpeg", "-version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    private Result encode(TranscodingConfig.QualityPreset q, String preset, int threads) throws Exception {
+        String name = q.label() + "-" + preset + "-" + threads;
+        Path hls = Files.createDirectories(workDir.resolve(name));
+        var cmd = benchmarked(commands.rendition(sample, hls, q, threads, null), preset);
+        Path log = workDir.resolve(name + ".log");
+        run(cmd, log);
+        String output = Files.readString(log);
+        return result(q.label(), preset, threads, output, output, log, hls);
+    }
+
+    // Every rung gets the same thread count, where the worker would size each one by its resolution
+    private Result encodeSinglePass(String preset, int threads) throws Exception {
+        String name = SINGLE_PASS + "-" + preset + "-" + threads;
+        Path dir = Files.createDirectories(workDir.resolve(name));
+        Path hls = Files.createDirectories(dir.resolve("hls"));
+        Path progress = dir.resolve("progress.txt");
+        var cmd = benchmarked(commands.singlePass(sample, hls, dir.resolve("thumbnail.jpg"),
+                Files.createDirectories(dir.resolve("sprites")), progress, qualities,
+                Collections.nCopies(qualities.size(), threads)), preset);
+        Path log = workDir.resolve(name + ".log");
+        run(cmd, log);
+        // The single pass reports frames through -progress instead of stats lines
+        return result(SINGLE_PASS, preset, threads, Files.readString(log), Files.readString(progress), log, hls);
+    }
+
+    private static Result total(List<Result> renditions) {
+        var first = renditions.getFirst();
+        double wall = renditions.stream().mapToDouble(Result::wallSecs).sum();
+        double cpu = renditions.stream().mapToDouble(Result::cpuSecs).sum();
+        return new Result(SEPARATE, first.preset(), first.threads(), first.frames(), wall, first.frames() / wall,
+                cpu, first.frames() / cpu, renditions.stream().mapToLong(Result::maxRssKb).max().orElse(0),
+                renditions.stream().mapToLong(Result::outputBytes).sum());
+    }
+
+    // The worker leaves libx264 on its default preset; the benchmark pins it right after each use of the codec
+    private static List<String> benchmarked(List<String> command, String preset) {
+        var cmd = new ArrayList<String>();
+        for (String arg : command) {
+            cmd.add(arg);
+            if (arg.equals("libx264")) {
+                cmd.add("-preset");
+                cmd.add(preset);
+            }
+        }
+        cmd.add(1, "-benchmark");
+        return cmd;
+    }
+
+    private static Result result(String rendition, String preset, int threads, String output, String progress,
+                                 Path log, Path hls) throws IOException {
+        Matcher bench = BENCH.matcher(output);
+        Matcher rss = MAXRSS.matcher(output);
+        assertThat(bench.find()).as("benchmark line in %s", log).isTrue();
+        assertThat(rss.find()).as("maxrss line in %s", log).isTrue();
+        Matcher frame = FRAME.matcher(progress);
+        long frames = 0;
+        while (frame.find()) {
+            frames = Long.parseLong(frame.group(1));
+        }
+        double cpu = Double.parseDouble(bench.group(1)) + Double.parseDouble(bench.group(2));
+        double wall = Double.parseDouble(bench.group(3));
+        long bytes;
+        try (Stream<Path> files = Files.list(hls)) {
+            bytes = files.mapToLong(f -> f.toFile().length()).sum();
+        }
+        return new Result(rendition, preset, threads, frames, wall, frames / wall, cpu, frames / cpu,
+                Long.parseLong(rss.group(1)), bytes);
+    }
+
+    private static Result print(Result result) {
+        System.out.printf("%-12s %-10s %7d %8.1f %8.2f %10.1f %10.1f %10.2f%n", result.rendition(), result.preset(),
+                result.threads(), result.fps(), result.cpuSecs(), result.framesPerCpuSec(),
+                result.maxRssKb() / 1024.0, result.outputBytes() / 1_000_000.0);
+        return result;
+    }
+
+    // The ladder as the application is configured, from the default document of application.yml
+    private static List<TranscodingConfig.QualityPreset> configuredLadder() throws IOException {
+        var documents = new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml"));
+        return new Binder(ConfigurationPropertySources.from(documents.getFirst()))
+                .bind("transcoding.qualities", Bindable.listOf(TranscodingConfig.QualityPreset.class))
+                .orElseThrow(() -> new IllegalStateException("No transcoding.qualities in application.yml"));
+    }
+
+    private static List<String> listProperty(String name, String defaults) {
+        return Arrays.stream(System.getProperty(name, defaults).split(",")).map(String::trim).toList();
+    }
+
+    private static String firstLine(List<String> cmd) throws Exception {
+        var process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String out = new String(process.getInputStream().readAllBytes());
+        process.waitFor();
+        return out.lines().findFirst().orElse("");
+    }
+
+    private static void run(List<String> cmd, Path logFile) throws Exception {
+        var process = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(logFile.toFile()).start();
+        assertThat(process.waitFor()).as("%s exit code, see %s", cmd.getFirst(), logFile).isZero();
+    }
+
+    private record Report(String ffmpeg, int cpus, String arch, String source, List<Result> results) {}
+
+    private record Result(String rendition, String preset, int threads, long frames, double wallSecs, double fps,
+                          double cpuSecs, double framesPerCpuSec, long maxRssKb, long outputBytes) {}
+}
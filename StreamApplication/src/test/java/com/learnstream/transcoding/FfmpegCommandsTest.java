@@ -0,0 +1,66 @@
+package com.learnstream.transcoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FfmpegCommandsTest {
+
+    private static final List<TranscodingConfig.QualityPreset> QUALITIES = List.of(
+            new TranscodingConfig.QualityPreset("360p", 640, 360, "800k"),
+            new TranscodingConfig.QualityPreset("720p", 1280, 720, "2500k"));
+
+    private final FfmpegCommands commands = new FfmpegCommands(new TranscodingConfig("ffmpeg", "ffprobe", "/tmp",
+            "transcoding-jobs", QUALITIES, 4, 3, false, 0, 1, false, 120, 900, false, Duration.ofHours(1), true));
+
+    @Test
+    void singlePassSplitsOneDecodeIntoEveryOutput() {
+        var cmd = commands.singlePass("in.mp4", Path.of("hls"), Path.of("thumbnail.jpg"), Path.of("sprites"),
+                Path.of("progress.txt"), QUALITIES, List.of(1, 4));
+
+        String graph = cmd.get(cmd.indexOf("-filter_complex") + 1);
+        assertThat(graph).startsWith("[0:v]split=4[s0][s1][thumb_in][sprite_in]")
+                .contains("[s1]scale=1280:720[v1]", "tile=10x10[sprite]");
+        assertThat(cmd.stream().filter("-i"::equals)).hasSize(1);
+        assertThat(cmd).contains("[v0]", "[v1]", "[thumb]", "[sprite]",
+                Path.of("hls", "stream_720p.m3u8").toString());
+    }
+
+    @Test
+    void chunksAreVideoOnlyAndAudioIsEncodedOnceForTheWholeFile() {
+        var chunk = commands.rendition("in.mp4", Path.of("hls"), QUALITIES.getFirst(), 2,
+                new FfmpegCommands.Window(1, 120, 120, 20));
+        var whole = commands.rendition("in.mp4", Path.of("hls"), QUALITIES.getFirst(), 2, null);
+        var audio = commands.audio("in.mp4", Path.of("hls"));
+
+        assertThat(chunk).contains("-an").doesNotContain("0:a:0?", "-c:a");
+        assertThat(whole).contains("0:a:0?", "-c:a").doesNotContain("-an");
+        assertThat(audio).contains("0:a:0", "-vn", Path.of("hls", "stream_audio.m3u8").toString())
+                .doesNotContain("-ss", "-t");
+    }
+
+    @Test
+    void redactsThePresignedQueryOfStreamedInputs() {
+        String url = "http://minio:9000/raw-videos/c/v/raw.mp4?X-Amz-Credential=key&X-Amz-Signature=abc";
+        String cmd = String.join(" ", commands.rendition(url, Path.of("hls"), QUALITIES.getFirst(), 2, null));
+
+        assertThat(FfmpegCommands.redact(cmd))
+                .contains("-i http://minio:9000/raw-videos/c/v/raw.mp4?<redacted> ")
+                .doesNotContain("X-Amz");
+        assertThat(FfmpegCommands.redact("Input #0, mov,mp4, from '" + url + "':"))
+                .isEqualTo("Input #0, mov,mp4, from 'http://minio:9000/raw-videos/c/v/raw.mp4?<redacted>':");
+    }
+
+    @Test
+    void parsesDurationFromBannerOrProgress() {
+        assertThat(FfmpegCommands.parseDuration("  Duration: 01:02:03.50, start: 0.000000", ""))
+                .hasValue(3723.5);
+        assertThat(FfmpegCommands.parseDuration("", "out_time_us=1000000\nprogress=continue\nout_time_us=61500000\n"))
+                .hasValue(61.5);
+        assertThat(FfmpegCommands.parseDuration("", "")).isEmpty();
+    }
+}
@@ -0,0 +1,79 @@
+package com.learnstream.transcoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HlsPlaylistsTest {
+
+    @Test
+    void mergesChunkPlaylistsIntoOneVodPlaylist() {
+        String first = """
+                #EXTM3U
+                #EXT-X-VERSION:3
+                #EXT-X-TARGETDURATION:6
+                #EXT-X-MEDIA-SEQUENCE:0
+                #EXTINF:6.000000,
+                stream_360p_000.ts
+                #EXTINF:6.000000,
+                stream_360p_001.ts
+                #EXT-X-ENDLIST
+                """;
+        String second = """
+                #EXTM3U
+                #EXT-X-VERSION:3
+                #EXT-X-TARGETDURATION:7
+                #EXT-X-MEDIA-SEQUENCE:2
+                #EXTINF:6.000000,
+                stream_360p_002.ts
+                #EXTINF:6.400000,
+                stream_360p_003.ts
+                #EXT-X-ENDLIST
+                """;
+
+        assertThat(HlsPlaylists.mergeMedia(List.of(first, second))).isEqualTo("""
+                #EXTM3U
+                #EXT-X-VERSION:3
+                #EXT-X-TARGETDURATION:7
+                #EXT-X-MEDIA-SEQUENCE:0
+                #EXT-X-PLAYLIST-TYPE:VOD
+                #EXTINF:6.000000,
+                stream_360p_000.ts
+                #EXTINF:6.000000,
+                stream_360p_001.ts
+                #EXTINF:6.000000,
+                stream_360p_002.ts
+                #EXTINF:6.400000,
+                stream_360p_003.ts
+                #EXT-X-ENDLIST
+                """);
+    }
+
+    @Test
+    void masterListsEveryRenditionWithAudioInBandwidth() {
+        String master = HlsPlaylists.master(List.of(
+                new TranscodingConfig.QualityPreset("360p", 640, 360, "800k"),
+                new TranscodingConfig.QualityPreset("1080p", 1920, 1080, "5M")));
+
+        assertThat(master).contains(
+                "#EXT-X-STREAM-INF:BANDWIDTH=928000,RESOLUTION=640x360\nstream_360p.m3u8\n",
+                "#EXT-X-STREAM-INF:BANDWIDTH=5128000,RESOLUTION=1920x1080\nstream_1080p.m3u8\n");
+    }
+
+    @Test
+    void masterPointsVideoOnlyRenditionsAtTheSharedAudio() {
+        String master = HlsPlaylists.master(List.of(
+                new TranscodingConfig.QualityPreset("360p", 640, 360, "800k")), true);
+
+        assertThat(master).isEqualTo("""
+                #EXTM3U
+                #EXT-X-VERSION:4
+                #EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID="audio",NAME="default",DEFAULT=YES,AUTOSELECT=YES,\
+                URI="stream_audio.m3u8"
+                #EXT-X-STREAM-INF:BANDWIDTH=928000,RESOLUTION=640x360,AUDIO="audio"
+                stream_360p.m3u8
+                """);
+    }
+}
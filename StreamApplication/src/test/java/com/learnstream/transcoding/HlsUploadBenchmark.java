@@ -0,0 +1,121 @@
+package com.learnstream.transcoding;
+
+import com.learnstream.storage.ObjectCache;
+import com.learnstream.storage.PresignedUrlCache;
+import com.learnstream.storage.StorageCacheConfig;
+import com.learnstream.storage.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+
+// Wall-clock upload time of one video's HLS output: one object at a time, as uploadDirectory did before,
+// against HlsUploader. Storage is simulated with a fixed latency per request and a per-connection
+// bandwidth, so the result depends only on those two numbers and the concurrency. The node's total uplink
+// is not modelled, so high concurrency is an upper bound.
+// Run with: gradle benchmark --tests '*HlsUploadBenchmark' [-Dbenchmark.latency-ms=20]
+//   [-Dbenchmark.bandwidth-mbps=400] [-Dbenchmark.segments=100]
+@Tag("benchmark")
+class HlsUploadBenchmark {
+
+    private static final List<TranscodingConfig.QualityPreset> QUALITIES = List.of(
+            new TranscodingConfig.QualityPreset("360p", 640, 360, "800k"),
+            new TranscodingConfig.QualityPreset("720p", 1280, 720, "2500k"),
+            new TranscodingConfig.QualityPreset("1080p", 1920, 1080, "5000k"));
+
+    @TempDir
+    Path hlsDir;
+
+    private final long latencyMs = Long.getLong("benchmark.latency-ms", 20);
+    private final long bytesPerMs = Long.getLong("benchmark.bandwidth-mbps", 400) * 1_000_000 / 8 / 1000;
+
+    @Test
+    void compareSequentialAndParallelUpload() throws Exception {
+        writeVideo(Integer.getInteger("benchmark.segments", 100));
+        var storageService = storageService(new SlowS3());
+
+        System.out.printf("%-24s %12s%n", "upload", "wall ms");
+        long started = System.nanoTime();
+        try (Stream<Path> files = Files.list(hlsDir)) {
+            for (Path file : files.sorted().toList()) {
+                storageService.uploadFile("processed-videos", "c/v/hls/" + file.getFileName(), file,
+                        HlsUploader.guessContentType(file.getFileName().toString()));
+            }
+        }
+        System.out.printf("%-24s %12d%n", "sequential", (System.nanoTime() - started) / 1_000_000);
+
+        for (int concurrency : List.of(4, 16, 32)) {
+            var config = new TranscodingConfig("ffmpeg", "ffprobe", "/tmp", "transcoding-jobs", QUALITIES,
+                    concurrency, 3, false, 0, 1, false, 120, 900, false, Duration.ofHours(1), true);
+            var uploader = new HlsUploader(storageService, config);
+            started = System.nanoTime();
+            uploader.uploadDirectory(hlsDir, "processed-videos", "c/v/hls/");
+            System.out.printf("%-24s %12d%n", "HlsUploader x" + concurrency,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    // Sparse files sized like 6-second segments at each rendition's bitrate
+    private void writeVideo(int segments) throws Exception {
+        for (var q : QUALITIES) {
+            long kbps = Long.parseLong(q.bitrate().replace("k", ""));
+            long segmentBytes = kbps * 1000 / 8 * FfmpegCommands.SEGMENT_SECONDS;
+            for (int i = 0; i < segments; i++) {
+                try (var file = new RandomAccessFile(hlsDir.resolve(
+                        String.format("stream_%s_%03d.ts", q.label(), i)).toFile(), "rw")) {
+                    file.setLength(segmentBytes);
+                }
+            }
+            Files.writeString(hlsDir.resolve("stream_" + q.label() + ".m3u8"), "#EXTM3U\n");
+        }
+        Files.writeString(hlsDir.resolve("master.m3u8"), "#EXTM3U\n");
+    }
+
+    private static StorageService storageService(S3Client s3) throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var cacheConfig = new StorageCacheConfig(false, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1),
+                "/tmp", DataSize.ofKilobytes(64), Duration.ofMinutes(1));
+        return new StorageService(s3, mock(S3Presigner.class), mock(S3Presigner.class),
+                new ObjectCache(cacheConfig, meterRegistry), new PresignedUrlCache(100, meterRegistry),
+                DataSize.ofMegabytes(64), DataSize.ofMegabytes(16));
+    }
+
+    // Every PUT costs the round trip plus its size over one connection's bandwidth
+    private final class SlowS3 implements S3Client {
+
+        @Override
+        public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+            long size = body.optionalContentLength().orElse(0L);
+            try {
+                Thread.sleep(latencyMs + size / bytesPerMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return PutObjectResponse.builder().eTag("\"bench\"").build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
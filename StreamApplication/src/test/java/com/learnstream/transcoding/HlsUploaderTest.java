@@ -0,0 +1,185 @@
+package com.learnstream.transcoding;
+
+import com.learnstream.storage.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HlsUploaderTest {
+
+    @TempDir
+    Path hlsDir;
+
+    private final List<String> uploadedKeys = new CopyOnWriteArrayList<>();
+    private final StorageService storageService = mock(StorageService.class);
+    private HlsUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(inv -> uploadedKeys.add(inv.getArgument(1)))
+                .when(storageService).uploadFile(eq("processed-videos"), anyString(), any(Path.class), anyString());
+        var config = new TranscodingConfig("ffmpeg", "ffprobe", "/tmp", "transcoding-jobs", List.of(),
+                4, 3, true, 0, 1, false, 120, 900, false, Duration.ofHours(1), false);
+        uploader = new HlsUploader(storageService, config);
+    }
+
+    @Test
+    void uploadsMasterPlaylistLast() throws Exception {
+        write("stream_360p_000.ts");
+        write("stream_360p_001.ts");
+        write("stream_360p.m3u8");
+        write("master.m3u8");
+
+        uploader.uploadDirectory(hlsDir, "processed-videos", "c/v/hls/");
+
+        assertThat(uploadedKeys).hasSize(4);
+        assertThat(uploadedKeys.get(3)).isEqualTo("c/v/hls/master.m3u8");
+        assertThat(uploadedKeys.get(2)).isEqualTo("c/v/hls/stream_360p.m3u8");
+    }
+
+    @Test
+    void streamsFinishedSegmentsBeforePlaylists() throws Exception {
+        try (var upload = uploader.startPipelined(hlsDir, "processed-videos", "c/v/hls/")) {
+            // ffmpeg with temp_file writes to .tmp and renames when the segment is complete
+            write("stream_360p_000.ts.tmp");
+            Files.move(hlsDir.resolve("stream_360p_000.ts.tmp"), hlsDir.resolve("stream_360p_000.ts"),
+                    StandardCopyOption.ATOMIC_MOVE);
+            write("stream_360p_001.ts.tmp");
+
+            for (int i = 0; i < 100 && Files.exists(hlsDir.resolve("stream_360p_000.ts")); i++) {
+                Thread.sleep(50);
+            }
+            assertThat(uploadedKeys).containsExactly("c/v/hls/stream_360p_000.ts");
+            assertThat(hlsDir.resolve("stream_360p_000.ts")).doesNotExist();
+
+            Files.move(hlsDir.resolve("stream_360p_001.ts.tmp"), hlsDir.resolve("stream_360p_001.ts"),
+                    StandardCopyOption.ATOMIC_MOVE);
+            write("stream_360p.m3u8");
+            write("master.m3u8");
+            upload.finish();
+        }
+
+        assertThat(uploadedKeys).containsExactly(
+                "c/v/hls/stream_360p_000.ts",
+                "c/v/hls/stream_360p_001.ts",
+                "c/v/hls/stream_360p.m3u8",
+                "c/v/hls/master.m3u8");
+    }
+
+    @Test
+    void discardDeletesOnlyWhatTheUploadStored() throws Exception {
+        // 000 is left over from an earlier attempt; this one streams 001 before the encode fails
+        write("stream_360p_000.ts");
+        when(storageService.listObjectSizes("processed-videos", "c/v/hls/")).thenReturn(Map.of(
+                "c/v/hls/stream_360p_000.ts", (long) "stream_360p_000.ts".length()));
+
+        try (var upload = uploader.startPipelined(hlsDir, "processed-videos", "c/v/hls/", true)) {
+            write("stream_360p_001.ts");
+            await().atMost(Duration.ofSeconds(5)).until(() -> uploadedKeys.contains("c/v/hls/stream_360p_001.ts"));
+
+            upload.discard();
+        }
+
+        verify(storageService).delete("processed-videos", "c/v/hls/stream_360p_001.ts");
+        verify(storageService, never()).delete("processed-videos", "c/v/hls/stream_360p_000.ts");
+    }
+
+    @Test
+    void retrySkipsFilesAlreadyStoredWithTheSameSize() throws Exception {
+        write("stream_360p_000.ts");
+        write("stream_360p_001.ts");
+        write("stream_360p.m3u8");
+        // 000 made it up in full on the failed attempt, 001 only partially
+        when(storageService.listObjectSizes("processed-videos", "c/v/hls/")).thenReturn(Map.of(
+                "c/v/hls/stream_360p_000.ts", (long) "stream_360p_000.ts".length(),
+                "c/v/hls/stream_360p_001.ts", 3L));
+
+        uploader.uploadDirectory(hlsDir, "processed-videos", "c/v/hls/", true);
+
+        assertThat(uploadedKeys).containsExactly("c/v/hls/stream_360p_001.ts", "c/v/hls/stream_360p.m3u8");
+    }
+
+    @Test
+    void retriesTransientFailuresAndGivesUpOnOthers() throws Exception {
+        write("stream_360p_000.ts");
+        write("stream_360p_001.ts");
+        var attempts = new AtomicInteger();
+        doAnswer(inv -> {
+            String key = inv.getArgument(1);
+            if (key.endsWith("000.ts") && attempts.incrementAndGet() == 1) {
+                throw S3Exception.builder().statusCode(503).message("slow down").build();
+            }
+            if (key.endsWith("001.ts")) {
+                throw S3Exception.builder().statusCode(403).message("denied").build();
+            }
+            return uploadedKeys.add(key);
+        }).when(storageService).uploadFile(eq("processed-videos"), anyString(), any(Path.class), anyString());
+
+        assertThatThrownBy(() -> uploader.uploadDirectory(hlsDir, "processed-videos", "c/v/hls/"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("denied");
+        assertThat(attempts).hasValue(2);
+        assertThat(uploadedKeys).containsExactly("c/v/hls/stream_360p_000.ts");
+        verify(storageService, times(1)).uploadFile(eq("processed-videos"), eq("c/v/hls/stream_360p_001.ts"),
+                any(Path.class), anyString());
+    }
+
+    @Test
+    void copyPrefixCopiesEveryObjectUnderTheTargetPrefix() throws Exception {
+        when(storageService.listObjectSizes("processed-videos", "c/a/hls/")).thenReturn(Map.of(
+                "c/a/hls/master.m3u8", 100L,
+                "c/a/hls/stream_360p.m3u8", 200L,
+                "c/a/hls/stream_360p_000.ts", 5_000L));
+        var attempts = new AtomicInteger();
+        doAnswer(inv -> {
+            if (inv.<String>getArgument(2).endsWith("000.ts") && attempts.incrementAndGet() == 1) {
+                throw S3Exception.builder().statusCode(503).message("slow down").build();
+            }
+            return null;
+        }).when(storageService).copy(eq("processed-videos"), anyString(), anyString());
+
+        assertThat(uploader.copyPrefix("processed-videos", "c/a/hls/", "c/b/hls/")).isEqualTo(3);
+
+        verify(storageService).copy("processed-videos", "c/a/hls/master.m3u8", "c/b/hls/master.m3u8");
+        verify(storageService).copy("processed-videos", "c/a/hls/stream_360p.m3u8", "c/b/hls/stream_360p.m3u8");
+        verify(storageService, times(2)).copy("processed-videos", "c/a/hls/stream_360p_000.ts",
+                "c/b/hls/stream_360p_000.ts");
+    }
+
+    @Test
+    void copyPrefixOfAnEmptySourceCopiesNothing() throws Exception {
+        when(storageService.listObjectSizes("processed-videos", "c/a/thumbnail.jpg")).thenReturn(Map.of());
+
+        assertThat(uploader.copyPrefix("processed-videos", "c/a/thumbnail.jpg", "c/b/thumbnail.jpg")).isZero();
+
+        verify(storageService, never()).copy(anyString(), anyString(), anyString());
+    }
+
+    private void write(String name) throws Exception {
+        Files.writeString(hlsDir.resolve(name), name);
+    }
+}
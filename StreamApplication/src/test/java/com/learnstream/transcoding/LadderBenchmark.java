@@ -0,0 +1,119 @@
+package com.learnstream.transcoding;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Output bytes per minute of the configured ladder vs the per-title ladder on a static clip (slides),
+// a high-motion clip and, if given, a real sample.
+// Run with: gradle benchmark --tests '*LadderBenchmark' [-Dbenchmark.sample=/path/to/lecture.mp4]
+@Tag("benchmark")
+@EnabledIf("ffmpegAvailable")
+class LadderBenchmark {
+
+    private static final int CLIP_SECONDS = 30;
+    private static final List<TranscodingConfig.QualityPreset> QUALITIES = List.of(
+            new TranscodingConfig.QualityPreset("360p", 640, 360, "800k"),
+            new TranscodingConfig.QualityPreset("720p", 1280, 720, "2500k"),
+            new TranscodingConfig.QualityPreset("1080p", 1920, 1080, "5000k"));
+
+    @TempDir
+    static Path workDir;
+
+    private static final Map<String, String> clips = new LinkedHashMap<>();
+    private final FfmpegCommands commands = new FfmpegCommands(new TranscodingConfig("ffmpeg", "ffprobe",
+            workDir.toString(), "transcoding-jobs", QUALITIES, 1, 1, false, 0, 1, false, 120, 900,
+            false, Duration.ofHours(1), true));
+    private final LadderPlanner planner = new LadderPlanner(true, 3, 20, 300, 0.35);
+
+    @BeforeAll
+    static void generateClips() throws Exception {
+        clips.put("slides", generate("slides", "smptebars=size=1920x1080:rate=30:duration=" + CLIP_SECONDS, "null"));
+        clips.put("motion", generate("motion", "testsrc2=size=1920x1080:rate=30:duration=" + CLIP_SECONDS,
+                "noise=alls=20:allf=t"));
+        String sample = System.getProperty("benchmark.sample");
+        if (sample != null) {
+            clips.put("sample", sample);
+        }
+    }
+
+    @Test
+    void compareBytesPerMinute() throws Exception {
+        System.out.printf("%-8s %10s %-44s %12s %12s %8s%n",
+                "clip", "probe kbps", "per-title ladder", "fixed MB/min", "title MB/min", "saved");
+        for (var clip : clips.entrySet()) {
+            Path dir = Files.createDirectories(workDir.resolve(clip.getKey()));
+            Path probeLog = dir.resolve("probe.log");
+            run(commands.probeVideo(clip.getValue()), probeLog);
+            var source = FfmpegCommands.parseSource(Files.readString(probeLog));
+
+            long probeBytes = 0;
+            double probeSeconds = 0;
+            var windows = planner.sampleWindows(source.durationSecs());
+            for (int i = 0; i < windows.size(); i++) {
+                Path output = dir.resolve("complexity-" + i + ".mkv");
+                run(commands.complexityProbe(clip.getValue(), windows.get(i), output), dir.resolve("complexity.log"));
+                probeBytes += Files.size(output);
+                probeSeconds += Math.min(windows.get(i).lengthSecs(), source.durationSecs());
+            }
+            double complexityKbps = probeBytes * 8 / 1000.0 / probeSeconds;
+            var ladder = planner.plan(QUALITIES, source.width(), source.height(), complexityKbps);
+
+            double minutes = source.durationSecs() / 60;
+            double fixed = encode(clip.getValue(), QUALITIES, dir.resolve("fixed")) / minutes / 1_000_000;
+            double perTitle = encode(clip.getValue(), ladder, dir.resolve("per-title")) / minutes / 1_000_000;
+            String rungs = String.join(" ", ladder.stream().map(q -> q.height() + "p@" + q.bitrate()).toList());
+            System.out.printf("%-8s %10.0f %-44s %12.1f %12.1f %7.0f%%%n", clip.getKey(), complexityKbps, rungs,
+                    fixed, perTitle, 100 * (1 - perTitle / fixed));
+
+            if (clip.getKey().equals("slides")) {
+                assertThat(perTitle).isLessThan(fixed);
+            }
+        }
+    }
+
+    private long encode(String input, List<TranscodingConfig.QualityPreset> ladder, Path dir) throws Exception {
+        Path hls = Files.createDirectories(dir);
+        for (var q : ladder) {
+            Path log = dir.resolveSibling(dir.getFileName() + "-" + q.label() + ".log");
+            run(commands.rendition(input, hls, q, 0, null), log);
+        }
+        try (Stream<Path> files = Files.list(hls)) {
+            return files.mapToLong(f -> f.toFile().length()).sum();
+        }
+    }
+
+    static boolean ffmpegAvailable() {
+        try {
+            return new ProcessBuilder("ffmpeg", "-version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static String generate(String name, String source, String filter) throws Exception {
+        Path clip = workDir.resolve(name + ".mp4");
+        run(List.of("ffmpeg", "-v", "error", "-f", "lavfi", "-i", source, "-vf", filter,
+                "-c:v", "libx264", "-preset", "veryfast", "-crf", "18", clip.toString()),
+                workDir.resolve(name + "-generate.log"));
+        return clip.toString();
+    }
+
+    private static void run(List<String> cmd, Path logFile) throws Exception {
+        var process = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(logFile.toFile()).start();
+        assertThat(process.waitFor()).as("%s exit code, see %s", cmd.getFirst(), logFile).isZero();
+    }
+}
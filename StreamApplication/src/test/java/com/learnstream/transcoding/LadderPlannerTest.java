@@ -0,0 +1,53 @@
+package com.learnstream.transcoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LadderPlannerTest {
+
+    private static final List<TranscodingConfig.QualityPreset> CONFIGURED = List.of(
+            new TranscodingConfig.QualityPreset("1080p", 1920, 1080, "5000k"),
+            new TranscodingConfig.QualityPreset("360p", 640, 360, "800k"),
+            new TranscodingConfig.QualityPreset("720p", 1280, 720, "2500k"));
+
+    private final LadderPlanner planner = new LadderPlanner(true, 3, 20, 300, 0.35);
+
+    @Test
+    void scalesBitratesByComplexity() {
+        var motion = planner.plan(CONFIGURED, 1920, 1080, 450);
+        var slides = planner.plan(CONFIGURED, 1920, 1080, 60);
+
+        assertThat(motion).extracting(TranscodingConfig.QualityPreset::bitrate)
+                .containsExactly("800k", "2500k", "5000k");
+        // 60/300 is under the floor, so every rung gets 35% of its configured bitrate
+        assertThat(slides).extracting(TranscodingConfig.QualityPreset::bitrate)
+                .containsExactly("280k", "880k", "1750k");
+        assertThat(slides).extracting(TranscodingConfig.QualityPreset::height).containsExactly(360, 720, 1080);
+    }
+
+    @Test
+    void neverUpscalesAndFollowsSourceAspect() {
+        var hd = planner.plan(CONFIGURED, 1280, 720, 300);
+        assertThat(hd).extracting(TranscodingConfig.QualityPreset::label).containsExactly("360p", "720p");
+
+        // 4:3 at 240p keeps only the lowest rung, at source size, with bitrate cut by the pixel count
+        var small = planner.plan(CONFIGURED, 320, 240, 300);
+        assertThat(small).containsExactly(new TranscodingConfig.QualityPreset("360p", 320, 240, "270k"));
+    }
+
+    @Test
+    void spreadsSampleWindowsAndRoundTripsThroughTheJobColumn() {
+        assertThat(planner.sampleWindows(600)).containsExactly(
+                new LadderPlanner.Sample(90, 20), new LadderPlanner.Sample(290, 20), new LadderPlanner.Sample(490, 20));
+        assertThat(planner.sampleWindows(45)).containsExactly(new LadderPlanner.Sample(0, 45));
+
+        var converter = new QualityLadderConverter();
+        var ladder = planner.plan(CONFIGURED, 1920, 1080, 200);
+        String column = converter.convertToDatabaseColumn(ladder);
+        assertThat(column).isEqualTo("360p:640x360:530k,720p:1280x720:1670k,1080p:1920x1080:3330k");
+        assertThat(converter.convertToEntityAttribute(column)).isEqualTo(ladder);
+    }
+}
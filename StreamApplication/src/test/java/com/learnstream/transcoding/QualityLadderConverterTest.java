@@ -0,0 +1,37 @@
+package com.learnstream.transcoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QualityLadderConverterTest {
+
+    private final QualityLadderConverter converter = new QualityLadderConverter();
+
+    @Test
+    void roundTripsALadder() {
+        var ladder = List.of(
+                new TranscodingConfig.QualityPreset("360p", 640, 360, "280k"),
+                new TranscodingConfig.QualityPreset("720p_hi", 1280, 720, "1.2M"));
+
+        String stored = converter.convertToDatabaseColumn(ladder);
+
+        assertThat(stored).isEqualTo("360p:640x360:280k,720p_hi:1280x720:1.2M");
+        assertThat(converter.convertToEntityAttribute(stored)).isEqualTo(ladder);
+    }
+
+    @Test
+    void separatorsCannotGetIntoTheStoredLadder() {
+        assertThatThrownBy(() -> new TranscodingConfig.QualityPreset("720p:hi", 1280, 720, "2500k"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TranscodingConfig.QualityPreset("720p,hi", 1280, 720, "2500k"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> converter.convertToDatabaseColumn(
+                List.of(new TranscodingConfig.QualityPreset("720p", 1280, 720, "2500k,3000k"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("720p");
+    }
+}
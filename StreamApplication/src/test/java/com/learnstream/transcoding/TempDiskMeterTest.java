@@ -0,0 +1,46 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class TempDiskMeterTest {
+
+    @TempDir
+    Path workDir;
+
+    private final DistributionSummary summary = DistributionSummary.builder("transcoding.temp.disk.peak")
+            .register(new SimpleMeterRegistry());
+
+    @Test
+    void recordsThePeakNotTheSizeAtClose() throws Exception {
+        Path nested = Files.createDirectories(workDir.resolve("hls"));
+        try (var meter = TempDiskMeter.start(workDir, summary)) {
+            Files.write(workDir.resolve("input.mp4"), new byte[3_000]);
+            Files.write(nested.resolve("stream_360p_000.ts"), new byte[1_000]);
+            await().atMost(Duration.ofSeconds(5)).until(() -> meter.peak() == 4_000);
+
+            Files.delete(workDir.resolve("input.mp4"));
+        }
+
+        assertThat(summary.count()).isEqualTo(1);
+        assertThat(summary.max()).isEqualTo(4_000);
+    }
+
+    @Test
+    void takesAFinalSampleOnClose() throws Exception {
+        var meter = TempDiskMeter.start(workDir, summary);
+        Files.write(workDir.resolve("thumbnail.jpg"), new byte[500]);
+        meter.close();
+
+        assertThat(summary.max()).isEqualTo(500);
+    }
+}
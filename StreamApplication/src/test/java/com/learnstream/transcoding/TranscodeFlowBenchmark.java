@@ -0,0 +1,112 @@
+package com.learnstream.transcoding;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compares CPU seconds of the probe + thumbnail + per-rendition flow with the single-pass flow.
+// Run with: gradle benchmark [-Dbenchmark.sample=/path/to/lecture.mp4]
+@Tag("benchmark")
+@EnabledIf("ffmpegAvailable")
+class TranscodeFlowBenchmark {
+
+    private static final Pattern BENCH = Pattern.compile("bench: utime=([\\d.]+)s stime=([\\d.]+)s rtime=([\\d.]+)s");
+    private static final List<TranscodingConfig.QualityPreset> QUALITIES = List.of(
+            new TranscodingConfig.QualityPreset("360p", 640, 360, "800k"),
+            new TranscodingConfig.QualityPreset("720p", 1280, 720, "2500k"),
+            new TranscodingConfig.QualityPreset("1080p", 1920, 1080, "5000k"));
+
+    @TempDir
+    static Path workDir;
+
+    private static String sample;
+    private final FfmpegCommands commands = new FfmpegCommands(new TranscodingConfig("ffmpeg", "ffprobe",
+            workDir.toString(), "transcoding-jobs", QUALITIES, 1, 1, false, 0, 1, false, 120, 900,
+            false, Duration.ofHours(1), true));
+
+    @BeforeAll
+    static void prepareSample() throws Exception {
+        sample = System.getProperty("benchmark.sample");
+        if (sample == null) {
+            Path generated = workDir.resolve("sample.mp4");
+            run(List.of("ffmpeg", "-v", "error",
+                    "-f", "lavfi", "-i", "testsrc2=size=1920x1080:rate=30:duration=60",
+                    "-f", "lavfi", "-i", "sine=frequency=440:duration=60",
+                    "-c:v", "libx264", "-preset", "veryfast", "-c:a", "aac", "-shortest", generated.toString()),
+                    workDir.resolve("generate.log"));
+            sample = generated.toString();
+        }
+    }
+
+    @Test
+    void compareCpuSecondsPerJob() throws Exception {
+        Path threeProcess = Files.createDirectories(workDir.resolve("three-process"));
+        Path hls = Files.createDirectories(threeProcess.resolve("hls"));
+        var separate = new ArrayList<Cpu>();
+        run(commands.probeDuration(sample), threeProcess.resolve("probe.log"));
+        separate.add(bench(commands.thumbnail(sample, threeProcess.resolve("thumbnail.jpg")),
+                threeProcess.resolve("thumbnail.log")));
+        for (var q : QUALITIES) {
+            separate.add(bench(commands.rendition(sample, hls, q, 0, null), threeProcess.resolve(q.label() + ".log")));
+        }
+
+        Path singlePass = Files.createDirectories(workDir.resolve("single-pass"));
+        Path singleHls = Files.createDirectories(singlePass.resolve("hls"));
+        Path sprites = Files.createDirectories(singlePass.resolve("sprites"));
+        Path progress = singlePass.resolve("progress.txt");
+        Cpu combined = bench(commands.singlePass(sample, singleHls, singlePass.resolve("thumbnail.jpg"), sprites,
+                progress, QUALITIES, List.of(0, 0, 0)), singlePass.resolve("ffmpeg.log"));
+
+        Cpu total = separate.stream().reduce(new Cpu(0, 0, 0), Cpu::plus);
+        System.out.printf("%-14s %10s %10s %10s%n", "flow", "user s", "sys s", "wall s");
+        System.out.printf("%-14s %10.2f %10.2f %10.2f%n", "three-process", total.user(), total.sys(), total.wall());
+        System.out.printf("%-14s %10.2f %10.2f %10.2f%n", "single-pass", combined.user(), combined.sys(), combined.wall());
+        System.out.println("(ffprobe CPU is not included; it only reads container headers)");
+
+        assertThat(singleHls.resolve("stream_1080p.m3u8")).exists();
+        assertThat(singlePass.resolve("thumbnail.jpg")).exists();
+        assertThat(FfmpegCommands.parseDuration(Files.readString(singlePass.resolve("ffmpeg.log")),
+                Files.readString(progress))).isPresent();
+    }
+
+    static boolean ffmpegAvailable() {
+        try {
+            return new ProcessBuilder("ffmpeg", "-version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static Cpu bench(List<String> command, Path logFile) throws Exception {
+        var cmd = new ArrayList<>(command);
+        cmd.add(1, "-benchmark");
+        run(cmd, logFile);
+        Matcher m = BENCH.matcher(Files.readString(logFile));
+        assertThat(m.find()).as("benchmark line in %s", logFile).isTrue();
+        return new Cpu(Double.parseDouble(m.group(1)), Double.parseDouble(m.group(2)), Double.parseDouble(m.group(3)));
+    }
+
+    private static void run(List<String> cmd, Path logFile) throws Exception {
+        var process = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(logFile.toFile()).start();
+        assertThat(process.waitFor()).as("%s exit code, see %s", cmd.getFirst(), logFile).isZero();
+    }
+
+    private record Cpu(double user, double sys, double wall) {
+        Cpu plus(Cpu other) {
+            return new Cpu(user + other.user, sys + other.sys, wall + other.wall);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TranscodeSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TranscodeScheduler scheduler = new TranscodeScheduler(
+            new TranscodingConfig("ffmpeg", "ffprobe", "/tmp", "transcoding-jobs", List.of(),
+                    4, 3, false, 4, 1, false, 120, 900, false, Duration.ofHours(1), false),
+            meterRegistry);
+
+    @Test
+    void neverExceedsCoreBudget() throws Exception {
+        var inUse = new AtomicInteger();
+        var peak = new AtomicInteger();
+        TranscodeScheduler.Work work = () -> {
+            peak.accumulateAndGet(inUse.addAndGet(3), Math::max);
+            Thread.sleep(50);
+            inUse.addAndGet(-3);
+        };
+
+        scheduler.runAll(List.of(
+                new TranscodeScheduler.Task("a", 3, work),
+                new TranscodeScheduler.Task("b", 3, work),
+                new TranscodeScheduler.Task("c", 3, work)));
+
+        assertThat(peak).hasValue(3);
+        assertThat(meterRegistry.get("transcoding.scheduler.utilization").gauge().value()).isZero();
+    }
+
+    @Test
+    void failureInterruptsSiblings() {
+        var started = new CountDownLatch(1);
+        var interrupted = new AtomicBoolean();
+
+        assertThatThrownBy(() -> scheduler.runAll(List.of(
+                new TranscodeScheduler.Task("slow", 1, () -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                        throw e;
+                    }
+                }),
+                new TranscodeScheduler.Task("broken", 1, () -> {
+                    started.await();
+                    throw new IOException("boom");
+                }))))
+                .isInstanceOf(IOException.class)
+                .hasMessage("boom");
+
+        assertThat(interrupted).isTrue();
+    }
+}
@@ -0,0 +1,104 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Drives the listener's rebalance callbacks directly: a job still running when its partition is
+// revoked must not acknowledge an offset that now belongs to another consumer, or to its own redelivery.
+class TranscodingJobListenerRebalanceTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("transcoding-jobs", 0);
+
+    private final TranscodingWorker worker = mock(TranscodingWorker.class);
+    private final ConcurrentHashMap<UUID, CountDownLatch> gates = new ConcurrentHashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TranscodingJobListener listener;
+
+    TranscodingJobListenerRebalanceTest() throws Exception {
+        doAnswer(inv -> {
+            TranscodingRequestedEvent event = inv.getArgument(0);
+            gates.get(event.jobId()).await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(worker).process(any());
+        var config = new TranscodingConfig("ffmpeg", "ffprobe", "/tmp", PARTITION.topic(), List.of(),
+                4, 3, false, 4, 2, false, 120, 900, false, Duration.ofHours(1), false);
+        // No container registered, so pause/resume is a no-op here
+        listener = new TranscodingJobListener(worker, new KafkaListenerEndpointRegistry(), config,
+                new TranscodeScheduler(config, meterRegistry), meterRegistry);
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        gates.values().forEach(CountDownLatch::countDown);
+        listener.shutdown();
+    }
+
+    @Test
+    void aJobFinishingAfterItsPartitionWasRevokedIsNotAcknowledged() throws Exception {
+        var ack = mock(Acknowledgment.class);
+        var jobId = deliver(7, ack);
+
+        listener.onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(PARTITION));
+        finish(jobId);
+
+        verify(ack, never()).acknowledge();
+    }
+
+    @Test
+    void aStaleJobDoesNotAcknowledgeItsRedeliveryAfterTheRebalance() throws Exception {
+        var staleAck = mock(Acknowledgment.class);
+        var staleJob = deliver(7, staleAck);
+        listener.onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(PARTITION));
+        listener.onPartitionsAssigned(mock(Consumer.class), List.of(PARTITION));
+
+        var redeliveredAck = mock(Acknowledgment.class);
+        var redelivered = deliver(7, redeliveredAck);
+        finish(staleJob);
+
+        verify(staleAck, never()).acknowledge();
+        verify(redeliveredAck, never()).acknowledge();
+
+        finish(redelivered);
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(redeliveredAck).acknowledge());
+    }
+
+    private UUID deliver(long offset, Acknowledgment ack) throws InterruptedException {
+        var jobId = UUID.randomUUID();
+        gates.put(jobId, new CountDownLatch(1));
+        var event = new TranscodingRequestedEvent(jobId, UUID.randomUUID());
+        listener.onTranscodingRequested(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset,
+                event.videoId().toString(), event), ack);
+        return jobId;
+    }
+
+    // Lets the job return and waits for its slot to come back, which happens after any acknowledgement
+    private void finish(UUID jobId) {
+        double busy = busySlots();
+        gates.get(jobId).countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> busySlots() == busy - 1);
+    }
+
+    private double busySlots() {
+        return meterRegistry.get("transcoding.worker.slots.busy").gauge().value();
+    }
+}
@@ -0,0 +1,155 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+// Jobs far longer than max.poll.interval.ms: a listener that encoded on the poll thread would be
+// dropped from the group and the job redelivered. Here every job must run exactly once.
+@SpringJUnitConfig(TranscodingJobListenerTest.Config.class)
+@EmbeddedKafka(partitions = 2, topics = TranscodingJobListenerTest.TOPIC)
+class TranscodingJobListenerTest {
+
+    static final String TOPIC = "transcoding-jobs";
+    static final int SLOTS = 2;
+    static final Duration JOB_TIME = Duration.ofSeconds(5);
+    static final int MAX_POLL_INTERVAL_MS = 2_500;
+
+    static final Map<UUID, AtomicInteger> encodes = new ConcurrentHashMap<>();
+    static final AtomicInteger running = new AtomicInteger();
+    static final AtomicInteger peak = new AtomicInteger();
+
+    @Autowired
+    EmbeddedKafkaBroker broker;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    TranscodingJobListener listener;
+
+    @Test
+    void theContainerReportsRebalancesToTheListener() {
+        assertThat(registry.getListenerContainer(TranscodingJobListener.LISTENER_ID).getContainerProperties()
+                .getConsumerRebalanceListener()).isSameAs(listener);
+    }
+
+    @Test
+    void longJobsRunOnceWithinTheSlotLimitAndAreCommittedWhenDone() throws Exception {
+        var jobs = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        var producerFactory = new DefaultKafkaProducerFactory<String, TranscodingRequestedEvent>(
+                Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()),
+                new StringSerializer(), new JacksonJsonSerializer<>());
+        var template = new KafkaTemplate<>(producerFactory);
+        for (UUID jobId : jobs) {
+            var videoId = UUID.randomUUID();
+            template.send(TOPIC, videoId.toString(), new TranscodingRequestedEvent(jobId, videoId)).get();
+        }
+        producerFactory.destroy();
+
+        await().atMost(Duration.ofSeconds(60)).until(() -> committed() == jobs.size());
+        // Held for long enough that a rebalance-triggered redelivery would show up
+        await().during(Duration.ofMillis(MAX_POLL_INTERVAL_MS * 2L)).atMost(Duration.ofSeconds(30))
+                .untilAsserted(() -> {
+                    assertThat(encodes).containsOnlyKeys(jobs);
+                    assertThat(encodes.values()).allSatisfy(count -> assertThat(count).hasValue(1));
+                });
+
+        assertThat(peak.get()).isLessThanOrEqualTo(SLOTS);
+        assertThat(running).hasValue(0);
+    }
+
+    private long committed() throws Exception {
+        long total = 0;
+        for (int partition = 0; partition < 2; partition++) {
+            var offset = KafkaTestUtils.getCurrentOffset(broker.getBrokersAsString(), "learnstream-transcoding",
+                    TOPIC, partition);
+            total += offset != null ? offset.offset() : 0;
+        }
+        return total;
+    }
+
+    @Configuration
+    @EnableKafka
+    @Import({TranscodingKafkaConfig.class, TranscodingJobListener.class})
+    static class Config {
+
+        @Bean
+        ConsumerFactory<Object, Object> consumerFactory(EmbeddedKafkaBroker broker) {
+            Map<String, Object> props = KafkaTestUtils.consumerProps(broker, "learnstream-transcoding", false);
+            props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, MAX_POLL_INTERVAL_MS);
+            props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+            props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JacksonJsonDeserializer.class);
+            props.put(JacksonJsonDeserializer.VALUE_DEFAULT_TYPE, TranscodingRequestedEvent.class.getName());
+            props.put(JacksonJsonDeserializer.TRUSTED_PACKAGES, "com.learnstream.transcoding");
+            return new DefaultKafkaConsumerFactory<>(props);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        TranscodingConfig transcodingConfig() {
+            return new TranscodingConfig("ffmpeg", "ffprobe", "/tmp", TOPIC, List.of(),
+                    4, 3, false, 4, SLOTS, false, 120, 900, false, Duration.ofHours(1), false);
+        }
+
+        @Bean
+        TranscodeScheduler transcodeScheduler(TranscodingConfig config, MeterRegistry meterRegistry) {
+            return new TranscodeScheduler(config, meterRegistry);
+        }
+
+        @Bean
+        TranscodingWorker transcodingWorker() throws InterruptedException {
+            var worker = mock(TranscodingWorker.class);
+            doAnswer(invocation -> {
+                TranscodingRequestedEvent event = invocation.getArgument(0);
+                encodes.computeIfAbsent(event.jobId(), id -> new AtomicInteger()).incrementAndGet();
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(JOB_TIME);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return null;
+            }).when(worker).process(any());
+            return worker;
+        }
+    }
+}
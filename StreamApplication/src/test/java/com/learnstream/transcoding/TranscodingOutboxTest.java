@@ -0,0 +1,150 @@
+package com.learnstream.transcoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@EmbeddedKafka(partitions = 2, topics = TranscodingOutboxTest.TOPIC)
+class TranscodingOutboxTest {
+
+    static final String TOPIC = "transcoding-jobs";
+
+    private final TranscodingOutboxRepository repository = mock(TranscodingOutboxRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TranscodingConfig config = new TranscodingConfig("ffmpeg", "ffprobe", "/tmp", TOPIC, List.of(),
+            4, 3, false, 4, 1, false, 120, 900, false, Duration.ofHours(1), false);
+
+    private DefaultKafkaProducerFactory<String, TranscodingRequestedEvent> producerFactory;
+    private Consumer<String, TranscodingRequestedEvent> consumer;
+
+    @BeforeEach
+    void connect(EmbeddedKafkaBroker broker) {
+        var producerProps = KafkaTestUtils.producerProps(broker);
+        producerProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        producerProps.put(ProducerConfig.LINGER_MS_CONFIG, 10);
+        producerFactory = new DefaultKafkaProducerFactory<>(producerProps,
+                new StringSerializer(), new JacksonJsonSerializer<>());
+
+        var consumerProps = KafkaTestUtils.consumerProps(broker, "outbox-test-" + UUID.randomUUID(), false);
+        consumerProps.put("auto.offset.reset", "earliest");
+        var deserializer = new JacksonJsonDeserializer<>(TranscodingRequestedEvent.class, false);
+        consumer = new DefaultKafkaConsumerFactory<>(consumerProps, new StringDeserializer(), deserializer)
+                .createConsumer();
+        broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+    }
+
+    @AfterEach
+    void close() {
+        consumer.close();
+        producerFactory.destroy();
+    }
+
+    @Test
+    void relaysAClaimedBatchAndDeletesItOnceAcknowledged() {
+        var outbox = outbox(new KafkaTemplate<>(producerFactory));
+        var jobId = UUID.randomUUID();
+        var videoId = UUID.randomUUID();
+        var batch = new ArrayList<TranscodingOutboxMessage>();
+        for (int i = 0; i < 3; i++) {
+            batch.add(message(new TranscodingRequestedEvent(jobId, videoId, TranscodingRequestedEvent.Stage.CHUNK, i),
+                    videoId + "-" + i));
+        }
+        when(repository.tryLockRelay(any(Long.class))).thenReturn(true);
+        when(repository.claimBatch(200)).thenReturn(batch);
+
+        assertThat(outbox.relayBatch()).isEqualTo(3);
+
+        var records = KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10), 3);
+        var chunks = new ArrayList<Integer>();
+        records.forEach(record -> {
+            assertThat(record.key()).isEqualTo(videoId + "-" + record.value().chunkIndex());
+            chunks.add(record.value().chunkIndex());
+        });
+        assertThat(chunks).containsExactlyInAnyOrder(0, 1, 2);
+        verify(repository).deleteAllInBatch(batch);
+        assertThat(meterRegistry.get("transcoding.outbox.published").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("transcoding.outbox.delay").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void keepsTheBatchWhenTheBrokerRejectsIt() {
+        KafkaTemplate<String, TranscodingRequestedEvent> failing = mock(KafkaTemplate.class);
+        when(failing.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        var outbox = outbox(failing);
+        var videoId = UUID.randomUUID();
+        when(repository.tryLockRelay(any(Long.class))).thenReturn(true);
+        when(repository.claimBatch(200)).thenReturn(List.of(
+                message(new TranscodingRequestedEvent(UUID.randomUUID(), videoId), videoId.toString())));
+
+        assertThatThrownBy(outbox::relayBatch).isInstanceOf(IllegalStateException.class);
+
+        verify(repository, never()).deleteAllInBatch(any());
+    }
+
+    @Test
+    void leavesTheOutboxAloneWhileAnotherRelayHoldsTheLock() {
+        var outbox = outbox(new KafkaTemplate<>(producerFactory));
+        when(repository.tryLockRelay(any(Long.class))).thenReturn(false);
+
+        assertThat(outbox.relayBatch()).isZero();
+
+        verify(repository, never()).claimBatch(any(Integer.class));
+    }
+
+    @Test
+    void lagIsTheAgeOfTheOldestPendingMessage() {
+        var outbox = outbox(new KafkaTemplate<>(producerFactory));
+        when(repository.findOldestCreatedAt()).thenReturn(Optional.of(Instant.now().minusSeconds(5)));
+
+        outbox.updateLag();
+
+        assertThat(meterRegistry.get("transcoding.outbox.lag").gauge().value()).isBetween(5_000.0, 6_000.0);
+    }
+
+    private TranscodingOutbox outbox(KafkaTemplate<String, TranscodingRequestedEvent> template) {
+        return new TranscodingOutbox(repository, template, config, meterRegistry, 200, Duration.ofSeconds(10));
+    }
+
+    private static TranscodingOutboxMessage message(TranscodingRequestedEvent event, String key) {
+        var message = new TranscodingOutboxMessage();
+        message.setJobId(event.jobId());
+        message.setVideoId(event.videoId());
+        message.setStage(event.stageOrFull());
+        message.setChunkIndex(event.chunkIndex());
+        message.setMessageKey(key);
+        message.setCreatedAt(Instant.now().minusMillis(50));
+        return message;
+    }
+}
@@ -0,0 +1,212 @@
+package com.learnstream.transcoding;
+
+import com.learnstream.video.Video;
+import com.learnstream.video.VideoRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The lease rules on top of the repository's conditional updates, which are exercised against
+// Postgres only where Docker is available
+class TranscodingServiceTest {
+
+    private static final String NODE = ManagementFactory.getRuntimeMXBean().getName();
+    private static final String TOKEN = NODE + "/" + UUID.randomUUID();
+
+    private final TranscodingJobRepository repository = mock(TranscodingJobRepository.class);
+    private final VideoRepository videoRepository = mock(VideoRepository.class);
+    private final TranscodingOutbox outbox = mock(TranscodingOutbox.class);
+    private final TranscodingService service = new TranscodingService(repository, videoRepository, outbox,
+            Duration.ofMinutes(2), 3, Duration.ofMinutes(1), Duration.ofMinutes(30));
+
+    @Test
+    void acquiresTheLeaseOnlyWhenTheConditionalClaimMatchedTheRow() {
+        var jobId = UUID.randomUUID();
+        when(repository.acquireLease(eq(jobId), eq("MERGE"), anyString(), eq(120L))).thenReturn(1);
+
+        assertThat(service.acquireLease(jobId, TranscodingRequestedEvent.Stage.MERGE)).hasValueSatisfying(
+                token -> assertThat(token).startsWith(NODE + "/"));
+        assertThat(service.acquireLease(jobId, TranscodingRequestedEvent.Stage.FULL)).isEmpty();
+    }
+
+    @Test
+    void aStaleAcquisitionFromTheSameProcessNoLongerHoldsTheLease() {
+        var job = leasedJob(2);
+        when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+        var owner = new AtomicReference<String>();
+        when(repository.acquireLease(eq(job.getId()), eq("FULL"), anyString(), eq(120L))).thenAnswer(inv -> {
+            owner.set(inv.getArgument(2));
+            job.setLeaseOwner(owner.get());
+            return 1;
+        });
+        when(repository.renewLease(eq(job.getId()), anyString(), eq(120L)))
+                .thenAnswer(inv -> inv.getArgument(1).equals(owner.get()) ? 1 : 0);
+        when(repository.completeLeased(eq(job.getId()), anyString()))
+                .thenAnswer(inv -> inv.getArgument(1).equals(owner.get()) ? 1 : 0);
+
+        // The first slot's lease expired and another slot of this same service re-acquired the job
+        String stale = service.acquireLease(job.getId(), TranscodingRequestedEvent.Stage.FULL).orElseThrow();
+        String current = service.acquireLease(job.getId(), TranscodingRequestedEvent.Stage.FULL).orElseThrow();
+
+        assertThat(stale).isNotEqualTo(current);
+        assertThat(service.renewLease(job.getId(), stale)).isFalse();
+        assertThat(service.completeLeased(job.getId(), stale, new Video())).isFalse();
+        assertThat(service.retryOrFail(job.getId(), stale, "interrupted")).isTrue();
+        assertThat(job.getLeaseOwner()).isEqualTo(current);
+        verify(repository, never()).save(any());
+        verify(videoRepository, never()).save(any());
+
+        assertThat(service.renewLease(job.getId(), current)).isTrue();
+    }
+
+    @Test
+    void aFailedAttemptBacksOffWithAnOwnerlessLease() {
+        var job = leasedJob(2);
+        when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        assertThat(service.retryOrFail(job.getId(), TOKEN, "ffmpeg exited 1")).isTrue();
+
+        assertThat(job.getStatus()).isEqualTo(TranscodingJobStatus.IN_PROGRESS);
+        assertThat(job.getLeaseOwner()).isNull();
+        // Second attempt: twice the base backoff
+        assertThat(job.getLeaseExpiresAt()).isBetween(Instant.now().plusSeconds(110), Instant.now().plusSeconds(121));
+        assertThat(job.getErrorMessage()).isEqualTo("ffmpeg exited 1");
+        verify(repository).save(job);
+    }
+
+    @Test
+    void theLastAttemptFailsTheJob() {
+        var job = leasedJob(3);
+        when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        assertThat(service.retryOrFail(job.getId(), TOKEN, "ffmpeg exited 1")).isFalse();
+
+        assertThat(job.getStatus()).isEqualTo(TranscodingJobStatus.FAILED);
+        assertThat(job.getLeaseOwner()).isNull();
+    }
+
+    @Test
+    void aFailureAfterATakeoverLeavesTheJobToItsNewOwner() {
+        var job = leasedJob(3);
+        job.setLeaseOwner(NODE + "/" + UUID.randomUUID());
+        when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        assertThat(service.retryOrFail(job.getId(), TOKEN, "interrupted")).isTrue();
+
+        assertThat(job.getStatus()).isEqualTo(TranscodingJobStatus.IN_PROGRESS);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void expiredLeasesAreRequeuedFromTheirStageUntilAttemptsRunOut() {
+        var merge = leasedJob(1);
+        merge.setLeaseStage(TranscodingRequestedEvent.Stage.MERGE);
+        var exhausted = leasedJob(3);
+        when(repository.claimExpiredLeases(50)).thenReturn(List.of(merge, exhausted));
+
+        var failed = service.requeueExpired(50);
+
+        assertThat(failed).containsExactly(exhausted);
+        assertThat(exhausted.getStatus()).isEqualTo(TranscodingJobStatus.FAILED);
+        assertThat(exhausted.getErrorMessage()).isEqualTo("lease expired after 3 attempts");
+        assertThat(merge.getStatus()).isEqualTo(TranscodingJobStatus.PENDING);
+        assertThat(merge.getLeaseOwner()).isNull();
+        verify(outbox).append(new TranscodingRequestedEvent(merge.getId(), merge.getVideoId(),
+                TranscodingRequestedEvent.Stage.MERGE, 0));
+        verify(outbox, never()).append(new TranscodingRequestedEvent(exhausted.getId(), exhausted.getVideoId(),
+                TranscodingRequestedEvent.Stage.FULL, 0));
+    }
+
+    @Test
+    void theChunkPhaseKeepsADeadlineTheReaperSees() {
+        var job = leasedJob(1);
+        when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        service.splitIntoChunks(job.getId(), job.getVideoId(), 100, 40);
+
+        assertThat(job.getChunkCount()).isEqualTo(3);
+        assertThat(job.getLeaseStage()).isEqualTo(TranscodingRequestedEvent.Stage.CHUNK);
+        assertThat(job.getLeaseOwner()).isNull();
+        assertThat(job.getLeaseExpiresAt()).isAfter(Instant.now().plusSeconds(29 * 60));
+    }
+
+    @Test
+    void aChunkPhasePastItsDeadlineRequeuesOnlyTheMissingChunks() {
+        var job = chunkPhase(3);
+        when(repository.claimExpiredLeases(50)).thenReturn(List.of(job));
+        when(repository.findRecordedChunks(job.getId())).thenReturn(List.of(0, 2));
+
+        assertThat(service.requeueExpired(50)).isEmpty();
+
+        assertThat(job.getStatus()).isEqualTo(TranscodingJobStatus.IN_PROGRESS);
+        assertThat(job.getAttempts()).isEqualTo(2);
+        assertThat(job.getLeaseExpiresAt()).isAfter(Instant.now().plusSeconds(29 * 60));
+        verify(outbox).append(new TranscodingRequestedEvent(job.getId(), job.getVideoId(),
+                TranscodingRequestedEvent.Stage.CHUNK, 1));
+        verify(outbox, times(1)).append(any());
+    }
+
+    @Test
+    void aChunkPhaseWithEveryChunkRecordedRequeuesTheMerge() {
+        var job = chunkPhase(2);
+        when(repository.claimExpiredLeases(50)).thenReturn(List.of(job));
+        when(repository.findRecordedChunks(job.getId())).thenReturn(List.of(1, 0));
+
+        service.requeueExpired(50);
+
+        verify(outbox).append(new TranscodingRequestedEvent(job.getId(), job.getVideoId(),
+                TranscodingRequestedEvent.Stage.MERGE, 0));
+        verify(outbox, times(1)).append(any());
+    }
+
+    @Test
+    void onlyTheLeaseHolderMarksTheVideoReady() {
+        var jobId = UUID.randomUUID();
+        var video = new Video();
+        when(repository.completeLeased(jobId, TOKEN)).thenReturn(0);
+
+        assertThat(service.completeLeased(jobId, TOKEN, video)).isFalse();
+        verify(videoRepository, never()).save(any());
+
+        when(repository.completeLeased(jobId, TOKEN)).thenReturn(1);
+
+        assertThat(service.completeLeased(jobId, TOKEN, video)).isTrue();
+        verify(videoRepository).save(video);
+    }
+
+    private static TranscodingJob chunkPhase(int chunkCount) {
+        var job = leasedJob(1);
+        job.setChunkCount(chunkCount);
+        job.setLeaseStage(TranscodingRequestedEvent.Stage.CHUNK);
+        job.setLeaseOwner(null);
+        return job;
+    }
+
+    private static TranscodingJob leasedJob(int attempts) {
+        var job = new TranscodingJob();
+        job.setId(UUID.randomUUID());
+        job.setVideoId(UUID.randomUUID());
+        job.setStatus(TranscodingJobStatus.IN_PROGRESS);
+        job.setAttempts(attempts);
+        job.setLeaseStage(TranscodingRequestedEvent.Stage.FULL);
+        job.setLeaseOwner(TOKEN);
+        job.setLeaseExpiresAt(Instant.now().minusSeconds(1));
+        return job;
+    }
+}
@@ -0,0 +1,220 @@
+package com.learnstream.transcoding;
+
+import com.learnstream.payment.AccessCache;
+import com.learnstream.storage.StorageService;
+import com.learnstream.video.Video;
+import com.learnstream.video.VideoRepository;
+import com.learnstream.video.VideoStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Runs whole FULL jobs against a stand-in ffmpeg/ffprobe script that records its arguments and
+// prints a duration, so the worker's decisions can be checked without a real encoder.
+@DisabledOnOs(OS.WINDOWS)
+class TranscodingWorkerTest {
+
+    private static final TranscodingConfig.QualityPreset RUNG =
+            new TranscodingConfig.QualityPreset("360p", 640, 360, "800k");
+    private static final String RAW_KEY = "c/v/raw.mp4";
+    private static final String TOKEN = "1@worker/" + UUID.randomUUID();
+    private static final String INPUT_URL =
+            "http://minio:9000/raw-videos/c/v/raw.mp4?X-Amz-Signature=secret";
+
+    @TempDir
+    Path tempDir;
+
+    private final TranscodingService transcodingService = mock(TranscodingService.class);
+    private final VideoRepository videoRepository = mock(VideoRepository.class);
+    private final StorageService storageService = mock(StorageService.class);
+    private final LadderPlanner ladderPlanner = mock(LadderPlanner.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Video video = new Video();
+    private final TranscodingJob job = new TranscodingJob();
+    private Path tool;
+    private Path calls;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        calls = tempDir.resolve("calls.log");
+        tool = tempDir.resolve("fake-ffmpeg");
+        Files.writeString(tool, "#!/bin/sh\necho \"$@\" >> '" + calls + "'\necho 12.5\n");
+        Files.setPosixFilePermissions(tool, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        video.setId(UUID.randomUUID());
+        video.setCreatorId(UUID.randomUUID());
+        video.setRawStorageKey(RAW_KEY);
+        video.setStatus(VideoStatus.PROCESSING);
+        job.setId(UUID.randomUUID());
+        job.setVideoId(video.getId());
+        job.setAttempts(1);
+
+        when(videoRepository.findById(video.getId())).thenReturn(Optional.of(video));
+        when(transcodingService.acquireLease(any(), any())).thenReturn(Optional.of(TOKEN));
+        when(transcodingService.leaseDuration()).thenReturn(Duration.ofMinutes(1));
+        when(transcodingService.getJob(job.getId())).thenReturn(job);
+        when(transcodingService.checkpoints(job.getId())).thenReturn(new HashSet<>());
+        when(transcodingService.completeLeased(job.getId(), TOKEN, video)).thenReturn(true);
+        when(storageService.rawBucket()).thenReturn("raw-videos");
+        when(storageService.processedBucket()).thenReturn("processed-videos");
+        when(storageService.download("raw-videos", RAW_KEY)).thenReturn(new ByteArrayInputStream(new byte[64]));
+        when(storageService.generateInternalUrl(anyString(), anyString(), any()))
+                .thenReturn(URI.create(INPUT_URL).toURL());
+    }
+
+    @Test
+    void streamedInputHandsFfmpegAPresignedUrlInsteadOfDownloading() throws Exception {
+        worker(true).process(new TranscodingRequestedEvent(job.getId(), video.getId()));
+
+        verify(storageService).generateInternalUrl("raw-videos", RAW_KEY, Duration.ofHours(1));
+        verify(storageService, never()).download(anyString(), anyString());
+        verify(transcodingService, never()).checkpoint(job.getId(), TranscodingCheckpoint.DOWNLOADED);
+        assertThat(Files.readAllLines(calls)).isNotEmpty()
+                .allSatisfy(line -> assertThat(line).contains(INPUT_URL).doesNotContain("input.mp4"));
+        assertThat(video.getStatus()).isEqualTo(VideoStatus.READY);
+    }
+
+    @Test
+    void downloadedInputIsReadFromTheWorkDirectory() throws Exception {
+        worker(false).process(new TranscodingRequestedEvent(job.getId(), video.getId()));
+
+        verify(storageService).download("raw-videos", RAW_KEY);
+        verify(storageService, never()).generateInternalUrl(anyString(), anyString(), any());
+        verify(transcodingService).checkpoint(job.getId(), TranscodingCheckpoint.DOWNLOADED);
+        Path input = tempDir.resolve("work").resolve(job.getId().toString()).resolve("input.mp4");
+        assertThat(Files.readAllLines(calls)).isNotEmpty()
+                .allSatisfy(line -> assertThat(line).contains(input.toString()).doesNotContain("http"));
+        assertThat(video.getStatus()).isEqualTo(VideoStatus.READY);
+        verify(storageService).uploadFile("processed-videos", video.getCreatorId() + "/" + video.getId()
+                + "/hls/master.m3u8", tempDir.resolve("work").resolve(job.getId().toString())
+                .resolve("hls").resolve("master.m3u8"), "application/vnd.apple.mpegurl");
+    }
+
+    @Test
+    void aRetryWithEveryStageCheckpointedFetchesNoInput() throws Exception {
+        job.setAttempts(2);
+        job.setDurationSecs(12);
+        when(transcodingService.checkpoints(job.getId())).thenReturn(new HashSet<>(Set.of(
+                TranscodingCheckpoint.PROBED, TranscodingCheckpoint.THUMBNAIL, TranscodingCheckpoint.rendition(RUNG))));
+
+        worker(false).process(new TranscodingRequestedEvent(job.getId(), video.getId()));
+
+        verify(storageService, never()).download(anyString(), anyString());
+        verify(storageService, never()).generateInternalUrl(anyString(), anyString(), any());
+        assertThat(calls).doesNotExist();
+        verify(transcodingService).checkpoint(job.getId(), TranscodingCheckpoint.UPLOADED);
+        verify(transcodingService).completeLeased(job.getId(), TOKEN, video);
+        assertThat(video.getDurationSecs()).isEqualTo(12);
+    }
+
+    @Test
+    void aRetryAfterTheUploadOnlyMarksTheVideoReady() throws Exception {
+        job.setAttempts(2);
+        job.setDurationSecs(12);
+        when(transcodingService.checkpoints(job.getId()))
+                .thenReturn(new HashSet<>(Set.of(TranscodingCheckpoint.UPLOADED)));
+
+        worker(false).process(new TranscodingRequestedEvent(job.getId(), video.getId()));
+
+        assertThat(calls).doesNotExist();
+        verify(storageService, never()).uploadFile(anyString(), anyString(), any(), anyString());
+        verify(transcodingService).completeLeased(job.getId(), TOKEN, video);
+        assertThat(video.getHlsStorageKey()).endsWith("/hls/master.m3u8");
+    }
+
+    @Test
+    void losingTheLeaseCancelsTheRunningEncode() throws Exception {
+        // Renditions never finish on their own; probe and thumbnail return at once
+        Files.writeString(tool, "#!/bin/sh\necho \"$@\" >> '" + calls + "'\n"
+                + "case \"$*\" in *.m3u8*) exec sleep 60;; esac\necho 12.5\n");
+        when(transcodingService.leaseDuration()).thenReturn(Duration.ofMillis(300));
+        when(transcodingService.renewLease(job.getId(), TOKEN)).thenReturn(false);
+
+        long started = System.nanoTime();
+        worker(false).process(new TranscodingRequestedEvent(job.getId(), video.getId()));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(30));
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+        verify(transcodingService, never()).completeLeased(any(), any(), any());
+        verify(transcodingService, never()).retryOrFail(any(), any(), any());
+        assertThat(video.getStatus()).isEqualTo(VideoStatus.PROCESSING);
+    }
+
+    @Test
+    void anIdenticalReadyUploadIsCopiedInsteadOfEncoded() throws Exception {
+        var source = new Video();
+        source.setId(UUID.randomUUID());
+        source.setCreatorId(video.getCreatorId());
+        source.setDurationSecs(42);
+        video.setContentHash("sha256:abc");
+        when(videoRepository.findReadyByContentHash(video.getCreatorId(), "sha256:abc", video.getId()))
+                .thenReturn(Optional.of(source));
+        String from = source.getCreatorId() + "/" + source.getId() + "/";
+        String to = video.getCreatorId() + "/" + video.getId() + "/";
+        when(storageService.listObjectSizes("processed-videos", from + "hls/")).thenReturn(Map.of(
+                from + "hls/master.m3u8", 100L, from + "hls/stream_360p_000.ts", 5_000L));
+        when(storageService.listObjectSizes("processed-videos", from + "thumbnail.jpg"))
+                .thenReturn(Map.of(from + "thumbnail.jpg", 900L));
+
+        worker(false).process(new TranscodingRequestedEvent(job.getId(), video.getId()));
+
+        assertThat(calls).doesNotExist();
+        verify(storageService, never()).download(anyString(), anyString());
+        verify(storageService).copy("processed-videos", from + "hls/master.m3u8", to + "hls/master.m3u8");
+        verify(storageService).copy("processed-videos", from + "hls/stream_360p_000.ts",
+                to + "hls/stream_360p_000.ts");
+        verify(storageService).copy("processed-videos", from + "thumbnail.jpg", to + "thumbnail.jpg");
+        verify(transcodingService).completeLeased(job.getId(), TOKEN, video);
+        assertThat(video.getDurationSecs()).isEqualTo(42);
+        assertThat(video.getThumbnailUrl()).isEqualTo(to + "thumbnail.jpg");
+        assertThat(video.getHlsStorageKey()).isEqualTo(to + "hls/master.m3u8");
+        assertThat(meterRegistry.get("transcoding.dedup.reused").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void anUploadWithNoIdenticalReadyVideoIsEncoded() throws Exception {
+        video.setContentHash("sha256:abc");
+        when(videoRepository.findReadyByContentHash(video.getCreatorId(), "sha256:abc", video.getId()))
+                .thenReturn(Optional.empty());
+
+        worker(false).process(new TranscodingRequestedEvent(job.getId(), video.getId()));
+
+        assertThat(Files.readAllLines(calls)).isNotEmpty();
+        verify(storageService, never()).copy(anyString(), anyString(), anyString());
+        verify(transcodingService).completeLeased(job.getId(), TOKEN, video);
+        assertThat(meterRegistry.get("transcoding.dedup.reused").counter().count()).isZero();
+    }
+
+    private TranscodingWorker worker(boolean streamInput) {
+        var config = new TranscodingConfig(tool.toString(), tool.toString(), tempDir.resolve("work").toString(),
+                "transcoding-jobs", List.of(RUNG), 4, 3, false, 0, 1, false, 120, 900, streamInput,
+                Duration.ofHours(1), false);
+        return new TranscodingWorker(transcodingService, videoRepository, storageService, config,
+                mock(AccessCache.class), new HlsUploader(storageService, config),
+                new TranscodeScheduler(config, meterRegistry), ladderPlanner, meterRegistry);
+    }
+}
@@ -0,0 +1,145 @@
+package com.learnstream.video;
+
+import com.learnstream.storage.ObjectInfo;
+import com.learnstream.storage.StorageService;
+import com.learnstream.storage.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HlsContentStreamerTest {
+
+    private static final String KEY = "creator/video/hls/stream_720p_000.ts";
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+    private static final String ETAG = "\"abc123\"";
+    private static final Instant LAST_MODIFIED = Instant.parse("2025-01-01T00:00:00Z");
+    private static final MediaType TS = MediaType.parseMediaType("video/mp2t");
+
+    private StorageService storageService;
+    private HlsContentStreamer streamer;
+
+    @BeforeEach
+    void setUp() {
+        storageService = mock(StorageService.class);
+        when(storageService.processedBucket()).thenReturn("processed-videos");
+        when(storageService.open(eq("processed-videos"), eq(KEY), any()))
+                .thenAnswer(inv -> {
+                    HttpRange range = inv.getArgument(2);
+                    var info = new ObjectInfo(CONTENT.length, ETAG, LAST_MODIFIED);
+                    if (range == null || range.getRangeStart(CONTENT.length) >= CONTENT.length) {
+                        return new StoredObject(info, new ByteArrayInputStream(CONTENT));
+                    }
+                    int start = (int) range.getRangeStart(CONTENT.length);
+                    int end = (int) range.getRangeEnd(CONTENT.length);
+                    return new StoredObject(info, new ByteArrayInputStream(CONTENT, start, end - start + 1));
+                });
+        when(storageService.download(eq("processed-videos"), eq(KEY), anyLong(), anyLong()))
+                .thenAnswer(inv -> {
+                    int start = (int) (long) inv.getArgument(2);
+                    int end = (int) (long) inv.getArgument(3);
+                    return new ByteArrayInputStream(CONTENT, start, end - start + 1);
+                });
+        streamer = new HlsContentStreamer(storageService);
+    }
+
+    @Test
+    void servesFullObjectWithValidators() throws Exception {
+        var response = new MockHttpServletResponse();
+
+        streamer.stream(KEY, TS, new HttpHeaders(), response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        assertThat(response.getContentLengthLong()).isEqualTo(CONTENT.length);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        verify(storageService, never()).stat(anyString(), anyString());
+    }
+
+    @Test
+    void servesSingleRangeFromRangedDownload() throws Exception {
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=5-9");
+        var response = new MockHttpServletResponse();
+
+        streamer.stream(KEY, TS, headers, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsString()).isEqualTo("56789");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 5-9/20");
+        verify(storageService).open(eq("processed-videos"), eq(KEY), any());
+        verify(storageService, never()).stat(anyString(), anyString());
+    }
+
+    @Test
+    void servesMultipleRangesAsMultipartByteranges() throws Exception {
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=0-1, -3");
+        var response = new MockHttpServletResponse();
+
+        streamer.stream(KEY, TS, headers, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+        String body = response.getContentAsString();
+        assertThat(body).contains("Content-Range: bytes 0-1/20\r\n\r\n01");
+        assertThat(body).contains("Content-Range: bytes 17-19/20\r\n\r\nhij");
+        verify(storageService).download("processed-videos", KEY, 17, 19);
+    }
+
+    @Test
+    void answersMatchingIfNoneMatchWithNotModified() throws Exception {
+        var headers = new HttpHeaders();
+        headers.setIfNoneMatch(ETAG);
+        var response = new MockHttpServletResponse();
+
+        streamer.stream(KEY, TS, headers, response);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentLength()).isZero();
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=50-60");
+        var response = new MockHttpServletResponse();
+
+        streamer.stream(KEY, TS, headers, response);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */20");
+    }
+
+    @Test
+    void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=5-9");
+        headers.set(HttpHeaders.IF_RANGE, "\"stale\"");
+        var response = new MockHttpServletResponse();
+
+        streamer.stream(KEY, TS, headers, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        assertThat(response.getContentLengthLong()).isEqualTo(CONTENT.length);
+    }
+}
@@ -0,0 +1,177 @@
+package com.learnstream.video;
+
+import com.learnstream.storage.ObjectCache;
+import com.learnstream.storage.PresignedUrlCache;
+import com.learnstream.storage.StorageCacheConfig;
+import com.learnstream.storage.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+
+// Throughput, heap allocation and storage requests per segment of the old InputStreamResource proxy
+// against HlsContentStreamer, for whole-segment and ranged requests. Storage is an in-memory S3Client,
+// so this measures the proxy itself rather than the network.
+// Run with: gradle benchmark --tests '*HlsProxyBenchmark' [-Dbenchmark.segment-kb=2048]
+@Tag("benchmark")
+class HlsProxyBenchmark {
+
+    private static final String KEY = "creator/video/hls/stream_1080p_000.ts";
+    private static final MediaType TS = MediaType.parseMediaType("video/mp2t");
+    private static final int WARMUP = 2_000;
+    private static final int MEASURED = 5_000;
+
+    private final byte[] segment = new byte[Integer.getInteger("benchmark.segment-kb", 2048) * 1024];
+    private final InMemoryS3 s3 = new InMemoryS3(segment);
+    private final ResourceHttpMessageConverter converter = new ResourceHttpMessageConverter();
+
+    @Test
+    void compareProxies() throws Exception {
+        var storageService = storageService(s3);
+        var streamer = new HlsContentStreamer(storageService);
+        var range = new HttpHeaders();
+        range.set(HttpHeaders.RANGE, "bytes=0-" + (segment.length / 4 - 1));
+
+        System.out.printf("%-22s %10s %10s %14s %14s%n", "path", "req/s", "MB/s", "alloc B/req", "storage/req");
+        report("InputStreamResource", segment.length, () -> converter.write(
+                new InputStreamResource(storageService.download(storageService.processedBucket(), KEY)), TS,
+                new ServletServerHttpResponse(new DiscardingResponse())));
+        report("streamer, full", segment.length,
+                () -> streamer.stream(KEY, TS, new HttpHeaders(), new DiscardingResponse()));
+        report("streamer, 1/4 range", segment.length / 4,
+                () -> streamer.stream(KEY, TS, range, new DiscardingResponse()));
+    }
+
+    private void report(String name, long bytesPerRequest, Request request) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            request.run();
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long requestsBefore = s3.requests.get();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long started = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) {
+            request.run();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%-22s %10.0f %10.0f %14d %14.1f%n", name, MEASURED / seconds,
+                MEASURED * bytesPerRequest / seconds / 1_000_000, allocated / MEASURED,
+                (s3.requests.get() - requestsBefore) / (double) MEASURED);
+    }
+
+    private static StorageService storageService(S3Client s3) throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var cacheConfig = new StorageCacheConfig(false, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1),
+                "/tmp", DataSize.ofKilobytes(64), Duration.ofMinutes(1));
+        return new StorageService(s3, mock(S3Presigner.class), mock(S3Presigner.class),
+                new ObjectCache(cacheConfig, meterRegistry), new PresignedUrlCache(100, meterRegistry),
+                DataSize.ofMegabytes(64), DataSize.ofMegabytes(16));
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void run() throws Exception;
+    }
+
+    // Serves one object from memory and counts the requests made against it
+    private static final class InMemoryS3 implements S3Client {
+
+        private final byte[] content;
+        private final Instant lastModified = Instant.now();
+        private final AtomicLong requests = new AtomicLong();
+
+        private InMemoryS3(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public <T> T getObject(GetObjectRequest request, ResponseTransformer<GetObjectResponse, T> transformer) {
+            requests.incrementAndGet();
+            int start = 0;
+            int end = content.length - 1;
+            var response = GetObjectResponse.builder().eTag("\"bench\"").lastModified(lastModified);
+            if (request.range() != null) {
+                String[] bounds = request.range().substring("bytes=".length()).split("-");
+                start = Integer.parseInt(bounds[0]);
+                end = Math.min(Integer.parseInt(bounds[1]), end);
+                response.contentRange("bytes " + start + "-" + end + "/" + content.length);
+            }
+            response.contentLength((long) end - start + 1);
+            try {
+                return transformer.transform(response.build(),
+                        AbortableInputStream.create(new ByteArrayInputStream(content, start, end - start + 1)));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public HeadObjectResponse headObject(HeadObjectRequest request) {
+            requests.incrementAndGet();
+            return HeadObjectResponse.builder().contentLength((long) content.length).eTag("\"bench\"")
+                    .lastModified(lastModified).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Drops the body, so the proxy's own allocation is what gets measured
+    private static final class DiscardingResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.learnstream.video;
+
+import com.learnstream.storage.ObjectCache;
+import com.learnstream.storage.PresignedUrlCache;
+import com.learnstream.storage.StorageCacheConfig;
+import com.learnstream.storage.StorageService;
+import com.learnstream.video.dto.CreateUploadSessionRequest;
+import com.learnstream.video.exception.InvalidVideoFileException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The presigned multipart flow end to end against a real MinIO: the client PUTs parts straight to
+// storage with the signed URLs and the API completes and verifies the assembled object.
+@Testcontainers(disabledWithoutDocker = true)
+class PresignedUploadMinioTest {
+
+    private static final String ACCESS_KEY = "minioadmin";
+    private static final String SECRET_KEY = "minioadmin";
+    // S3's smallest part size except for the last part
+    private static final DataSize PART_SIZE = DataSize.ofMegabytes(5);
+    private static final UUID CREATOR_ID = UUID.randomUUID();
+
+    @Container
+    static final GenericContainer<?> minio = new GenericContainer<>("minio/minio:RELEASE.2025-04-22T22-12-26Z")
+            .withEnv("MINIO_ROOT_USER", ACCESS_KEY)
+            .withEnv("MINIO_ROOT_PASSWORD", SECRET_KEY)
+            .withCommand("server", "/data")
+            .withExposedPorts(9000)
+            .waitingFor(Wait.forHttp("/minio/health/live").forPort(9000));
+
+    private static StorageService storageService;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final VideoService videoService = mock(VideoService.class);
+    private final UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+    private final UUID videoId = UUID.randomUUID();
+    private final String key = CREATOR_ID + "/" + videoId + "/original.mp4";
+    private VideoUploadService uploadService;
+
+    @BeforeAll
+    static void connect() throws Exception {
+        var endpoint = URI.create("http://" + minio.getHost() + ":" + minio.getMappedPort(9000));
+        var credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create(ACCESS_KEY, SECRET_KEY));
+        var s3 = S3Client.builder().endpointOverride(endpoint).credentialsProvider(credentials)
+                .region(Region.US_EAST_1).forcePathStyle(true).build();
+        var presigner = S3Presigner.builder().endpointOverride(endpoint).credentialsProvider(credentials)
+                .region(Region.US_EAST_1)
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        var meterRegistry = new SimpleMeterRegistry();
+        var cacheConfig = new StorageCacheConfig(false, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1),
+                "/tmp", DataSize.ofKilobytes(64), Duration.ofMinutes(1));
+        storageService = new StorageService(s3, presigner, presigner, new ObjectCache(cacheConfig, meterRegistry),
+                new PresignedUrlCache(100, meterRegistry), DataSize.ofMegabytes(64), PART_SIZE);
+        s3.createBucket(CreateBucketRequest.builder().bucket(storageService.rawBucket()).build());
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(videoService.prepareUpload(eq(videoId), eq(CREATOR_ID), eq("video/mp4"), any(Long.class), any()))
+                .thenReturn(key);
+        doAnswer(inv -> {
+            UploadSession session = inv.getArgument(0);
+            session.setId(UUID.randomUUID());
+            when(sessions.findByIdAndVideoId(session.getId(), videoId)).thenReturn(Optional.of(session));
+            return session;
+        }).when(sessions).save(any(UploadSession.class));
+        uploadService = new VideoUploadService(videoService, storageService, sessions, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void partsPutStraightToStorageAreAssembledAndVerified() throws Exception {
+        long size = PART_SIZE.toBytes() + 1_000;
+        var session = uploadService.createSession(videoId, new CreateUploadSessionRequest("video/mp4", size),
+                CREATOR_ID);
+        assertThat(session.partCount()).isEqualTo(2);
+
+        var urls = uploadService.presignParts(videoId, session.sessionId(), null, CREATOR_ID);
+        for (var part : urls.parts()) {
+            assertThat(put(part.url(), part.size())).isEqualTo(200);
+        }
+        assertThat(uploadService.getSession(videoId, session.sessionId(), CREATOR_ID).uploadedParts())
+                .containsExactly(1, 2);
+
+        uploadService.completeSession(videoId, session.sessionId(), CREATOR_ID);
+
+        assertThat(storageService.stat(storageService.rawBucket(), key).contentLength()).isEqualTo(size);
+        verify(videoService).completeUpload(videoId, CREATOR_ID, key, null);
+        verify(sessions).delete(any(UploadSession.class));
+    }
+
+    @Test
+    void storageRejectsAPartOfAnotherSizeThanSigned() throws Exception {
+        var session = uploadService.createSession(videoId,
+                new CreateUploadSessionRequest("video/mp4", PART_SIZE.toBytes() + 1_000), CREATOR_ID);
+        var urls = uploadService.presignParts(videoId, session.sessionId(), null, CREATOR_ID);
+
+        assertThat(put(urls.parts().getFirst().url(), 1_000)).isEqualTo(403);
+        assertThat(put(urls.parts().get(1).url(), 1_000)).isEqualTo(200);
+
+        assertThatThrownBy(() -> uploadService.completeSession(videoId, session.sessionId(), CREATOR_ID))
+                .isInstanceOf(InvalidVideoFileException.class)
+                .hasMessageContaining("received parts [2] of 2");
+        verify(videoService, never()).completeUpload(any(), any(), anyString(), any());
+    }
+
+    private int put(String url, long size) throws Exception {
+        byte[] body = new byte[(int) size];
+        Arrays.fill(body, (byte) 'x');
+        return http.send(HttpRequest.newBuilder(URI.create(url)).PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,126 @@
+package com.learnstream.video;
+
+import com.learnstream.auth.PlaybackTokenService;
+import com.learnstream.payment.AccessCache;
+import com.learnstream.payment.CreatorStatsService;
+import com.learnstream.storage.ObjectCache;
+import com.learnstream.storage.PresignedUrlCache;
+import com.learnstream.storage.StorageCacheConfig;
+import com.learnstream.storage.StorageService;
+import com.learnstream.transcoding.TranscodingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Cost of mapping one 100-video catalog page: signing every thumbnail, the presigned URL cache,
+// and the unsigned CDN mode. Signing needs no network, so this runs without MinIO.
+// Run with: gradle benchmark --tests '*VideoResponseBenchmark'
+@Tag("benchmark")
+class VideoResponseBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int WARMUP_PAGES = 2_000;
+    private static final int MEASURED_PAGES = 5_000;
+
+    private final S3Presigner presigner = S3Presigner.builder()
+            .endpointOverride(URI.create("http://localhost:9000"))
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("bench", "bench-secret")))
+            .region(Region.US_EAST_1)
+            .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+            .build();
+    private final List<Video> videos = page();
+
+    @Test
+    void compareThumbnailUrlModes() throws Exception {
+        var creatorId = UUID.randomUUID();
+        var pageable = PageRequest.of(0, PAGE_SIZE);
+        var repository = mock(VideoRepository.class);
+        when(repository.findByCreatorId(eq(creatorId), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(videos, pageable, videos.size()));
+
+        VideoService cached = videoService(repository, "");
+        VideoService cdn = videoService(repository, "https://cdn.example.com/thumbnails");
+
+        System.out.printf("%-16s %12s%n", "mode", "us/page");
+        System.out.printf("%-16s %12.1f%n", "sign every row", measure(this::signEveryRow));
+        System.out.printf("%-16s %12.1f%n", "cached presign", measure(() -> cached.listCreatorVideos(creatorId, pageable)));
+        System.out.printf("%-16s %12.1f%n", "cdn base url", measure(() -> cdn.listCreatorVideos(creatorId, pageable)));
+    }
+
+    // What toResponse did before the cache: one SigV4 signature per row
+    private void signEveryRow() {
+        for (Video video : videos) {
+            presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(Duration.ofMinutes(60))
+                    .getObjectRequest(GetObjectRequest.builder()
+                            .bucket("processed-videos")
+                            .key(video.getThumbnailUrl())
+                            .build())
+                    .build()).url().toString();
+        }
+    }
+
+    private VideoService videoService(VideoRepository repository, String thumbnailBaseUrl) throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var cacheConfig = new StorageCacheConfig(false, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1),
+                "/tmp", DataSize.ofKilobytes(64), Duration.ofMinutes(1));
+        var storageService = new StorageService(mock(S3Client.class), presigner, presigner,
+                new ObjectCache(cacheConfig, meterRegistry), new PresignedUrlCache(10_000, meterRegistry),
+                DataSize.ofMegabytes(64), DataSize.ofMegabytes(16));
+        return new VideoService(repository, storageService, mock(TranscodingService.class),
+                mock(AccessCache.class), mock(PlaybackTokenService.class), mock(CreatorStatsService.class),
+                thumbnailBaseUrl);
+    }
+
+    private static double measure(Runnable pageMapping) {
+        for (int i = 0; i < WARMUP_PAGES; i++) {
+            pageMapping.run();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < MEASURED_PAGES; i++) {
+            pageMapping.run();
+        }
+        return (System.nanoTime() - started) / 1_000.0 / MEASURED_PAGES;
+    }
+
+    private static List<Video> page() {
+        var creatorId = UUID.randomUUID();
+        var page = new ArrayList<Video>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            var video = new Video();
+            video.setId(UUID.randomUUID());
+            video.setCreatorId(creatorId);
+            video.setTitle("Lecture " + i);
+            video.setStatus(VideoStatus.READY);
+            video.setThumbnailUrl(creatorId + "/" + video.getId() + "/thumbnail.jpg");
+            video.setCreatedAt(Instant.now());
+            video.setUpdatedAt(Instant.now());
+            page.add(video);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,16 @@
+package com.learnstream.video;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VideoServiceTest {
+
+    @Test
+    void buildsPrefixQueryFromFreeText() {
+        assertThat(VideoService.toPrefixQuery("  Spring BOOT spring")).isEqualTo("spring:* & boot:*");
+        assertThat(VideoService.toPrefixQuery("c++ & java's")).isEqualTo("c:* & java:* & s:*");
+        assertThat(VideoService.toPrefixQuery("Über-Kurs 2024")).isEqualTo("über:* & kurs:* & 2024:*");
+        assertThat(VideoService.toPrefixQuery("!:*|()")).isEmpty();
+    }
+}
@@ -0,0 +1,167 @@
+package com.learnstream.video;
+
+import com.learnstream.storage.ObjectInfo;
+import com.learnstream.storage.StorageService;
+import com.learnstream.storage.UploadedPart;
+import com.learnstream.video.exception.InvalidVideoFileException;
+import com.learnstream.video.exception.VideoAccessDeniedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VideoUploadServiceTest {
+
+    private static final UUID VIDEO_ID = UUID.randomUUID();
+    private static final UUID CREATOR_ID = UUID.randomUUID();
+    private static final UUID SESSION_ID = UUID.randomUUID();
+
+    private VideoService videoService;
+    private StorageService storageService;
+    private UploadSessionRepository sessions;
+    private VideoUploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        videoService = mock(VideoService.class);
+        storageService = mock(StorageService.class);
+        when(storageService.rawBucket()).thenReturn("raw-videos");
+        sessions = mock(UploadSessionRepository.class);
+
+        var session = new UploadSession();
+        session.setId(SESSION_ID);
+        session.setVideoId(VIDEO_ID);
+        session.setCreatorId(CREATOR_ID);
+        session.setStorageKey("c/v/original.mp4");
+        session.setS3UploadId("upload-1");
+        session.setContentType("video/mp4");
+        session.setTotalSize(10);
+        session.setPartSize(4);
+        when(sessions.findByIdAndVideoId(SESSION_ID, VIDEO_ID)).thenReturn(Optional.of(session));
+
+        uploadService = new VideoUploadService(videoService, storageService, sessions, Duration.ofHours(1));
+    }
+
+    @Test
+    void rejectsPartsOfTheWrongSize() {
+        var body = new ByteArrayInputStream(new byte[4]);
+
+        assertThatThrownBy(() -> uploadService.uploadPart(VIDEO_ID, SESSION_ID, 3, body, 4, CREATOR_ID))
+                .isInstanceOf(InvalidVideoFileException.class)
+                .hasMessageContaining("must be 2 bytes");
+        assertThatThrownBy(() -> uploadService.uploadPart(VIDEO_ID, SESSION_ID, 4, body, 2, CREATOR_ID))
+                .isInstanceOf(InvalidVideoFileException.class);
+        assertThatThrownBy(() -> uploadService.uploadPart(VIDEO_ID, SESSION_ID, 1, body, 4, UUID.randomUUID()))
+                .isInstanceOf(VideoAccessDeniedException.class);
+    }
+
+    @Test
+    void refusesToCompleteWithMissingParts() {
+        when(storageService.listParts("raw-videos", "c/v/original.mp4", "upload-1")).thenReturn(List.of(
+                new UploadedPart(1, "\"a\"", 4),
+                new UploadedPart(3, "\"c\"", 2)));
+
+        assertThatThrownBy(() -> uploadService.completeSession(VIDEO_ID, SESSION_ID, CREATOR_ID))
+                .isInstanceOf(InvalidVideoFileException.class)
+                .hasMessageContaining("[1, 3] of 3");
+        verify(storageService, never()).completeMultipartUpload(anyString(), anyString(), anyString(), any());
+        verify(videoService, never()).completeUpload(any(), any(), anyString(), any());
+    }
+
+    @Test
+    void keepsTheSessionWhenTheAssembledObjectHasTheWrongSize() {
+        when(storageService.listParts("raw-videos", "c/v/original.mp4", "upload-1")).thenReturn(List.of(
+                new UploadedPart(1, "\"a\"", 4),
+                new UploadedPart(2, "\"b\"", 4),
+                new UploadedPart(3, "\"c\"", 2)));
+        when(storageService.stat("raw-videos", "c/v/original.mp4")).thenReturn(new ObjectInfo(9, "\"x\"", null));
+
+        assertThatThrownBy(() -> uploadService.completeSession(VIDEO_ID, SESSION_ID, CREATOR_ID))
+                .isInstanceOf(InvalidVideoFileException.class)
+                .hasMessageContaining("9 bytes, expected 10");
+        verify(storageService).delete("raw-videos", "c/v/original.mp4");
+        verify(sessions, never()).delete(any());
+        verify(videoService, never()).completeUpload(any(), any(), anyString(), any());
+    }
+
+    @Test
+    void passesTheContentHashOfStreamedUploads() throws Exception {
+        when(videoService.prepareUpload(VIDEO_ID, CREATOR_ID, "video/mp4", 3, null)).thenReturn("c/v/original.mp4");
+        doAnswer(inv -> (long) inv.getArgument(2, InputStream.class).readAllBytes().length)
+                .when(storageService).uploadStream(eq("raw-videos"), eq("c/v/original.mp4"), any(), eq("video/mp4"));
+
+        uploadService.uploadStream(VIDEO_ID, new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)),
+                "video/mp4", 3, CREATOR_ID);
+
+        verify(videoService).completeUpload(VIDEO_ID, CREATOR_ID, "c/v/original.mp4",
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    void presignsOnlyTheMissingParts() throws Exception {
+        when(storageService.listParts("raw-videos", "c/v/original.mp4", "upload-1")).thenReturn(List.of(
+                new UploadedPart(1, "\"a\"", 4)));
+        when(storageService.presignUploadPart(eq("raw-videos"), eq("c/v/original.mp4"), eq("upload-1"),
+                anyInt(), anyLong(), eq(Duration.ofHours(1))))
+                .thenReturn(URI.create("http://minio/raw-videos/c/v/original.mp4?partNumber=n").toURL());
+
+        var response = uploadService.presignParts(VIDEO_ID, SESSION_ID, null, CREATOR_ID);
+
+        assertThat(response.parts()).extracting("partNumber", "size")
+                .containsExactly(tuple(2, 4L), tuple(3, 2L));
+        assertThatThrownBy(() -> uploadService.presignParts(VIDEO_ID, SESSION_ID, List.of(4), CREATOR_ID))
+                .isInstanceOf(InvalidVideoFileException.class);
+    }
+
+    @Test
+    void expiresAbandonedSessionsWithTheirMultipartUploads() {
+        var cutoff = Instant.now().minus(Duration.ofHours(24));
+        var abandoned = session("c/v1/original.mp4", "upload-2");
+        var unreachable = session("c/v2/original.mp4", "upload-3");
+        when(sessions.findByCreatedAtBeforeOrderByCreatedAt(cutoff, Limit.of(10)))
+                .thenReturn(List.of(abandoned, unreachable));
+        doThrow(new IllegalStateException("storage down")).when(storageService)
+                .abortMultipartUpload("raw-videos", "c/v2/original.mp4", "upload-3");
+
+        assertThat(uploadService.expireSessions(cutoff, 10)).isEqualTo(1);
+
+        verify(storageService).abortMultipartUpload("raw-videos", "c/v1/original.mp4", "upload-2");
+        verify(sessions).delete(abandoned);
+        // Kept so the next run aborts the upload instead of leaving its parts behind for good
+        verify(sessions, never()).delete(unreachable);
+    }
+
+    private static UploadSession session(String key, String uploadId) {
+        var session = new UploadSession();
+        session.setId(UUID.randomUUID());
+        session.setVideoId(UUID.randomUUID());
+        session.setCreatorId(CREATOR_ID);
+        session.setStorageKey(key);
+        session.setS3UploadId(uploadId);
+        return session;
+    }
+}
@@ -0,0 +1,39 @@
+package com.learnstream.video.dto;
+
+import com.learnstream.video.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorPageTest {
+
+    @Test
+    void nextCursorPointsAtLastReturnedRow() {
+        var rows = List.of(
+                new PageCursor(Instant.parse("2026-01-03T10:00:00.123456Z"), UUID.randomUUID()),
+                new PageCursor(Instant.parse("2026-01-02T10:00:00Z"), UUID.randomUUID()),
+                new PageCursor(Instant.parse("2026-01-01T10:00:00Z"), UUID.randomUUID()));
+
+        var page = CursorPage.from(rows, 2, row -> row, PageCursor::id);
+
+        assertThat(page.content()).containsExactly(rows.get(0).id(), rows.get(1).id());
+        assertThat(page.last()).isFalse();
+        assertThat(PageCursor.decode(page.nextCursor())).isEqualTo(rows.get(1));
+
+        var lastPage = CursorPage.from(rows.subList(2, 3), 2, row -> row, PageCursor::id);
+        assertThat(lastPage.last()).isTrue();
+        assertThat(lastPage.nextCursor()).isNull();
+    }
+
+    @Test
+    void emptyCursorStartsAtTheTopAndGarbageIsRejected() {
+        assertThat(PageCursor.decode("")).isEqualTo(PageCursor.FIRST);
+        assertThatThrownBy(() -> PageCursor.decode("not-a-cursor"))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+}
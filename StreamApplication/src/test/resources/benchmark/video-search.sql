@@ -0,0 +1,60 @@
+-- Catalog search on 1M generated videos: the old LIKE scan vs the V9 full-text index.
+-- Runs inside a transaction that is rolled back, so it is safe against the dev database:
+--   docker compose exec -T postgres psql -U <user> -d <db> < src/test/resources/benchmark/video-search.sql
+\timing on
+BEGIN;
+
+INSERT INTO users (id, email, password_hash, role)
+VALUES ('00000000-0000-0000-0000-0000000000be', 'search-bench@example.com', 'x', 'USER');
+
+-- Titles and descriptions drawn from a fixed vocabulary; roughly 90% READY like a live catalog
+WITH words AS (
+    SELECT ARRAY['java', 'spring', 'boot', 'kafka', 'postgres', 'docker', 'react', 'python', 'rust',
+                 'lecture', 'tutorial', 'course', 'intro', 'advanced', 'streaming', 'design', 'testing',
+                 'security', 'performance', 'kubernetes', 'networking', 'algorithms', 'databases', 'cloud'] AS w
+)
+INSERT INTO videos (owner_id, title, description, price_cents, status, created_at, updated_at)
+SELECT '00000000-0000-0000-0000-0000000000be',
+       initcap(w[1 + (i * 7) % 24] || ' ' || w[1 + (i * 13) % 24] || ' ' || w[1 + (i * 31) % 24]) || ' #' || i,
+       'Part ' || (i % 40) || ' covering ' || w[1 + (i * 17) % 24] || ', ' || w[1 + (i * 23) % 24]
+           || ' and ' || w[1 + (i * 29) % 24] || ' with worked examples.',
+       (i % 5) * 499,
+       CASE WHEN i % 10 = 0 THEN 'PROCESSING' ELSE 'READY' END,
+       now() - (i || ' seconds')::interval,
+       now()
+FROM generate_series(1, 1000000) AS i, words;
+
+ANALYZE videos;
+
+-- Before: what searchReadyVideos ran up to V8 (count + first page)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT count(*) FROM videos v
+WHERE v.status = 'READY'
+  AND (lower(v.title) LIKE '%' || 'kafka stream' || '%' OR lower(v.description) LIKE '%' || 'kafka stream' || '%');
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT v.* FROM videos v
+WHERE v.status = 'READY'
+  AND (lower(v.title) LIKE '%' || 'kafka' || '%' OR lower(v.description) LIKE '%' || 'kafka' || '%')
+ORDER BY v.created_at DESC
+LIMIT 20;
+
+-- After: ranked prefix search on the GIN index (count + first page)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT count(*) FROM videos v
+WHERE v.status = 'READY' AND v.search_vector @@ to_tsquery('simple', 'kafka:* & stream:*');
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT v.* FROM videos v, to_tsquery('simple', 'kafka:*') q
+WHERE v.status = 'READY' AND v.search_vector @@ q
+ORDER BY ts_rank(v.search_vector, q) DESC, v.created_at DESC
+LIMIT 20;
+
+-- Selective query, where the index matters most
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT v.* FROM videos v, to_tsquery('simple', 'kafka:* & rust:* & secur:*') q
+WHERE v.status = 'READY' AND v.search_vector @@ q
+ORDER BY ts_rank(v.search_vector, q) DESC, v.created_at DESC
+LIMIT 20;
+
+ROLLBACK;